@@ -1,7 +1,7 @@
 package com.octo.service;
 
 import com.octo.dto.BankTransferDTO;
-import com.octo.schemas.PersistentInterBankTransfer;
+import com.octo.schemas.PersistentInterBankTransferV2;
 import net.corda.core.transactions.SignedTransaction;
 
 import java.util.List;
@@ -10,9 +10,9 @@ import java.util.concurrent.ExecutionException;
 
 public interface InterBankTransferService {
 
-    List<PersistentInterBankTransfer> loadAll();
+    List<PersistentInterBankTransferV2> loadAll();
 
-    Optional<PersistentInterBankTransfer> findById(String id);
+    Optional<PersistentInterBankTransferV2> findById(String id);
 
     SignedTransaction transfer(BankTransferDTO dto) throws ExecutionException, InterruptedException;
 
@@ -1,7 +1,7 @@
 package com.octo.service;
 
 import com.octo.dto.BankTransferDTO;
-import com.octo.schemas.PersistentIntraBankTransfer;
+import com.octo.schemas.PersistentIntraBankTransferV2;
 import net.corda.core.transactions.SignedTransaction;
 
 import java.util.List;
@@ -10,9 +10,9 @@ import java.util.concurrent.ExecutionException;
 
 public interface IntraBankTransferService {
 
-    List<PersistentIntraBankTransfer> loadAll();
+    List<PersistentIntraBankTransferV2> loadAll();
 
-    Optional<PersistentIntraBankTransfer> findById(String id);
+    Optional<PersistentIntraBankTransferV2> findById(String id);
 
     SignedTransaction transfer(BankTransferDTO dto) throws ExecutionException, InterruptedException;
 
@@ -1,6 +1,6 @@
 package com.octo.service;
 
-import com.octo.schemas.PersistentDDRObligation;
+import com.octo.schemas.PersistentDDRObligationV2;
 import net.corda.core.node.services.Vault;
 import net.corda.core.transactions.SignedTransaction;
 import org.springframework.stereotype.Service;
@@ -12,9 +12,9 @@ import java.util.concurrent.ExecutionException;
 @Service
 public interface ObligationService {
 
-    List<PersistentDDRObligation> loadAll(Vault.StateStatus stateStatus);
+    List<PersistentDDRObligationV2> loadAll(Vault.StateStatus stateStatus);
 
-    Optional<PersistentDDRObligation> findById(String id);
+    Optional<PersistentDDRObligationV2> findById(String id);
 
     SignedTransaction createPledge(long amount) throws ExecutionException, InterruptedException;
 
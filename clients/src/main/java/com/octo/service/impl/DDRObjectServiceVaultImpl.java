@@ -2,18 +2,21 @@ package com.octo.service.impl;
 
 import com.octo.service.DDRObjectService;
 import com.octo.states.DDRObjectState;
-import com.octo.utils.QueryUtils;
+import com.octo.utils.DDRQueries;
 import com.octo.web.NodeRPCConnection;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.node.services.Vault;
 import net.corda.core.node.services.vault.PageSpecification;
-import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.QueryCriteria;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.MAX_PAGE_SIZE;
+
 @Service
 public class DDRObjectServiceVaultImpl implements DDRObjectService {
 
@@ -23,36 +26,52 @@ public class DDRObjectServiceVaultImpl implements DDRObjectService {
         this.proxy = rpc.proxy;
     }
 
-    // TODO Aggregate related stats into one
     @Override
     public long balance() {
-        List<StateAndRef<DDRObjectState>> states = proxy.vaultQueryBy(QueryUtils.withStatusStates(Vault.StateStatus.UNCONSUMED),
-                new PageSpecification(1, 1000),
-                new Sort(Collections.emptyList()),
-                DDRObjectState.class
-                ).getStates();
-        return states.stream()
-                .mapToLong(stateAndRef -> stateAndRef.getState().getData().getAmount().getQuantity())
-                .sum();
+        if (!isMapped())
+            return allDDRs().stream().mapToLong(ddr -> ddr.getState().getData().getAmount().getQuantity()).sum();
+        return aggregate(DDRQueries.sumOfQuantities());
     }
 
     @Override
     public long count() {
-        return proxy.vaultQueryBy(QueryUtils.withStatusStates(Vault.StateStatus.UNCONSUMED),
-                new PageSpecification(1, 1000),
-                new Sort(Collections.emptyList()),
-                DDRObjectState.class
-        ).getStates().size();
+        if (!isMapped()) return unconsumedCount();
+        return aggregate(DDRQueries.countOfDDRs());
     }
 
     @Override
     public double average() {
-        return proxy.vaultQueryBy(QueryUtils.withStatusStates(Vault.StateStatus.UNCONSUMED),
-                new PageSpecification(1, 1000),
-                new Sort(Collections.emptyList()),
-                DDRObjectState.class)
-                .getStates().stream()
-                .mapToLong(stateAndRef -> stateAndRef.getState().getData().getAmount().getQuantity())
-                .average().orElseThrow(() -> new IllegalStateException("No DDR found"));
+        long count = count();
+        if (count == 0) throw new IllegalStateException("No DDR found");
+        return (double) balance() / count;
+    }
+
+    private long aggregate(QueryCriteria aggregateCriteria) {
+        return DDRQueries.aggregateResult(proxy.vaultQueryByCriteria(aggregateCriteria, DDRObjectState.class));
+    }
+
+    /**
+     * DDR Objects recorded before DDRObjectSchemaV1 have no row in ddr_object_states until the node copied them, the
+     * aggregates are computed from the states meanwhile.
+     */
+    private boolean isMapped() {
+        return aggregate(DDRQueries.countOfDDRs()) >= unconsumedCount();
+    }
+
+    private long unconsumedCount() {
+        return proxy.vaultQueryByWithPagingSpec(DDRObjectState.class, new QueryCriteria.VaultQueryCriteria(),
+                new PageSpecification(DEFAULT_PAGE_NUM, 1)).getTotalStatesAvailable();
+    }
+
+    private List<StateAndRef<DDRObjectState>> allDDRs() {
+        List<StateAndRef<DDRObjectState>> ddrs = new ArrayList<>();
+        int pageNumber = DEFAULT_PAGE_NUM;
+        Vault.Page<DDRObjectState> page;
+        do {
+            page = proxy.vaultQueryByWithPagingSpec(DDRObjectState.class, new QueryCriteria.VaultQueryCriteria(),
+                    new PageSpecification(pageNumber++, MAX_PAGE_SIZE));
+            ddrs.addAll(page.getStates());
+        } while ((long) (pageNumber - 1) * MAX_PAGE_SIZE < page.getTotalStatesAvailable());
+        return ddrs;
     }
 }
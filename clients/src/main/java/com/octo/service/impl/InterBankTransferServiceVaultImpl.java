@@ -4,7 +4,7 @@ import com.octo.CONSTANTS;
 import com.octo.dto.BankTransferDTO;
 import com.octo.flows.AtomicExchangeDDR;
 import com.octo.mapper.StateMapper;
-import com.octo.schemas.PersistentInterBankTransfer;
+import com.octo.schemas.PersistentInterBankTransferV2;
 import com.octo.service.InterBankTransferService;
 import com.octo.service.NodeService;
 import com.octo.states.InterBankTransferState;
@@ -35,16 +35,16 @@ public class InterBankTransferServiceVaultImpl implements InterBankTransferServi
     }
 
     @Override
-    public List<PersistentInterBankTransfer> loadAll() {
+    public List<PersistentInterBankTransferV2> loadAll() {
         List<StateAndRef<InterBankTransferState>> states = proxy.vaultQuery(InterBankTransferState.class).getStates();
-        return StateMapper.map(states, PersistentInterBankTransfer.class);
+        return StateMapper.map(states, PersistentInterBankTransferV2.class);
     }
 
     @Override
-    public Optional<PersistentInterBankTransfer> findById(String id) {
+    public Optional<PersistentInterBankTransferV2> findById(String id) {
         List<StateAndRef<InterBankTransferState>> list = proxy.vaultQueryByCriteria(QueryUtils.linearStateByExternalId(id),
                 InterBankTransferState.class).getStates();
-        return !list.isEmpty() ? Optional.of((PersistentInterBankTransfer) StateMapper.map(list.get(0))) : Optional.empty();
+        return !list.isEmpty() ? Optional.of((PersistentInterBankTransferV2) StateMapper.map(list.get(0))) : Optional.empty();
     }
 
     @Override
@@ -4,7 +4,7 @@ import com.octo.CONSTANTS;
 import com.octo.dto.BankTransferDTO;
 import com.octo.flows.RecordIntraBankTransfer;
 import com.octo.mapper.StateMapper;
-import com.octo.schemas.PersistentIntraBankTransfer;
+import com.octo.schemas.PersistentIntraBankTransferV2;
 import com.octo.service.IntraBankTransferService;
 import com.octo.states.IntraBankTransferState;
 import com.octo.utils.QueryUtils;
@@ -31,16 +31,16 @@ public class IntraBankTransferServiceVaultImpl implements IntraBankTransferServi
     }
 
     @Override
-    public List<PersistentIntraBankTransfer> loadAll() {
+    public List<PersistentIntraBankTransferV2> loadAll() {
         List<StateAndRef<IntraBankTransferState>> states = proxy.vaultQuery(IntraBankTransferState.class).getStates();
-        return StateMapper.map(states, PersistentIntraBankTransfer.class);
+        return StateMapper.map(states, PersistentIntraBankTransferV2.class);
     }
 
     @Override
-    public Optional<PersistentIntraBankTransfer> findById(String id) {
+    public Optional<PersistentIntraBankTransferV2> findById(String id) {
         List<StateAndRef<IntraBankTransferState>> list = proxy.vaultQueryByCriteria(QueryUtils.linearStateByExternalId(id),
                 IntraBankTransferState.class).getStates();
-        return !list.isEmpty() ? Optional.of((PersistentIntraBankTransfer) StateMapper.map(list.get(0))) : Optional.empty();
+        return !list.isEmpty() ? Optional.of((PersistentIntraBankTransferV2) StateMapper.map(list.get(0))) : Optional.empty();
     }
 
     @Override
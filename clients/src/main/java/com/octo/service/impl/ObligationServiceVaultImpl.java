@@ -3,7 +3,7 @@ package com.octo.service.impl;
 import com.octo.exceptions.NegativeOrNullAmountException;
 import com.octo.flows.*;
 import com.octo.mapper.StateMapper;
-import com.octo.schemas.PersistentDDRObligation;
+import com.octo.schemas.PersistentDDRObligationV2;
 import com.octo.service.ObligationService;
 import com.octo.states.DDRObligationState;
 import com.octo.utils.QueryUtils;
@@ -31,17 +31,17 @@ public class ObligationServiceVaultImpl implements ObligationService {
     }
 
     @Override
-    public List<PersistentDDRObligation> loadAll(Vault.StateStatus stateStatus) {
+    public List<PersistentDDRObligationV2> loadAll(Vault.StateStatus stateStatus) {
         List<StateAndRef<DDRObligationState>> statesAndRefs = proxy.vaultQueryByCriteria(QueryUtils.withStatusStates(stateStatus),
                 DDRObligationState.class).getStates();
-        return StateMapper.map(statesAndRefs, PersistentDDRObligation.class);
+        return StateMapper.map(statesAndRefs, PersistentDDRObligationV2.class);
     }
 
     @Override
-    public Optional<PersistentDDRObligation> findById(String id) {
+    public Optional<PersistentDDRObligationV2> findById(String id) {
         List<StateAndRef<DDRObligationState>> list = proxy.vaultQueryByCriteria(QueryUtils.linearStateByExternalId(id),
                 DDRObligationState.class).getStates();
-        return !list.isEmpty() ? Optional.of((PersistentDDRObligation) StateMapper.map(list.get(0))) : Optional.empty();
+        return !list.isEmpty() ? Optional.of((PersistentDDRObligationV2) StateMapper.map(list.get(0))) : Optional.empty();
     }
 
     @Override
@@ -2,7 +2,7 @@ package com.octo.web;
 
 import com.octo.dto.BankTransferDTO;
 import com.octo.exceptions.TransferNotFoundException;
-import com.octo.schemas.PersistentInterBankTransfer;
+import com.octo.schemas.PersistentInterBankTransferV2;
 import com.octo.service.InterBankTransferService;
 import net.corda.core.transactions.SignedTransaction;
 import org.slf4j.Logger;
@@ -25,12 +25,12 @@ public class InterBankTransferController {
     private InterBankTransferService interBankTransferService;
 
     @GetMapping
-    public ResponseEntity<List<PersistentInterBankTransfer>> getAllInterBankTransfers() {
+    public ResponseEntity<List<PersistentInterBankTransferV2>> getAllInterBankTransfers() {
         return ResponseEntity.ok(interBankTransferService.loadAll());
     }
 
     @GetMapping(value = "{id}")
-    public ResponseEntity<PersistentInterBankTransfer> getInterBankTransfer(@PathVariable String id) {
+    public ResponseEntity<PersistentInterBankTransferV2> getInterBankTransfer(@PathVariable String id) {
         return ResponseEntity.ok(interBankTransferService.findById(id).orElseThrow(() -> new TransferNotFoundException(id)));
     }
 
@@ -2,7 +2,7 @@ package com.octo.web;
 
 import com.octo.dto.BankTransferDTO;
 import com.octo.exceptions.TransferNotFoundException;
-import com.octo.schemas.PersistentIntraBankTransfer;
+import com.octo.schemas.PersistentIntraBankTransferV2;
 import com.octo.service.IntraBankTransferService;
 import net.corda.core.transactions.SignedTransaction;
 import org.slf4j.Logger;
@@ -25,12 +25,12 @@ public class IntraBankTransferController {
     private IntraBankTransferService intraBankTransferService;
 
     @GetMapping
-    public ResponseEntity<List<PersistentIntraBankTransfer>> getAllIntraBankTransfers() {
+    public ResponseEntity<List<PersistentIntraBankTransferV2>> getAllIntraBankTransfers() {
         return ResponseEntity.ok(intraBankTransferService.loadAll());
     }
 
     @GetMapping(value = "/{id}")
-    public ResponseEntity<PersistentIntraBankTransfer> getIntraBankTransfer(@PathVariable String id) {
+    public ResponseEntity<PersistentIntraBankTransferV2> getIntraBankTransfer(@PathVariable String id) {
         return ResponseEntity.ok(intraBankTransferService.findById(id).orElseThrow(() -> new TransferNotFoundException(id)));
     }
 
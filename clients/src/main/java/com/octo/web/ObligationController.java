@@ -3,7 +3,7 @@ package com.octo.web;
 import com.octo.dto.ObligationRequestDTO;
 import com.octo.dto.ObligationUpdateDTO;
 import com.octo.exceptions.ObligationNotFoundException;
-import com.octo.schemas.PersistentDDRObligation;
+import com.octo.schemas.PersistentDDRObligationV2;
 import com.octo.service.ObligationService;
 import net.corda.core.node.services.Vault;
 import net.corda.core.transactions.SignedTransaction;
@@ -33,22 +33,22 @@ public class ObligationController {
      * Displays all ddr Obligations states that exist in the node's vault.
      */
     @GetMapping
-    public List<PersistentDDRObligation> getAllObligations() {
+    public List<PersistentDDRObligationV2> getAllObligations() {
         return obligationService.loadAll(Vault.StateStatus.ALL);
     }
 
     @GetMapping(value = "{id}")
-    public ResponseEntity<PersistentDDRObligation> getObligations(@PathVariable String id) {
+    public ResponseEntity<PersistentDDRObligationV2> getObligations(@PathVariable String id) {
         return ResponseEntity.ok(obligationService.findById(id).orElseThrow(() -> new ObligationNotFoundException(id)));
     }
 
     @GetMapping(value = "all-consumed")
-    public ResponseEntity<List<PersistentDDRObligation>> getAllConsumedObligations() {
+    public ResponseEntity<List<PersistentDDRObligationV2>> getAllConsumedObligations() {
         return ResponseEntity.ok(obligationService.loadAll(Vault.StateStatus.CONSUMED));
     }
 
     @GetMapping(value = "all-unconsumed")
-    public ResponseEntity<List<PersistentDDRObligation>> getAllUnconsumedObligations() {
+    public ResponseEntity<List<PersistentDDRObligationV2>> getAllUnconsumedObligations() {
         return ResponseEntity.ok(obligationService.loadAll(Vault.StateStatus.UNCONSUMED));
     }
 
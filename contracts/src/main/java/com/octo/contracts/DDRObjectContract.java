@@ -3,12 +3,14 @@ package com.octo.contracts;
 import com.octo.states.DDRObjectState;
 import com.octo.states.InterBankTransferState;
 import net.corda.core.contracts.CommandData;
+import net.corda.core.contracts.CommandWithParties;
 import net.corda.core.contracts.Contract;
 import net.corda.core.identity.Party;
 import net.corda.core.transactions.LedgerTransaction;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import static net.corda.core.contracts.ContractsDSL.requireThat;
 
@@ -22,6 +24,12 @@ public class DDRObjectContract implements Contract {
             CommandData commandData = command.getValue();
             if (commandData instanceof InterBankTransferContract.InterBankTransferCommands.BankTransfer)
                 verifyAtomicExchange(tx);
+            else if (commandData instanceof InterBankTransferContract.InterBankTransferCommands.NettedBankTransfer)
+                verifyNettedExchange(tx);
+            else if (commandData instanceof DDRObjectCommands.MergeDDRObjects)
+                verifyMerge(tx, command);
+            else if (commandData instanceof DDRObjectCommands.SplitDDRObjects)
+                verifySplit(tx, command);
         });
     }
 
@@ -40,9 +48,83 @@ public class DDRObjectContract implements Contract {
         });
     }
 
+    private void verifyNettedExchange(LedgerTransaction tx) {
+        requireThat(require -> {
+            List<DDRObjectState> inputs = tx.inputsOfType(DDRObjectState.class);
+            List<DDRObjectState> outputs = tx.outputsOfType(DDRObjectState.class);
+            require.using("At least 1 InterBank Transfer State should be created in a netted transfer",
+                    !tx.outputsOfType(InterBankTransferState.class).isEmpty());
+            require.using("All DDR Objects consumed should have the same owner", inputs.isEmpty() || doDDRsHaveSameOwner(inputs));
+            require.using("Total amount of DDR Objects should be preserved in a netted transfer",
+                    getTotalAmount(inputs) == getTotalAmount(outputs));
+            return null;
+        });
+    }
+
+    private void verifyMerge(LedgerTransaction tx, CommandWithParties<CommandData> command) {
+        requireThat(require -> {
+            List<DDRObjectState> inputs = tx.inputsOfType(DDRObjectState.class);
+            List<DDRObjectState> outputs = tx.outputsOfType(DDRObjectState.class);
+            require.using("Merging DDR Objects should only consume and create DDR Objects",
+                    tx.getInputs().size() == inputs.size() && tx.getOutputs().size() == outputs.size());
+            require.using("Merging DDR Objects should consume at least 2 DDR Objects", inputs.size() >= 2);
+            require.using("Merging DDR Objects should create fewer DDR Objects than it consumes",
+                    !outputs.isEmpty() && outputs.size() < inputs.size());
+            DDRObjectState first = inputs.get(0);
+            require.using("Merged DDR Objects should have the same owner, issuer and currency", Stream.concat(inputs.stream(), outputs.stream())
+                    .allMatch(ddr -> ddr.getOwner().equals(first.getOwner()) && ddr.getIssuer().equals(first.getIssuer())
+                            && ddr.getCurrency().equals(first.getCurrency())));
+            require.using("Merged DDR Objects should have positive amounts",
+                    outputs.stream().allMatch(ddr -> ddr.getAmount().getQuantity() > 0));
+            require.using("Total amount of DDR Objects should be preserved in a merge", getTotalAmount(inputs) == getTotalAmount(outputs));
+            require.using("Owner of the DDR Objects should be signer of a merge",
+                    command.getSigners().contains(first.getOwner().getOwningKey()));
+            return null;
+        });
+    }
+
+    private void verifySplit(LedgerTransaction tx, CommandWithParties<CommandData> command) {
+        requireThat(require -> {
+            List<DDRObjectState> inputs = tx.inputsOfType(DDRObjectState.class);
+            List<DDRObjectState> outputs = tx.outputsOfType(DDRObjectState.class);
+            require.using("Splitting DDR Objects should only consume and create DDR Objects",
+                    tx.getInputs().size() == inputs.size() && tx.getOutputs().size() == outputs.size());
+            require.using("Splitting DDR Objects should consume exactly 1 DDR Object", inputs.size() == 1);
+            require.using("Splitting DDR Objects should create at least 2 DDR Objects", outputs.size() >= 2);
+            DDRObjectState input = inputs.get(0);
+            require.using("Split DDR Objects should have the same owner, issuer and currency", outputs.stream()
+                    .allMatch(ddr -> ddr.getOwner().equals(input.getOwner()) && ddr.getIssuer().equals(input.getIssuer())
+                            && ddr.getCurrency().equals(input.getCurrency())));
+            require.using("Split DDR Objects should have positive amounts",
+                    outputs.stream().allMatch(ddr -> ddr.getAmount().getQuantity() > 0));
+            require.using("Total amount of DDR Objects should be preserved in a split", getTotalAmount(inputs) == getTotalAmount(outputs));
+            require.using("Owner of the DDR Objects should be signer of a split",
+                    command.getSigners().contains(input.getOwner().getOwningKey()));
+            return null;
+        });
+    }
+
+    private long getTotalAmount(List<DDRObjectState> ddrs) {
+        return ddrs.stream().mapToLong(ddr -> ddr.getAmount().getQuantity()).sum();
+    }
+
     private boolean doDDRsHaveSameOwner(List<DDRObjectState> ddrs) {
         Party owner = (Party) ddrs.get(0).getOwner();
         return ddrs.stream().allMatch(ddr -> ddr.getOwner().equals(owner));
     }
 
+    public interface DDRObjectCommands extends CommandData {
+        /**
+         * Replaces DDR Objects of an owner by fewer DDR Objects of the same total, to keep later transactions small.
+         */
+        class MergeDDRObjects implements DDRObjectCommands {
+        }
+
+        /**
+         * Replaces a DDR Object of an owner by several DDR Objects of the same total, so concurrent transfers of the
+         * owner spend different DDRs.
+         */
+        class SplitDDRObjects implements DDRObjectCommands {
+        }
+    }
 }
@@ -9,7 +9,10 @@ import net.corda.core.contracts.Contract;
 import net.corda.core.transactions.LedgerTransaction;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.corda.core.contracts.ContractsDSL.requireThat;
@@ -18,6 +21,11 @@ public class DDRObligationContract implements Contract {
 
     public static final String ID = "com.octo.contracts.DDRObligationContract";
 
+    /**
+     * Maximum number of DDR Objects issued by a pledge approval, beyond it the transaction gets too large to notarise.
+     */
+    public static final int MAX_ISSUED_DDR_OBJECTS = 1000;
+
     @Override
     public void verify(@NotNull LedgerTransaction tx) {
         requireThat(require -> {
@@ -58,22 +66,33 @@ public class DDRObligationContract implements Contract {
         });
     }
 
+    /**
+     * Approves one or many pledges, possibly of different banks. The DDR Objects issued to each owner, issuer and
+     * currency should add up to the pledges of that owner, issuer and currency.
+     */
     private void verifyApprovePledge(LedgerTransaction tx) {
         requireThat(require -> {
-            require.using("1 output of type DDRObligationState must be created when approving DDR Pledge",
-                    tx.outputsOfType(DDRObligationState.class).size() == 1);
-            require.using("1 input of type DDRObligationState should be consumed when approving DDR Pledge",
-                    tx.getInputs().size() == 1 && tx.inputsOfType(DDRObligationState.class).size() == 1);
-            DDRObligationState output = tx.outputsOfType(DDRObligationState.class).get(0);
+            List<DDRObligationState> inputs = tx.inputsOfType(DDRObligationState.class);
+            List<DDRObligationState> outputs = tx.outputsOfType(DDRObligationState.class);
+            require.using("1 output of type DDRObligationState must be created when approving DDR Pledge, for each consumed pledge",
+                    !outputs.isEmpty() && outputs.size() == inputs.size());
+            require.using("1 input of type DDRObligationState should be consumed when approving DDR Pledge, for each created pledge",
+                    !inputs.isEmpty() && tx.getInputs().size() == inputs.size());
             List<DDRObjectState> outputDDR = tx.outputsOfType(DDRObjectState.class);
-            DDRObligationState input = tx.inputsOfType(DDRObligationState.class).get(0);
-            require.using("Input DDRObligationState should have type PLEDGE", input.getType() == DDRObligationType.PLEDGE);
-            require.using("Input DDRObligationState should have status REQUEST", input.getStatus() == DDRObligationStatus.REQUEST);
-            require.using("Output DDRObligationState should have status APPROVED", output.getStatus() == DDRObligationStatus.APPROVED);
+            require.using("Input DDRObligationState should have type PLEDGE", inputs.stream().allMatch(input -> input.getType() == DDRObligationType.PLEDGE));
+            require.using("Input DDRObligationState should have status REQUEST", inputs.stream().allMatch(input -> input.getStatus() == DDRObligationStatus.REQUEST));
+            require.using("Output DDRObligationState should have status APPROVED", outputs.stream().allMatch(output -> output.getStatus() == DDRObligationStatus.APPROVED));
             require.using("Input and output DDRObligationState should have same attributes except Status",
-                    compareStatesAttributesExceptStatus(input, output));
-            require.using("Pledged amount should be equal to total amount of issued DDR Objects",
-                    compareObligationAmountAndDDRsTotalAmount(input, outputDDR));
+                    compareStatesAttributesExceptStatus(inputs, outputs));
+            require.using("Between 1 and " + MAX_ISSUED_DDR_OBJECTS + " DDR Objects should be issued when approving DDR Pledge, for each pledge",
+                    !outputDDR.isEmpty() && outputDDR.size() <= MAX_ISSUED_DDR_OBJECTS * inputs.size());
+            require.using("Issued DDR Objects should have positive amounts",
+                    outputDDR.stream().allMatch(ddr -> ddr.getAmount().getQuantity() > 0));
+            Map<List<Object>, Long> pledged = obligationTotals(inputs);
+            Map<List<Object>, Long> issued = ddrTotals(outputDDR);
+            require.using("Issued DDR Objects should have the owner, issuer and currency of the pledge",
+                    pledged.keySet().containsAll(issued.keySet()));
+            require.using("Pledged amount should be equal to total amount of issued DDR Objects", pledged.equals(issued));
             return null;
         });
     }
@@ -112,23 +131,27 @@ public class DDRObligationContract implements Contract {
         });
     }
 
+    /**
+     * Approves one or many redeems, the DDR Objects consumed for each owner, issuer and currency should cover the
+     * redeems of that owner, issuer and currency, the rest coming back as change.
+     */
     private void verifyApproveRedeem(LedgerTransaction tx) {
         requireThat(require -> {
-            require.using("1 output of type DDRObligationState must be created when approving DDR Redeem",
-                    tx.outputsOfType(DDRObligationState.class).size() == 1);
-            require.using("1 input of type DDRObligationState should be consumed when approving DDR Redeem",
-                    tx.inputsOfType(DDRObligationState.class).size() == 1);
-            DDRObligationState output = tx.outputsOfType(DDRObligationState.class).get(0);
+            List<DDRObligationState> inputs = tx.inputsOfType(DDRObligationState.class);
+            List<DDRObligationState> outputs = tx.outputsOfType(DDRObligationState.class);
+            require.using("1 output of type DDRObligationState must be created when approving DDR Redeem, for each consumed redeem",
+                    !outputs.isEmpty() && outputs.size() == inputs.size());
+            require.using("1 input of type DDRObligationState should be consumed when approving DDR Redeem, for each created redeem",
+                    !inputs.isEmpty());
             List<DDRObjectState> inputDDR = tx.inputsOfType(DDRObjectState.class);
             List<DDRObjectState> outputDDR = tx.outputsOfType(DDRObjectState.class);
-            DDRObligationState input = tx.inputsOfType(DDRObligationState.class).get(0);
-            require.using("Input DDRObligationState should have type REDEEM", input.getType() == DDRObligationType.REDEEM);
-            require.using("Input DDRObligationState should have status REQUEST", input.getStatus() == DDRObligationStatus.REQUEST);
-            require.using("Output DDRObligationState should have status APPROVED", output.getStatus() == DDRObligationStatus.APPROVED);
+            require.using("Input DDRObligationState should have type REDEEM", inputs.stream().allMatch(input -> input.getType() == DDRObligationType.REDEEM));
+            require.using("Input DDRObligationState should have status REQUEST", inputs.stream().allMatch(input -> input.getStatus() == DDRObligationStatus.REQUEST));
+            require.using("Output DDRObligationState should have status APPROVED", outputs.stream().allMatch(output -> output.getStatus() == DDRObligationStatus.APPROVED));
             require.using("Input and output DDRObligationState should have same attributes except Status",
-                    compareStatesAttributesExceptStatus(input, output));
+                    compareStatesAttributesExceptStatus(inputs, outputs));
             require.using("Redeemed amount should be equal to total amount of consumed DDR Objects",
-                    isRedeemBlanced(input, inputDDR, outputDDR));
+                    isRedeemBlanced(inputs, inputDDR, outputDDR));
             return null;
         });
     }
@@ -161,16 +184,50 @@ public class DDRObligationContract implements Contract {
                 st1.getIssuer().equals(st2.getIssuer()) && st1.getType().equals(st2.getType());
     }
 
-    private boolean compareObligationAmountAndDDRsTotalAmount(DDRObligationState obligation, List<DDRObjectState> ddrs) {
-        return ddrs.stream().mapToLong(ddr -> ddr.getAmount().getQuantity()).sum() == obligation.getAmount().getQuantity();
+    /**
+     * Every input has an output of the same external id, and the same attributes except the status.
+     */
+    private boolean compareStatesAttributesExceptStatus(List<DDRObligationState> inputs, List<DDRObligationState> outputs) {
+        Map<String, DDRObligationState> outputsByExternalId = outputs.stream()
+                .collect(Collectors.toMap(DDRObligationState::getExternalId, output -> output, (first, second) -> first));
+        return outputsByExternalId.size() == outputs.size() && inputs.stream().allMatch(input ->
+                outputsByExternalId.containsKey(input.getExternalId())
+                        && compareStatesAttributesExceptStatus(input, outputsByExternalId.get(input.getExternalId())));
     }
 
-    private boolean isRedeemBlanced(DDRObligationState input, List<DDRObjectState> inputDDR, List<DDRObjectState> outputDDR) {
-        long amountToRedeem = input.getAmount().getQuantity();
-        long amountConsumed = inputDDR.stream().mapToLong(ddr -> ddr.getAmount().getQuantity()).sum();
-        long amountProduced = outputDDR.stream().mapToLong(ddr -> ddr.getAmount().getQuantity()).sum();
+    /**
+     * Total quantity of the obligations of each owner, issuer and currency.
+     */
+    private Map<List<Object>, Long> obligationTotals(List<DDRObligationState> obligations) {
+        return obligations.stream().collect(Collectors.groupingBy(obligation ->
+                Arrays.asList(obligation.getOwner(), obligation.getIssuer(), obligation.getCurrency()),
+                Collectors.summingLong(obligation -> obligation.getAmount().getQuantity())));
+    }
 
-        return amountConsumed >= amountToRedeem && amountProduced == amountConsumed - amountToRedeem;
+    /**
+     * Total quantity of the DDR Objects of each owner, issuer and currency.
+     */
+    private Map<List<Object>, Long> ddrTotals(List<DDRObjectState> ddrs) {
+        return ddrs.stream().collect(Collectors.groupingBy(ddr -> Arrays.asList(ddr.getOwner(), ddr.getIssuer(), ddr.getCurrency()),
+                Collectors.summingLong(ddr -> ddr.getAmount().getQuantity())));
+    }
+
+    /**
+     * For each owner, issuer and currency, the consumed DDR Objects cover the redeemed amount and the produced DDR
+     * Objects are the change.
+     */
+    private boolean isRedeemBlanced(List<DDRObligationState> inputs, List<DDRObjectState> inputDDR, List<DDRObjectState> outputDDR) {
+        Map<List<Object>, Long> redeemed = obligationTotals(inputs);
+        Map<List<Object>, Long> consumed = ddrTotals(inputDDR);
+        Map<List<Object>, Long> produced = ddrTotals(outputDDR);
+        if (!redeemed.keySet().containsAll(consumed.keySet()) || !consumed.keySet().containsAll(produced.keySet())) return false;
+
+        return redeemed.entrySet().stream().allMatch(redeem -> {
+            long amountToRedeem = redeem.getValue();
+            long amountConsumed = consumed.getOrDefault(redeem.getKey(), 0L);
+            long amountProduced = produced.getOrDefault(redeem.getKey(), 0L);
+            return amountConsumed >= amountToRedeem && amountProduced == amountConsumed - amountToRedeem;
+        });
     }
 
     public interface DDRObligationCommands extends CommandData {
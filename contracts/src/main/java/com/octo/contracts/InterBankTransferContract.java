@@ -8,6 +8,7 @@ import net.corda.core.identity.Party;
 import net.corda.core.transactions.LedgerTransaction;
 import org.jetbrains.annotations.NotNull;
 
+import java.security.PublicKey;
 import java.util.List;
 
 import static net.corda.core.contracts.ContractsDSL.requireThat;
@@ -23,6 +24,8 @@ public class InterBankTransferContract implements Contract {
             CommandData commandData = command.getValue();
             if (commandData instanceof InterBankTransferCommands.BankTransfer)
                 verifyBankTransfer(tx);
+            else if (commandData instanceof InterBankTransferCommands.NettedBankTransfer)
+                verifyNettedBankTransfer(tx, command.getSigners());
         });
     }
 
@@ -63,6 +66,67 @@ public class InterBankTransferContract implements Contract {
             throw new IllegalArgumentException("Failed requirement: Receiver Bank should own output DDR Objects equal to transfer amount in an interbank transfer");
     }
 
+    /**
+     * A netted transfer settles many transfers between two banks, in both directions, with a single DDR movement
+     * equal to the net position, paid by the bank that owes it.
+     */
+    private void verifyNettedBankTransfer(LedgerTransaction tx, List<PublicKey> signers) {
+        List<InterBankTransferState> outputTransferStates = tx.outputsOfType(InterBankTransferState.class);
+        List<DDRObjectState> inputs = tx.inputsOfType(DDRObjectState.class);
+        List<DDRObjectState> outputs = tx.outputsOfType(DDRObjectState.class);
+        requireThat(require -> {
+            require.using("No InterBank Transfer State should be consumed in a netted transfer",
+                    tx.inputsOfType(InterBankTransferState.class).isEmpty());
+            require.using("At least 1 InterBank Transfer State should be created in a netted transfer",
+                    !outputTransferStates.isEmpty());
+            require.using("Sender and receiver banks should be different in an interbank transfer",
+                    outputTransferStates.stream().noneMatch(transfer -> transfer.getReceiverBank().equals(transfer.getSenderBank())));
+            require.using("Sender and receiver accounts should be different in an interbank transfer",
+                    outputTransferStates.stream().noneMatch(transfer -> transfer.getSenderRIB().equalsIgnoreCase(transfer.getReceiverRIB())));
+            InterBankTransferState first = outputTransferStates.get(0);
+            require.using("All transfers of a netted transfer should be between the same two banks",
+                    outputTransferStates.stream().allMatch(transfer -> isBetween(transfer, first.getSenderBank(), first.getReceiverBank())));
+            require.using("Transfers of a netted transfer should have distinct external ids",
+                    outputTransferStates.stream().map(InterBankTransferState::getExternalId).distinct().count() == outputTransferStates.size());
+            require.using("Both banks should sign a netted transfer",
+                    signers.contains(first.getSenderBank().getOwningKey()) && signers.contains(first.getReceiverBank().getOwningKey()));
+            return null;
+        });
+
+        Party bank = outputTransferStates.get(0).getSenderBank();
+        Party otherBank = outputTransferStates.get(0).getReceiverBank();
+        long netPosition = outputTransferStates.stream().mapToLong(transfer -> transfer.getSenderBank().equals(bank) ?
+                transfer.getAmount().getQuantity() : -transfer.getAmount().getQuantity()).sum();
+        if (netPosition == 0) {
+            requireThat(require -> {
+                require.using("No DDR Objects should be moved when the net position is zero", inputs.isEmpty() && outputs.isEmpty());
+                return null;
+            });
+            return;
+        }
+        Party payer = netPosition > 0 ? bank : otherBank;
+        Party payee = netPosition > 0 ? otherBank : bank;
+        long netAmount = Math.abs(netPosition);
+        requireThat(require -> {
+            require.using("Only DDR Objects of the paying bank should be consumed in a netted transfer",
+                    !inputs.isEmpty() && inputs.stream().allMatch(ddr -> ddr.getOwner().equals(payer)));
+            long totalInputAmount = inputs.stream().mapToLong(ddr -> ddr.getAmount().getQuantity()).sum();
+            require.using("Paying Bank should consume sufficient DDR Objects in a netted transfer", totalInputAmount >= netAmount);
+            require.using("Output DDR Objects should only be owned by the two banks of a netted transfer",
+                    outputs.stream().allMatch(ddr -> ddr.getOwner().equals(payer) || ddr.getOwner().equals(payee)));
+            require.using("Receiving Bank should own output DDR Objects equal to the net amount in a netted transfer",
+                    getTotalAmountOfParty(outputs, payee) == netAmount);
+            require.using("Paying Bank should own output DDR Objects equal to rest in a netted transfer",
+                    getTotalAmountOfParty(outputs, payer) == totalInputAmount - netAmount);
+            return null;
+        });
+    }
+
+    private boolean isBetween(InterBankTransferState transfer, Party bank, Party otherBank) {
+        return (transfer.getSenderBank().equals(bank) && transfer.getReceiverBank().equals(otherBank))
+                || (transfer.getSenderBank().equals(otherBank) && transfer.getReceiverBank().equals(bank));
+    }
+
     private long getTotalAmountOfParty(List<DDRObjectState> ddrs, Party party) {
         return ddrs.stream().filter(ddr -> ddr.getOwner().equals(party)).mapToLong(ddr -> ddr.getAmount().getQuantity()).sum();
     }
@@ -70,5 +134,8 @@ public class InterBankTransferContract implements Contract {
     public interface InterBankTransferCommands extends CommandData {
         class BankTransfer implements InterBankTransferCommands {
         }
+
+        class NettedBankTransfer implements InterBankTransferCommands {
+        }
     }
 }
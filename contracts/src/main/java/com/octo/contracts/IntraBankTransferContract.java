@@ -4,9 +4,12 @@ import com.octo.states.IntraBankTransferState;
 import net.corda.core.contracts.CommandData;
 import net.corda.core.contracts.CommandWithParties;
 import net.corda.core.contracts.Contract;
+import net.corda.core.identity.Party;
 import net.corda.core.transactions.LedgerTransaction;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 import static net.corda.core.contracts.ContractsDSL.requireSingleCommand;
 import static net.corda.core.contracts.ContractsDSL.requireThat;
 
@@ -14,11 +17,23 @@ public class IntraBankTransferContract implements Contract {
 
     public static final String ID = "com.octo.contracts.IntraBankTransferContract";
 
+    /**
+     * Maximum number of transfers recorded by one RecordTransferBatch transaction, keeps the transaction size bounded.
+     */
+    public static final int MAX_BATCH_SIZE = 200;
+
     @Override
     public void verify(@NotNull LedgerTransaction tx) {
-        CommandWithParties<IntraBankTransferCommands.RecordTransfer> command =
-                requireSingleCommand(tx.getCommands(), IntraBankTransferCommands.RecordTransfer.class);
+        CommandWithParties<IntraBankTransferCommands> command =
+                requireSingleCommand(tx.getCommands(), IntraBankTransferCommands.class);
+
+        if (command.getValue() instanceof IntraBankTransferCommands.RecordTransfer)
+            verifyRecordTransfer(tx, command);
+        else if (command.getValue() instanceof IntraBankTransferCommands.RecordTransferBatch)
+            verifyRecordTransferBatch(tx, command);
+    }
 
+    private void verifyRecordTransfer(LedgerTransaction tx, CommandWithParties<IntraBankTransferCommands> command) {
         requireThat(require -> {
             require.using("Recording an IntraBank Transfer should not consume any inputs", tx.getInputs().isEmpty());
             require.using("Recording an IntraBank Transfer should have one output that is IntraBankTransferState",
@@ -32,8 +47,32 @@ public class IntraBankTransferContract implements Contract {
         });
     }
 
+    private void verifyRecordTransferBatch(LedgerTransaction tx, CommandWithParties<IntraBankTransferCommands> command) {
+        List<IntraBankTransferState> transferStates = tx.outputsOfType(IntraBankTransferState.class);
+        requireThat(require -> {
+            require.using("Recording an IntraBank Transfer batch should not consume any inputs", tx.getInputs().isEmpty());
+            require.using("Recording an IntraBank Transfer batch should only have outputs of type IntraBankTransferState",
+                    !transferStates.isEmpty() && tx.getOutputs().size() == transferStates.size());
+            require.using("Recording an IntraBank Transfer batch should not have more than " + MAX_BATCH_SIZE + " outputs",
+                    transferStates.size() <= MAX_BATCH_SIZE);
+            require.using("IntraBank Transfers should have different sender and receiver",
+                    transferStates.stream().noneMatch(transfer -> transfer.getReceiverRIB().equalsIgnoreCase(transfer.getSenderRIB())));
+            Party bank = transferStates.get(0).getBank();
+            require.using("All IntraBank Transfers of a batch should belong to the same bank",
+                    transferStates.stream().allMatch(transfer -> transfer.getBank().equals(bank)));
+            require.using("IntraBank Transfers of a batch should have distinct external ids",
+                    transferStates.stream().map(IntraBankTransferState::getExternalId).distinct().count() == transferStates.size());
+            require.using("Concerned bank should be signer of IntraBank Transfer Transaction",
+                    command.getSigners().contains(bank.getOwningKey()));
+            return null;
+        });
+    }
+
     public interface IntraBankTransferCommands extends CommandData {
         class RecordTransfer implements IntraBankTransferCommands {
         }
+
+        class RecordTransferBatch implements IntraBankTransferCommands {
+        }
     }
 }
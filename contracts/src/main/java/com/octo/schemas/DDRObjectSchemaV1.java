@@ -0,0 +1,14 @@
+package com.octo.schemas;
+
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.Collections;
+
+@CordaSerializable
+public class DDRObjectSchemaV1 extends MappedSchema {
+
+    public DDRObjectSchemaV1() {
+        super(DDRObjectSchemaFamily.class, 1, Collections.singletonList(PersistentDDRObject.class));
+    }
+}
@@ -0,0 +1,14 @@
+package com.octo.schemas;
+
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.Collections;
+
+@CordaSerializable
+public class DDRObligationSchemaV2 extends MappedSchema {
+
+    public DDRObligationSchemaV2() {
+        super(DDRObligationSchemaFamily.class, 2, Collections.singletonList(PersistentDDRObligationV2.class));
+    }
+}
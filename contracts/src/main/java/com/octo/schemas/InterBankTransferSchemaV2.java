@@ -0,0 +1,14 @@
+package com.octo.schemas;
+
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.Collections;
+
+@CordaSerializable
+public class InterBankTransferSchemaV2 extends MappedSchema {
+
+    public InterBankTransferSchemaV2() {
+        super(InterBankTransferSchemaFamily.class, 2, Collections.singletonList(PersistentInterBankTransferV2.class));
+    }
+}
@@ -0,0 +1,14 @@
+package com.octo.schemas;
+
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.Collections;
+
+@CordaSerializable
+public class IntraBankTransferSchemaV2 extends MappedSchema {
+
+    public IntraBankTransferSchemaV2() {
+        super(IntraBankTransferSchemaFamily.class, 2, Collections.singletonList(PersistentIntraBankTransferV2.class));
+    }
+}
@@ -0,0 +1,65 @@
+package com.octo.schemas;
+
+import net.corda.core.schemas.PersistentState;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * DDR Object columns used to select DDRs and compute balances in the database, with the parties as X.500 names like
+ * the V2 obligation and transfer schemas. The owner index covers selection by owner and currency sorted by quantity.
+ */
+@Entity
+@Table(name = "ddr_object_states", indexes = {
+        @Index(name = "ddr_object_owner_idx", columnList = "owner_name,currency,quantity"),
+        @Index(name = "ddr_object_issuer_idx", columnList = "issuer_name,currency")
+})
+public class PersistentDDRObject extends PersistentState implements Serializable {
+
+    @Column(name = "owner_name")
+    private String owner;
+
+    @Column(name = "issuer_name")
+    private String issuer;
+
+    @Column(name = "currency", length = 3)
+    private String currency;
+
+    @Column(name = "quantity")
+    private long quantity;
+
+    @Column(name = "issuer_date")
+    private Date issuerDate;
+
+    public PersistentDDRObject() {
+    }
+
+    public PersistentDDRObject(String owner, String issuer, String currency, long quantity, Date issuerDate) {
+        this.owner = owner;
+        this.issuer = issuer;
+        this.currency = currency;
+        this.quantity = quantity;
+        this.issuerDate = issuerDate;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public Date getIssuerDate() {
+        return issuerDate;
+    }
+}
@@ -0,0 +1,111 @@
+package com.octo.schemas;
+
+import com.octo.enums.DDRObligationStatus;
+import com.octo.enums.DDRObligationType;
+import net.corda.core.schemas.PersistentState;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Obligation columns with the parties as X.500 names and the currency code. The pending index covers the pending
+ * obligations of an issuer by type and date, the requester index the obligations of a bank.
+ */
+@Entity
+@Table(name = "ddr_obligation_states_v2", indexes = {
+        @Index(name = "ddr_obligation_v2_external_id_idx", columnList = "external_id"),
+        @Index(name = "ddr_obligation_v2_pending_idx", columnList = "status,issuer_name,type,requester_date"),
+        @Index(name = "ddr_obligation_v2_requester_idx", columnList = "requester_name,status,type")
+})
+public class PersistentDDRObligationV2 extends PersistentState implements Serializable {
+    @Column(name = "external_id")
+    private String externalId;
+
+    @Column(name = "issuer_name")
+    private String issuer;
+
+    @Column(name = "requester_date")
+    private Date requesterDate;
+
+    @Column(name = "requester_name")
+    private String requester;
+
+    @Column(name = "amount")
+    private long amount;
+
+    @Column(name = "currency", length = 3)
+    private String currency;
+
+    @Column(name = "owner_name")
+    private String owner;
+
+    @Column(name = "type", length = 16)
+    @Enumerated(EnumType.STRING)
+    private DDRObligationType type;
+
+    @Column(name = "status", length = 16)
+    @Enumerated(EnumType.STRING)
+    private DDRObligationStatus status;
+
+    @Column(name = "linear_id")
+    private UUID linearId;
+
+    public PersistentDDRObligationV2() {
+    }
+
+    public PersistentDDRObligationV2(String externalId, String issuer, Date requesterDate, String requester, long amount, String currency,
+                                     String owner, DDRObligationType type, DDRObligationStatus status, UUID linearId) {
+        this.externalId = externalId;
+        this.issuer = issuer;
+        this.requesterDate = requesterDate;
+        this.requester = requester;
+        this.amount = amount;
+        this.currency = currency;
+        this.owner = owner;
+        this.type = type;
+        this.status = status;
+        this.linearId = linearId;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public Date getRequesterDate() {
+        return requesterDate;
+    }
+
+    public String getRequester() {
+        return requester;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public DDRObligationType getType() {
+        return type;
+    }
+
+    public DDRObligationStatus getStatus() {
+        return status;
+    }
+
+    public UUID getLinearId() {
+        return linearId;
+    }
+}
@@ -0,0 +1,92 @@
+package com.octo.schemas;
+
+import net.corda.core.schemas.PersistentState;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Intra-bank transfer columns with the currency code. The RIB indexes cover the transfers of an account by date.
+ */
+@Entity
+@Table(name = "intrabank_transfer_states_v2", indexes = {
+        @Index(name = "intrabank_transfer_v2_external_id_idx", columnList = "external_id"),
+        @Index(name = "intrabank_transfer_v2_sender_rib_idx", columnList = "sender_rib,execution_date"),
+        @Index(name = "intrabank_transfer_v2_receiver_rib_idx", columnList = "receiver_rib,execution_date"),
+        @Index(name = "intrabank_transfer_v2_execution_date_idx", columnList = "execution_date")
+})
+public class PersistentIntraBankTransferV2 extends PersistentState implements Serializable {
+
+    @Column(name = "sender_rib")
+    private String senderRIB;
+
+    @Column(name = "receiver_rib")
+    private String receiverRIB;
+
+    @Column(name = "bank")
+    private String bank;
+
+    @Column(name = "amount")
+    private long amount;
+
+    @Column(name = "currency", length = 3)
+    private String currency;
+
+    @Column(name = "execution_date")
+    private Date executionDate;
+
+    @Column(name = "external_id")
+    private String externalId;
+
+    @Column(name = "linear_id")
+    private UUID linearId;
+
+    public PersistentIntraBankTransferV2(String senderRIB, String receiverRIB, String bank, long amount,
+                                         String currency, Date executionDate, String externalId, UUID linearId) {
+        this.senderRIB = senderRIB;
+        this.receiverRIB = receiverRIB;
+        this.bank = bank;
+        this.amount = amount;
+        this.currency = currency;
+        this.executionDate = executionDate;
+        this.externalId = externalId;
+        this.linearId = linearId;
+    }
+
+    public PersistentIntraBankTransferV2() {
+    }
+
+    public String getSenderRIB() {
+        return senderRIB;
+    }
+
+    public String getReceiverRIB() {
+        return receiverRIB;
+    }
+
+    public String getBank() {
+        return bank;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public Date getExecutionDate() {
+        return executionDate;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+
+    public UUID getLinearId() {
+        return linearId;
+    }
+}
\ No newline at end of file
@@ -2,19 +2,21 @@ package com.octo.states;
 
 import com.octo.builders.DDRObjectStateBuilder;
 import com.octo.contracts.DDRObjectContract;
+import com.octo.schemas.DDRObjectSchemaV1;
+import com.octo.schemas.PersistentDDRObject;
 import net.corda.core.contracts.*;
 import net.corda.core.identity.AbstractParty;
 import net.corda.core.identity.Party;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+import net.corda.core.schemas.QueryableState;
 import net.corda.core.serialization.ConstructorForDeserialization;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-import java.util.Currency;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 @BelongsToContract(DDRObjectContract.class)
-public class DDRObjectState implements FungibleState<Currency>, OwnableState {
+public class DDRObjectState implements FungibleState<Currency>, OwnableState, QueryableState {
 
     private final Party issuer;
     private final Date issuerDate;
@@ -71,4 +73,18 @@ public class DDRObjectState implements FungibleState<Currency>, OwnableState {
     public Currency getCurrency() {
         return amount.getToken();
     }
+
+    @NotNull
+    @Override
+    public PersistentState generateMappedObject(@NotNull MappedSchema schema) {
+        if (schema instanceof DDRObjectSchemaV1)
+            return new PersistentDDRObject(owner.getName().toString(), issuer.getName().toString(), amount.getToken().getCurrencyCode(), amount.getQuantity(), issuerDate);
+        else throw new IllegalArgumentException("Unsupported Schema");
+    }
+
+    @NotNull
+    @Override
+    public Iterable<MappedSchema> supportedSchemas() {
+        return Collections.singletonList(new DDRObjectSchemaV1());
+    }
 }
@@ -5,7 +5,9 @@ import com.octo.contracts.DDRObligationContract;
 import com.octo.enums.DDRObligationStatus;
 import com.octo.enums.DDRObligationType;
 import com.octo.schemas.DDRObligationSchemaV1;
+import com.octo.schemas.DDRObligationSchemaV2;
 import com.octo.schemas.PersistentDDRObligation;
+import com.octo.schemas.PersistentDDRObligationV2;
 import net.corda.core.contracts.*;
 import net.corda.core.identity.AbstractParty;
 import net.corda.core.identity.Party;
@@ -115,7 +117,10 @@ public class DDRObligationState implements LinearState, OwnableState, QueryableS
     @NotNull
     @Override
     public PersistentState generateMappedObject(@NotNull MappedSchema schema) {
-        if (schema instanceof DDRObligationSchemaV1)
+        if (schema instanceof DDRObligationSchemaV2)
+            return new PersistentDDRObligationV2(externalId, issuer.getName().toString(), requesterDate, requester.getName().toString(),
+                    amount.getQuantity(), amount.getToken().getCurrencyCode(), owner.getName().toString(), type, status, linearId.getId());
+        else if (schema instanceof DDRObligationSchemaV1)
             return new PersistentDDRObligation(externalId, issuer, requesterDate, requester, amount.getQuantity(), amount.getToken().getDisplayName(),
                     owner, type, status, linearId.getId());
         else throw new IllegalArgumentException("Unsupported Schema");
@@ -124,6 +129,7 @@ public class DDRObligationState implements LinearState, OwnableState, QueryableS
     @NotNull
     @Override
     public Iterable<MappedSchema> supportedSchemas() {
-        return Collections.singletonList(new DDRObligationSchemaV1());
+        // The vault only writes the indexed V2 table, V1 rows of existing nodes are copied to it by SchemaMigrationService
+        return Collections.singletonList(new DDRObligationSchemaV2());
     }
 }
@@ -3,7 +3,9 @@ package com.octo.states;
 import com.octo.builders.InterBankTransferStateBuilder;
 import com.octo.contracts.InterBankTransferContract;
 import com.octo.schemas.InterBankTransferSchemaV1;
+import com.octo.schemas.InterBankTransferSchemaV2;
 import com.octo.schemas.PersistentInterBankTransfer;
+import com.octo.schemas.PersistentInterBankTransferV2;
 import net.corda.core.contracts.Amount;
 import net.corda.core.contracts.BelongsToContract;
 import net.corda.core.contracts.LinearState;
@@ -98,7 +100,10 @@ public class InterBankTransferState implements LinearState, QueryableState {
     @NotNull
     @Override
     public PersistentState generateMappedObject(@NotNull MappedSchema schema) {
-        if (schema instanceof InterBankTransferSchemaV1)
+        if (schema instanceof InterBankTransferSchemaV2)
+            return new PersistentInterBankTransferV2(senderRIB, receiverRIB, senderBank.getName().toString(), receiverBank.getName().toString(),
+                    amount.getQuantity(), amount.getToken().getCurrencyCode(), executionDate, externalId, linearId.getId());
+        else if (schema instanceof InterBankTransferSchemaV1)
             return new PersistentInterBankTransfer(senderRIB, receiverRIB, senderBank.toString(), receiverBank.toString(), amount.getQuantity(),
                     amount.getToken().getDisplayName(), executionDate, externalId, linearId.getId());
         else throw new IllegalArgumentException("Unsupported Schema");
@@ -107,6 +112,6 @@ public class InterBankTransferState implements LinearState, QueryableState {
     @NotNull
     @Override
     public Iterable<MappedSchema> supportedSchemas() {
-        return Collections.singletonList(new InterBankTransferSchemaV1());
+        return Collections.singletonList(new InterBankTransferSchemaV2());
     }
 }
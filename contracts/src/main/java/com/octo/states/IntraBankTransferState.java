@@ -3,7 +3,9 @@ package com.octo.states;
 import com.octo.builders.IntraBankTransferStateBuilder;
 import com.octo.contracts.IntraBankTransferContract;
 import com.octo.schemas.IntraBankTransferSchemaV1;
+import com.octo.schemas.IntraBankTransferSchemaV2;
 import com.octo.schemas.PersistentIntraBankTransfer;
+import com.octo.schemas.PersistentIntraBankTransferV2;
 import net.corda.core.contracts.Amount;
 import net.corda.core.contracts.BelongsToContract;
 import net.corda.core.contracts.LinearState;
@@ -97,7 +99,10 @@ public class IntraBankTransferState implements LinearState, QueryableState {
     @NotNull
     @Override
     public PersistentState generateMappedObject(@NotNull MappedSchema schema) {
-        if (schema instanceof IntraBankTransferSchemaV1)
+        if (schema instanceof IntraBankTransferSchemaV2)
+            return new PersistentIntraBankTransferV2(senderRIB, receiverRIB, bank.getName().toString(), amount.getQuantity(),
+                    amount.getToken().getCurrencyCode(), executionDate, externalId, linearId.getId());
+        else if (schema instanceof IntraBankTransferSchemaV1)
             return new PersistentIntraBankTransfer(senderRIB, receiverRIB, bank.toString(), amount.getQuantity(), amount.getToken().getDisplayName(),
                     executionDate, externalId, linearId.getId());
         else throw new IllegalArgumentException("Unsupported Schema");
@@ -106,6 +111,6 @@ public class IntraBankTransferState implements LinearState, QueryableState {
     @NotNull
     @Override
     public Iterable<MappedSchema> supportedSchemas() {
-        return Collections.singletonList(new IntraBankTransferSchemaV1());
+        return Collections.singletonList(new IntraBankTransferSchemaV2());
     }
 }
@@ -3,6 +3,8 @@ package com.octo.contracts;
 import com.google.common.collect.ImmutableList;
 import com.octo.builders.DDRObjectStateBuilder;
 import com.octo.builders.DDRObligationStateBuilder;
+import com.octo.enums.DDRObligationStatus;
+import com.octo.states.DDRObligationState;
 import org.junit.Test;
 
 import static net.corda.testing.node.NodeTestUtils.ledger;
@@ -134,4 +136,68 @@ public class ApprovePledgeContractTests extends BaseObligationContractTests {
         }));
     }
 
+    @Test
+    public void approvePledgeShouldIssueDDRsOfThePledgeOwnerAndIssuer() {
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey(), centralBank.getPublicKey()),
+                        new DDRObligationContract.DDRObligationCommands.ApproveDDRPledge());
+
+                tx.input(DDRObligationContract.ID, examplePledgeRequest);
+                tx.output(DDRObligationContract.ID, examplePledgeApproved);
+                tx.failsWith("Between 1 and " + DDRObligationContract.MAX_ISSUED_DDR_OBJECTS + " DDR Objects should be issued when approving DDR Pledge");
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).owner(bankB.getParty()).build());
+                    return tw.failsWith("Issued DDR Objects should have the owner, issuer and currency of the pledge");
+                });
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).issuer(bankB.getParty()).build());
+                    return tw.failsWith("Issued DDR Objects should have the owner, issuer and currency of the pledge");
+                });
+
+                tx.output(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).amount(600).build());
+                tx.output(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).amount(400).build());
+                return tx.verifies();
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void approvePledgeBatchShouldIssueDDRsOfEachPledge() {
+        DDRObligationState otherPledgeRequest = new DDRObligationStateBuilder(examplePledgeRequest).requester(bankB.getParty())
+                .owner(bankB.getParty()).externalId("otherExternalId").build();
+        DDRObligationState otherPledgeApproved = new DDRObligationStateBuilder(otherPledgeRequest).status(DDRObligationStatus.APPROVED).build();
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey(), bankB.getPublicKey(), centralBank.getPublicKey()),
+                        new DDRObligationContract.DDRObligationCommands.ApproveDDRPledge());
+
+                tx.input(DDRObligationContract.ID, examplePledgeRequest);
+                tx.input(DDRObligationContract.ID, otherPledgeRequest);
+                tx.output(DDRObligationContract.ID, examplePledgeApproved);
+                tx.output(DDRObjectContract.ID, exampleDDRObject);
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObligationContract.ID, examplePledgeApproved);
+                    return tw.failsWith("Input and output DDRObligationState should have same attributes except Status");
+                });
+
+                tx.output(DDRObligationContract.ID, otherPledgeApproved);
+                tx.failsWith("Pledged amount should be equal to total amount of issued DDR Objects");
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, exampleDDRObject);
+                    return tw.failsWith("Pledged amount should be equal to total amount of issued DDR Objects");
+                });
+
+                tx.output(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).owner(bankB.getParty()).build());
+                return tx.verifies();
+            });
+            return null;
+        }));
+    }
+
 }
@@ -3,6 +3,8 @@ package com.octo.contracts;
 import com.google.common.collect.ImmutableList;
 import com.octo.builders.DDRObjectStateBuilder;
 import com.octo.builders.DDRObligationStateBuilder;
+import com.octo.enums.DDRObligationStatus;
+import com.octo.states.DDRObligationState;
 import org.junit.Test;
 
 import static net.corda.testing.node.NodeTestUtils.ledger;
@@ -134,4 +136,35 @@ public class ApproveRedeemContractTests extends BaseObligationContractTests {
         }));
     }
 
+    @Test
+    public void approveRedeemBatchShouldConsumeDDRsCoveringAllRedeems() {
+        DDRObligationState otherRedeemRequest = new DDRObligationStateBuilder(exampleRedeemRequest).externalId("otherExternalId").build();
+        DDRObligationState otherRedeemApproved = new DDRObligationStateBuilder(otherRedeemRequest).status(DDRObligationStatus.APPROVED).build();
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey(), centralBank.getPublicKey()),
+                        new DDRObligationContract.DDRObligationCommands.ApproveDDRRedeem());
+
+                tx.input(DDRObligationContract.ID, exampleRedeemRequest);
+                tx.input(DDRObligationContract.ID, otherRedeemRequest);
+                tx.output(DDRObligationContract.ID, exampleRedeemApproved);
+                tx.output(DDRObligationContract.ID, otherRedeemApproved);
+                tx.input(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).amount(1500).build());
+                tx.failsWith("Redeemed amount should be equal to total amount of consumed DDR Objects");
+
+                tx.input(DDRObjectContract.ID, exampleDDRObject);
+                tx.failsWith("Redeemed amount should be equal to total amount of consumed DDR Objects");
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).amount(500).owner(bankB.getParty()).build());
+                    return tw.failsWith("Redeemed amount should be equal to total amount of consumed DDR Objects");
+                });
+
+                tx.output(DDRObjectContract.ID, new DDRObjectStateBuilder(exampleDDRObject).amount(500).build());
+                return tx.verifies();
+            });
+            return null;
+        }));
+    }
+
 }
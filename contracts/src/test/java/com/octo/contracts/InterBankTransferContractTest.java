@@ -114,5 +114,62 @@ public class InterBankTransferContractTest extends BaseObligationContractTests {
         }));
     }
 
+    @Test
+    public void nettedTransferShouldOnlyMoveNetAmountFromPayingBank() {
+        InterBankTransferState interTransfer300FromB = new InterBankTransferState("otherSenderRIB", "otherReceiverRIB",
+                bankB.getParty(), bankA.getParty(), new Amount<>(300, exampleCurrency), exampleDate, "otherExternalId");
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey(), bankB.getPublicKey(), centralBank.getPublicKey()),
+                        new InterBankTransferContract.InterBankTransferCommands.NettedBankTransfer());
+
+                tx.output(InterBankTransferContract.ID, interTransfer1000);
+                tx.output(InterBankTransferContract.ID, interTransfer300FromB);
+                tx.input(DDRObjectContract.ID, ddr1000);
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(ddr1000).owner(bankB.getParty()).build());
+                    return tw.failsWith("Receiving Bank should own output DDR Objects equal to the net amount in a netted transfer");
+                });
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(ddr1000).amount(700).owner(bankB.getParty()).build());
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(ddr300).owner(centralBank.getParty()).build());
+                    return tw.failsWith("Output DDR Objects should only be owned by the two banks of a netted transfer");
+                });
+
+                tx.output(DDRObjectContract.ID, new DDRObjectStateBuilder(ddr1000).amount(700).owner(bankB.getParty()).build());
+                tx.output(DDRObjectContract.ID, ddr300);
+                tx.verifies();
+
+                tx.tweak(tw -> {
+                    tw.output(InterBankTransferContract.ID, interTransfer300FromB);
+                    return tw.failsWith("Transfers of a netted transfer should have distinct external ids");
+                });
+                return null;
+            });
+            return null;
+        }));
+    }
+
+    @Test
+    public void nettedTransferWithZeroNetPositionShouldNotMoveDDRs() {
+        InterBankTransferState interTransfer1000FromB = new InterBankTransferState("otherSenderRIB", "otherReceiverRIB",
+                bankB.getParty(), bankA.getParty(), new Amount<>(exampleAmount, exampleCurrency), exampleDate, "otherExternalId");
+        ledger(ledgerServices, (ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey(), bankB.getPublicKey(), centralBank.getPublicKey()),
+                        new InterBankTransferContract.InterBankTransferCommands.NettedBankTransfer());
 
+                tx.output(InterBankTransferContract.ID, interTransfer1000);
+                tx.output(InterBankTransferContract.ID, interTransfer1000FromB);
+                tx.verifies();
+
+                tx.input(DDRObjectContract.ID, ddr1000);
+                tx.output(DDRObjectContract.ID, ddr1000);
+                return tx.failsWith("No DDR Objects should be moved when the net position is zero");
+            });
+            return null;
+        }));
+    }
 }
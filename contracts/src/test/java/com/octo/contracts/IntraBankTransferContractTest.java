@@ -63,4 +63,62 @@ public class IntraBankTransferContractTest extends BaseObligationContractTests {
             return null;
         });
     }
+
+    @Test
+    public void transferBatchShouldOnlyHaveIntraBankStateOutputsAndNoInput() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(Arrays.asList(bankA.getPublicKey(), centralBank.getPublicKey()),
+                        new IntraBankTransferContract.IntraBankTransferCommands.RecordTransferBatch());
+
+                tx.failsWith("Recording an IntraBank Transfer batch should only have outputs of type IntraBankTransferState");
+
+                tx.output(IntraBankTransferContract.ID, intraBankTransferState);
+                tx.output(IntraBankTransferContract.ID, new IntraBankTransferStateBuilder(intraBankTransferState).externalId("externalId2").build());
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, exampleDDRObject);
+                    return tw.failsWith("Recording an IntraBank Transfer batch should only have outputs of type IntraBankTransferState");
+                });
+
+                tx.tweak(tw -> {
+                    tw.input(DDRObjectContract.ID, exampleDDRObject);
+                    return tw.failsWith("Recording an IntraBank Transfer batch should not consume any inputs");
+                });
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void transferBatchShouldHaveDistinctExternalIdsAndSameBank() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(Arrays.asList(bankA.getPublicKey(), centralBank.getPublicKey()),
+                        new IntraBankTransferContract.IntraBankTransferCommands.RecordTransferBatch());
+
+                tx.output(IntraBankTransferContract.ID, intraBankTransferState);
+
+                tx.tweak(tw -> {
+                    tw.output(IntraBankTransferContract.ID, intraBankTransferState);
+                    return tw.failsWith("IntraBank Transfers of a batch should have distinct external ids");
+                });
+
+                tx.tweak(tw -> {
+                    tw.output(IntraBankTransferContract.ID, new IntraBankTransferStateBuilder(intraBankTransferState)
+                            .externalId("externalId2").bank(bankB.getParty()).build());
+                    return tw.failsWith("All IntraBank Transfers of a batch should belong to the same bank");
+                });
+
+                tx.tweak(tw -> {
+                    tw.output(IntraBankTransferContract.ID, new IntraBankTransferStateBuilder(intraBankTransferState)
+                            .externalId("externalId2").receiverRIB("senderRIB").build());
+                    return tw.failsWith("IntraBank Transfers should have different sender and receiver");
+                });
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
 }
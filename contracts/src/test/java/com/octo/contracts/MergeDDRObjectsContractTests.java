@@ -0,0 +1,82 @@
+package com.octo.contracts;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.builders.DDRObjectStateBuilder;
+import com.octo.states.DDRObjectState;
+import org.junit.Test;
+
+import static net.corda.testing.node.NodeTestUtils.ledger;
+
+public class MergeDDRObjectsContractTests extends BaseObligationContractTests {
+
+    private final DDRObjectState ddr300 = new DDRObjectStateBuilder(exampleDDRObject).amount(300).build();
+    private final DDRObjectState ddr200 = new DDRObjectStateBuilder(exampleDDRObject).amount(200).build();
+    private final DDRObjectState ddr500 = new DDRObjectStateBuilder(exampleDDRObject).amount(500).build();
+
+    @Test
+    public void mergeShouldPreserveTotalAmountWithFewerDDRs() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey()), new DDRObjectContract.DDRObjectCommands.MergeDDRObjects());
+                tx.input(DDRObjectContract.ID, ddr300);
+                tx.input(DDRObjectContract.ID, ddr200);
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, ddr300);
+                    return tw.failsWith("Total amount of DDR Objects should be preserved in a merge");
+                });
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, ddr300);
+                    tw.output(DDRObjectContract.ID, ddr200);
+                    return tw.failsWith("Merging DDR Objects should create fewer DDR Objects than it consumes");
+                });
+
+                tx.output(DDRObjectContract.ID, ddr500);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void mergedDDRsShouldHaveSameOwnerAndIssuer() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey()), new DDRObjectContract.DDRObjectCommands.MergeDDRObjects());
+                tx.input(DDRObjectContract.ID, ddr300);
+
+                tx.tweak(tw -> {
+                    tw.input(DDRObjectContract.ID, new DDRObjectStateBuilder(ddr200).owner(bankB.getParty()).build());
+                    tw.output(DDRObjectContract.ID, ddr500);
+                    return tw.failsWith("Merged DDR Objects should have the same owner, issuer and currency");
+                });
+
+                tx.tweak(tw -> {
+                    tw.input(DDRObjectContract.ID, ddr200);
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(ddr500).issuer(bankB.getParty()).build());
+                    return tw.failsWith("Merged DDR Objects should have the same owner, issuer and currency");
+                });
+
+                tx.input(DDRObjectContract.ID, ddr200);
+                tx.output(DDRObjectContract.ID, ddr500);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void ownerShouldSignMerge() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(centralBank.getPublicKey()), new DDRObjectContract.DDRObjectCommands.MergeDDRObjects());
+                tx.input(DDRObjectContract.ID, ddr300);
+                tx.input(DDRObjectContract.ID, ddr200);
+                tx.output(DDRObjectContract.ID, ddr500);
+                return tx.failsWith("Owner of the DDR Objects should be signer of a merge");
+            });
+            return null;
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.octo.contracts;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.builders.DDRObjectStateBuilder;
+import com.octo.states.DDRObjectState;
+import org.junit.Test;
+
+import static net.corda.testing.node.NodeTestUtils.ledger;
+
+public class SplitDDRObjectsContractTests extends BaseObligationContractTests {
+
+    private final DDRObjectState ddr300 = new DDRObjectStateBuilder(exampleDDRObject).amount(300).build();
+    private final DDRObjectState ddr200 = new DDRObjectStateBuilder(exampleDDRObject).amount(200).build();
+    private final DDRObjectState ddr500 = new DDRObjectStateBuilder(exampleDDRObject).amount(500).build();
+
+    @Test
+    public void splitShouldPreserveTotalAmountWithMoreDDRs() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey()), new DDRObjectContract.DDRObjectCommands.SplitDDRObjects());
+                tx.input(DDRObjectContract.ID, ddr500);
+                tx.output(DDRObjectContract.ID, ddr300);
+
+                tx.failsWith("Splitting DDR Objects should create at least 2 DDR Objects");
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, ddr300);
+                    return tw.failsWith("Total amount of DDR Objects should be preserved in a split");
+                });
+
+                tx.tweak(tw -> {
+                    tw.input(DDRObjectContract.ID, ddr200);
+                    tw.output(DDRObjectContract.ID, ddr200);
+                    return tw.failsWith("Splitting DDR Objects should consume exactly 1 DDR Object");
+                });
+
+                tx.output(DDRObjectContract.ID, ddr200);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void splitDDRsShouldHaveSameOwnerAndIssuer() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(bankA.getPublicKey()), new DDRObjectContract.DDRObjectCommands.SplitDDRObjects());
+                tx.input(DDRObjectContract.ID, ddr500);
+                tx.output(DDRObjectContract.ID, ddr300);
+
+                tx.tweak(tw -> {
+                    tw.output(DDRObjectContract.ID, new DDRObjectStateBuilder(ddr200).owner(bankB.getParty()).build());
+                    return tw.failsWith("Split DDR Objects should have the same owner, issuer and currency");
+                });
+
+                tx.output(DDRObjectContract.ID, ddr200);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void ownerShouldSignSplit() {
+        ledger(ledgerServices, ledger -> {
+            ledger.transaction(tx -> {
+                tx.command(ImmutableList.of(centralBank.getPublicKey()), new DDRObjectContract.DDRObjectCommands.SplitDDRObjects());
+                tx.input(DDRObjectContract.ID, ddr500);
+                tx.output(DDRObjectContract.ID, ddr300);
+                tx.output(DDRObjectContract.ID, ddr200);
+                return tx.failsWith("Owner of the DDR Objects should be signer of a split");
+            });
+            return null;
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.octo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.octo.corda_services.ObligationApprovalService;
+import com.octo.flows.ApproveDDRPledge;
+import com.octo.flows.RequestDDRPledge;
+import com.octo.metrics.ApprovalMetrics;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time for the central bank to approve {@code pledges} pledges requested at once by two banks, with 1 or 4
+ * auto-approval workers, run with {@code gradlew :workflows:jmh -PjmhInclude=AutoApprovalBenchmark}.
+ * <p>
+ * Each batch requests the pledges and waits until the auto-approval service has approved them all. The teardown
+ * prints the summary of {@link ApprovalMetrics}, with the time to approval percentiles.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AutoApprovalBenchmark {
+
+    private static final Amount<Currency> PLEDGE = new Amount<>(100000, Currency.getInstance("MAD"));
+    private static final long APPROVAL_TIMEOUT_MS = 60000;
+
+    @Param({"8", "32"})
+    public int pledges;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    private MockNetwork network;
+    private List<StartedMockNode> banks;
+    private ApprovalMetrics metrics;
+
+    @Setup
+    public void setup() {
+        network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+                TestCordapp.findCordapp("com.octo.contracts"),
+                TestCordapp.findCordapp("com.octo.flows").withConfig(ImmutableMap.of(
+                        "approval.enabled", true,
+                        "approval.workers", workers,
+                        // Without limits every pledge is left for manual approval
+                        "approval.pledge.maxAmount", PLEDGE.getQuantity(),
+                        "approval.pledge.dailyLimit", Long.MAX_VALUE))
+        )).withThreadPerNode(true).withNetworkSendManuallyPumped(false));
+        StartedMockNode bankA = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+        StartedMockNode bankB = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+        StartedMockNode centralBank = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+        banks = ImmutableList.of(bankA, bankB);
+        banks.forEach(bank -> bank.registerInitiatedFlow(ApproveDDRPledge.Responder.class));
+        centralBank.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        network.startNodes();
+        metrics = centralBank.getServices().cordaService(ObligationApprovalService.class).getMetrics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%d workers: %s%n", workers, metrics.logSummary());
+        network.stopNodes();
+    }
+
+    @Benchmark
+    public void requestAndApprove() throws ExecutionException, InterruptedException, TimeoutException {
+        long approved = metrics.getApproved() + metrics.getFailed();
+        List<CordaFuture<SignedTransaction>> requests = new ArrayList<>(pledges);
+        for (int i = 0; i < pledges; i++)
+            requests.add(banks.get(i % banks.size()).startFlow(new RequestDDRPledge.Initiator(PLEDGE)));
+        for (CordaFuture<SignedTransaction> request : requests) request.get();
+
+        long deadline = System.currentTimeMillis() + APPROVAL_TIMEOUT_MS;
+        while (metrics.getApproved() + metrics.getFailed() < approved + pledges) {
+            if (System.currentTimeMillis() > deadline) throw new TimeoutException("Pledges were not approved");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.octo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.octo.corda_services.PipelineMetrics;
+import com.octo.flows.ApproveDDRPledge;
+import com.octo.flows.AtomicExchangeDDR;
+import com.octo.flows.RequestDDRPledge;
+import com.octo.flows.SyncIdentitiesFlow;
+import com.octo.metrics.PipelineStage;
+import com.octo.states.DDRObligationState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.flows.NotaryException;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to record {@code transfers} inter-bank transfers started at once by the same bank, run with
+ * {@code gradlew :workflows:jmh -PjmhInclude=ConcurrentTransferBenchmark}.
+ * <p>
+ * The mock network runs each node on its own thread, so the transfers select their DDR Objects concurrently, from the
+ * token pool or from the vault with {@code DDRSelector}. Next to the time of each batch, JMH reports the transfers
+ * that failed at the notary because another one spent the same DDRs ({@code notaryConflicts}), the selections that
+ * found their DDRs reserved and waited ({@code selectionRetries}) and the other failures.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentTransferBenchmark {
+
+    private static final Currency MAD = Currency.getInstance("MAD");
+    private static final Amount<Currency> PLEDGE = new Amount<>(5000000, MAD);
+    private static final Amount<Currency> TRANSFER = new Amount<>(5000, MAD);
+
+    @Param({"8", "32"})
+    public int transfers;
+
+    @Param({"true", "false"})
+    public boolean tokenPool;
+
+    private MockNetwork network;
+    private StartedMockNode bankA;
+    private int batch;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+        public long notaryConflicts;
+        public long selectionRetries;
+        public long otherFailures;
+    }
+
+    @Setup
+    public void setup() throws ExecutionException, InterruptedException {
+        network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+                TestCordapp.findCordapp("com.octo.contracts"),
+                TestCordapp.findCordapp("com.octo.flows").withConfig(ImmutableMap.of("ddr.pool.enabled", tokenPool))
+        )).withThreadPerNode(true).withNetworkSendManuallyPumped(false));
+        bankA = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+        StartedMockNode bankB = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+        StartedMockNode centralBank = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+        bankA.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        bankB.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        network.startNodes();
+        bankA.startFlow(new SyncIdentitiesFlow.Initiator()).get();
+
+        SignedTransaction pledge = bankA.startFlow(new RequestDDRPledge.Initiator(PLEDGE)).get();
+        String externalPledgeId = ((DDRObligationState) pledge.getTx().getOutput(0)).getExternalId();
+        centralBank.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId)).get();
+        // Opens the sessions with the receiver bank before the measured transfers
+        bankA.startFlow(transfer("WARMUP")).get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Benchmark
+    public void parallelTransfers(Outcome outcome) throws InterruptedException {
+        long retriesBefore = bankA.getServices().cordaService(PipelineMetrics.class).get(PipelineStage.DDR_SELECTION).getRetries();
+        List<CordaFuture<SignedTransaction>> futures = new ArrayList<>(transfers);
+        batch++;
+        for (int i = 0; i < transfers; i++)
+            futures.add(bankA.startFlow(transfer("BENCH-" + batch + "-" + i)));
+
+        for (CordaFuture<SignedTransaction> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (isNotaryConflict(e)) outcome.notaryConflicts++;
+                else outcome.otherFailures++;
+            }
+        }
+        outcome.selectionRetries += bankA.getServices().cordaService(PipelineMetrics.class).get(PipelineStage.DDR_SELECTION).getRetries()
+                - retriesBefore;
+    }
+
+    private AtomicExchangeDDR.Initiator transfer(String reference) {
+        return new AtomicExchangeDDR.Initiator("0074444446513221", "008231111132135131", TRANSFER, new Date(), reference);
+    }
+
+    private static boolean isNotaryConflict(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NotaryException) return true;
+        }
+        return false;
+    }
+}
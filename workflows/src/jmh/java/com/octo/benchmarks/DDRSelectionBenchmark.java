@@ -0,0 +1,134 @@
+package com.octo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.flows.ApproveDDRPledge;
+import com.octo.flows.AtomicExchangeDDR;
+import com.octo.flows.RequestDDRPledge;
+import com.octo.flows.SyncIdentitiesFlow;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.DDRSelectionStrategy;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the DDR selection strategies on the transactions they produce, run with
+ * {@code gradlew :workflows:jmh -PjmhInclude=DDRSelectionBenchmark}.
+ * <p>
+ * For each strategy, the setup funds BankA with pledges of uneven amounts on a mock network, records the same
+ * sequence of inter-bank transfers with {@link AtomicExchangeDDR}, and prints the average number of inputs, outputs
+ * and serialized bytes of the transfer transactions. {@code verify} then measures the verification of these
+ * transactions, contracts and signatures, and {@code select} the selection itself on the wallet left by the transfers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DDRSelectionBenchmark {
+
+    private static final Currency MAD = Currency.getInstance("MAD");
+    private static final long[] PLEDGES = {1234500, 987600, 45600, 33300, 7800, 2500, 1200};
+    private static final int TRANSFERS = 40;
+
+    @Param({"SMALLEST_SUFFICIENT", "LARGEST_FIRST", "EXACT_MATCH", "BRANCH_AND_BOUND"})
+    public DDRSelectionStrategy strategy;
+
+    private MockNetwork network;
+    private StartedMockNode bankA;
+    private StartedMockNode centralBank;
+    private final List<SignedTransaction> transfers = new ArrayList<>();
+    private List<StateAndRef<DDRObjectState>> wallet;
+    private long[] selectionAmounts;
+    private int next;
+
+    @Setup
+    public void setup() throws ExecutionException, InterruptedException {
+        network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+                TestCordapp.findCordapp("com.octo.contracts"),
+                TestCordapp.findCordapp("com.octo.flows")
+        )));
+        bankA = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+        StartedMockNode bankB = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+        centralBank = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+        bankA.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        bankB.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        network.runNetwork();
+        bankA.startFlow(new SyncIdentitiesFlow.Initiator());
+        network.runNetwork();
+
+        for (long pledge : PLEDGES) pledge(new Amount<>(pledge, MAD));
+
+        Random random = new Random(42);
+        selectionAmounts = new long[TRANSFERS];
+        long inputs = 0, outputs = 0, bytes = 0;
+        for (int i = 0; i < TRANSFERS; i++) {
+            selectionAmounts[i] = 100 * (1 + random.nextInt(500));
+            SignedTransaction stx = transfer(new Amount<>(selectionAmounts[i], MAD), "BENCH-" + i);
+            transfers.add(stx);
+            inputs += stx.getTx().getInputs().size();
+            outputs += stx.getTx().getOutputs().size();
+            bytes += stx.getTxBits().getSize();
+        }
+        System.out.printf("%n%s over %d transfers: %.2f inputs, %.2f outputs, %.0f bytes per transaction%n",
+                strategy, TRANSFERS, (double) inputs / TRANSFERS, (double) outputs / TRANSFERS, (double) bytes / TRANSFERS);
+
+        wallet = new ArrayList<>(bankA.transaction(() -> bankA.getServices().getVaultService()
+                .queryBy(DDRObjectState.class).getStates()));
+        wallet.sort(Comparator.comparingLong(ddr -> ddr.getState().getData().getAmount().getQuantity()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Benchmark
+    public void verify() {
+        SignedTransaction stx = transfers.get(next++ % transfers.size());
+        centralBank.transaction(() -> {
+            try {
+                stx.verify(centralBank.getServices(), true);
+            } catch (Exception e) {
+                throw new IllegalStateException("Transfer " + stx.getId() + " does not verify", e);
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public List<StateAndRef<DDRObjectState>> select() {
+        return strategy.select(wallet, selectionAmounts[next++ % selectionAmounts.length]);
+    }
+
+    private void pledge(Amount<Currency> amount) throws ExecutionException, InterruptedException {
+        CordaFuture<SignedTransaction> futurePledge = bankA.startFlow(new RequestDDRPledge.Initiator(amount));
+        network.runNetwork();
+        String externalPledgeId = ((DDRObligationState) futurePledge.get().getTx().getOutput(0)).getExternalId();
+        CordaFuture<SignedTransaction> futureApproval = centralBank.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId));
+        network.runNetwork();
+        futureApproval.get();
+    }
+
+    private SignedTransaction transfer(Amount<Currency> amount, String reference) throws ExecutionException, InterruptedException {
+        CordaFuture<SignedTransaction> future = bankA.startFlow(new AtomicExchangeDDR.Initiator("0074444446513221",
+                "008231111132135131", amount, new Date(), reference, strategy));
+        network.runNetwork();
+        return future.get();
+    }
+}
@@ -0,0 +1,127 @@
+package com.octo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.flows.ApproveDDRPledge;
+import com.octo.flows.RequestDDRPledge;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.DDRSelectionStrategy;
+import com.octo.utils.DenominationPolicy;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the denomination policies on the pledge approvals they produce and on the selection of DDRs for later
+ * transfers, run with {@code gradlew :workflows:jmh -PjmhInclude=DenominationBenchmark}.
+ * <p>
+ * For each policy, the setup approves pledges of uneven amounts on a mock network and prints the average number of
+ * issued DDR Objects and serialized bytes of the approvals, then the average inputs and change of the selections of
+ * {@link DDRSelectionStrategy#DEFAULT} for a sequence of transfer amounts. {@code verifyIssuance} measures the
+ * verification of the approvals and {@code select} the selection itself on the issued DDRs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DenominationBenchmark {
+
+    private static final Currency MAD = Currency.getInstance("MAD");
+    private static final long[] PLEDGES = {5000000, 1234500, 987600, 45600, 7800};
+    private static final int SELECTIONS = 200;
+
+    @Param({"TARGET_DENOMINATION", "POWER_OF_TWO", "BOUNDED_COUNT"})
+    public DenominationPolicy policy;
+
+    private MockNetwork network;
+    private StartedMockNode bankA;
+    private StartedMockNode centralBank;
+    private final List<SignedTransaction> approvals = new ArrayList<>();
+    private List<StateAndRef<DDRObjectState>> wallet;
+    private long[] selectionAmounts;
+    private int next;
+
+    @Setup
+    public void setup() throws ExecutionException, InterruptedException {
+        network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+                TestCordapp.findCordapp("com.octo.contracts"),
+                TestCordapp.findCordapp("com.octo.flows")
+        )));
+        bankA = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+        centralBank = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+        bankA.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        network.runNetwork();
+
+        long issued = 0, bytes = 0;
+        for (long pledge : PLEDGES) {
+            SignedTransaction stx = pledge(new Amount<>(pledge, MAD));
+            approvals.add(stx);
+            issued += stx.getTx().outputsOfType(DDRObjectState.class).size();
+            bytes += stx.getTxBits().getSize();
+        }
+
+        wallet = new ArrayList<>(bankA.transaction(() -> bankA.getServices().getVaultService()
+                .queryBy(DDRObjectState.class).getStates()));
+        wallet.sort(Comparator.comparingLong(ddr -> ddr.getState().getData().getAmount().getQuantity()));
+
+        Random random = new Random(42);
+        selectionAmounts = new long[SELECTIONS];
+        long inputs = 0, change = 0;
+        for (int i = 0; i < SELECTIONS; i++) {
+            selectionAmounts[i] = 100 * (1 + random.nextInt(500));
+            List<StateAndRef<DDRObjectState>> selected = DDRSelectionStrategy.DEFAULT.select(wallet, selectionAmounts[i]);
+            inputs += selected.size();
+            change += selected.stream().mapToLong(ddr -> ddr.getState().getData().getAmount().getQuantity()).sum()
+                    - selectionAmounts[i];
+        }
+        System.out.printf("%n%s over %d pledges: %.1f DDR Objects, %.0f bytes per approval; %.2f inputs, %.0f change per selection%n",
+                policy, PLEDGES.length, (double) issued / PLEDGES.length, (double) bytes / PLEDGES.length,
+                (double) inputs / SELECTIONS, (double) change / SELECTIONS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Benchmark
+    public void verifyIssuance() {
+        SignedTransaction stx = approvals.get(next++ % approvals.size());
+        centralBank.transaction(() -> {
+            try {
+                stx.verify(centralBank.getServices(), true);
+            } catch (Exception e) {
+                throw new IllegalStateException("Approval " + stx.getId() + " does not verify", e);
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public List<StateAndRef<DDRObjectState>> select() {
+        return DDRSelectionStrategy.DEFAULT.select(wallet, selectionAmounts[next++ % selectionAmounts.length]);
+    }
+
+    private SignedTransaction pledge(Amount<Currency> amount) throws ExecutionException, InterruptedException {
+        CordaFuture<SignedTransaction> futurePledge = bankA.startFlow(new RequestDDRPledge.Initiator(amount));
+        network.runNetwork();
+        String externalPledgeId = ((DDRObligationState) futurePledge.get().getTx().getOutput(0)).getExternalId();
+        CordaFuture<SignedTransaction> futureApproval = centralBank.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId, policy));
+        network.runNetwork();
+        return futureApproval.get();
+    }
+}
@@ -0,0 +1,134 @@
+package com.octo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.octo.corda_services.PipelineMetrics;
+import com.octo.flows.ApproveDDRPledge;
+import com.octo.flows.AtomicExchangeDDR;
+import com.octo.flows.RequestDDRPledge;
+import com.octo.flows.SyncIdentitiesFlow;
+import com.octo.metrics.PipelineStage;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time to record {@code transfers} inter-bank transfers started at once by a bank funded with a single DDR Object,
+ * with and without liquidity lanes, run with {@code gradlew :workflows:jmh -PjmhInclude=LiquidityLaneBenchmark}.
+ * <p>
+ * Without lanes, every transfer needs the one DDR of the bank, or the change DDR left by the previous transfer, so
+ * the transfers run one after the other. With lanes, the setup waits for {@code DDRLaneService} to split the DDR
+ * into lanes after a first transfer, and the transfers spread over them. Next to the time of each batch, JMH reports
+ * the selections that found their DDRs reserved and waited ({@code selectionRetries}) and the failed transfers.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LiquidityLaneBenchmark {
+
+    private static final Currency MAD = Currency.getInstance("MAD");
+    private static final Amount<Currency> PLEDGE = new Amount<>(5000000, MAD);
+    private static final Amount<Currency> TRANSFER = new Amount<>(5000, MAD);
+    private static final int LANES = 8;
+    private static final long LANES_TIMEOUT_MS = 30000;
+
+    @Param({"8", "32"})
+    public int transfers;
+
+    @Param({"true", "false"})
+    public boolean lanes;
+
+    private MockNetwork network;
+    private StartedMockNode bankA;
+    private int batch;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+        public long selectionRetries;
+        public long failures;
+    }
+
+    @Setup
+    public void setup() throws ExecutionException, InterruptedException, TimeoutException {
+        network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+                TestCordapp.findCordapp("com.octo.contracts"),
+                TestCordapp.findCordapp("com.octo.flows").withConfig(ImmutableMap.of(
+                        "ddr.lanes.enabled", lanes,
+                        "ddr.lanes.count", LANES,
+                        "ddr.lanes.refillIntervalMs", 200,
+                        "ddr.denomination.maxCount", 1))
+        )).withThreadPerNode(true).withNetworkSendManuallyPumped(false));
+        bankA = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+        StartedMockNode bankB = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+        StartedMockNode centralBank = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+        bankA.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        bankB.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        network.startNodes();
+        bankA.startFlow(new SyncIdentitiesFlow.Initiator()).get();
+
+        SignedTransaction pledge = bankA.startFlow(new RequestDDRPledge.Initiator(PLEDGE)).get();
+        String externalPledgeId = ((DDRObligationState) pledge.getTx().getOutput(0)).getExternalId();
+        centralBank.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId)).get();
+        // Opens the sessions with the receiver bank before the measured transfers, and gives the lanes a transfer volume
+        bankA.startFlow(transfer("WARMUP")).get();
+        if (lanes) awaitLanes();
+    }
+
+    private void awaitLanes() throws InterruptedException, TimeoutException {
+        long deadline = System.currentTimeMillis() + LANES_TIMEOUT_MS;
+        while (bankA.transaction(() -> bankA.getServices().getVaultService().queryBy(DDRObjectState.class).getStates().size()) < LANES) {
+            if (System.currentTimeMillis() > deadline) throw new TimeoutException("DDR lanes were not created");
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Benchmark
+    public void parallelTransfers(Outcome outcome) throws InterruptedException {
+        long retriesBefore = bankA.getServices().cordaService(PipelineMetrics.class).get(PipelineStage.DDR_SELECTION).getRetries();
+        List<CordaFuture<SignedTransaction>> futures = new ArrayList<>(transfers);
+        batch++;
+        for (int i = 0; i < transfers; i++)
+            futures.add(bankA.startFlow(transfer("BENCH-" + batch + "-" + i)));
+
+        for (CordaFuture<SignedTransaction> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                outcome.failures++;
+            }
+        }
+        outcome.selectionRetries += bankA.getServices().cordaService(PipelineMetrics.class).get(PipelineStage.DDR_SELECTION).getRetries()
+                - retriesBefore;
+    }
+
+    private AtomicExchangeDDR.Initiator transfer(String reference) {
+        return new AtomicExchangeDDR.Initiator("0074444446513221", "008231111132135131", TRANSFER, new Date(), reference);
+    }
+}
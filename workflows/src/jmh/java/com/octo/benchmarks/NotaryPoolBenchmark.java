@@ -0,0 +1,150 @@
+package com.octo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.octo.corda_services.NotaryPool;
+import com.octo.flows.ApproveDDRPledge;
+import com.octo.flows.AtomicExchangeDDR;
+import com.octo.flows.RequestDDRPledge;
+import com.octo.flows.SyncIdentitiesFlow;
+import com.octo.metrics.NotaryMetrics;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.NotarySelectionStrategy;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for BankA and BankB to record {@code transfers} inter-bank transfers to each other, started at once, with one
+ * or two notaries and each notary selection strategy, run with {@code gradlew :workflows:jmh -PjmhInclude=NotaryPoolBenchmark}.
+ * <p>
+ * Each bank is funded with several pledges, spread over the notaries by the strategy. JMH reports next to the time
+ * of each batch the DDRs moved to another notary ({@code notaryChanges}) and the failed transfers. The teardown
+ * prints the notarisation latencies of each notary seen by BankA.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NotaryPoolBenchmark {
+
+    private static final Currency MAD = Currency.getInstance("MAD");
+    private static final Amount<Currency> PLEDGE = new Amount<>(2000000, MAD);
+    private static final Amount<Currency> TRANSFER = new Amount<>(5000, MAD);
+    private static final int PLEDGES_PER_BANK = 4;
+
+    @Param({"32"})
+    public int transfers;
+
+    @Param({"1", "2"})
+    public int notaries;
+
+    @Param({"ROUND_ROBIN", "BANK_AFFINITY", "LOWEST_LATENCY"})
+    public NotarySelectionStrategy strategy;
+
+    private MockNetwork network;
+    private StartedMockNode bankA;
+    private StartedMockNode bankB;
+    private int batch;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+        public long notaryChanges;
+        public long failures;
+    }
+
+    @Setup
+    public void setup() throws ExecutionException, InterruptedException {
+        List<MockNetworkNotarySpec> notarySpecs = new ArrayList<>();
+        for (int i = 1; i <= notaries; i++)
+            notarySpecs.add(new MockNetworkNotarySpec(CordaX500Name.parse("O=Notary" + i + ",L=London,C=GB")));
+        network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+                TestCordapp.findCordapp("com.octo.contracts"),
+                TestCordapp.findCordapp("com.octo.flows").withConfig(ImmutableMap.of("notary.pool.strategy", strategy.name()))
+        )).withNotarySpecs(notarySpecs).withThreadPerNode(true).withNetworkSendManuallyPumped(false));
+        bankA = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+        bankB = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+        StartedMockNode centralBank = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+        for (StartedMockNode bank : ImmutableList.of(bankA, bankB)) {
+            bank.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+            bank.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        }
+        centralBank.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        centralBank.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        network.startNodes();
+        bankA.startFlow(new SyncIdentitiesFlow.Initiator()).get();
+
+        for (StartedMockNode bank : ImmutableList.of(bankA, bankB)) {
+            for (int i = 0; i < PLEDGES_PER_BANK; i++) {
+                SignedTransaction pledge = bank.startFlow(new RequestDDRPledge.Initiator(PLEDGE)).get();
+                String externalPledgeId = ((DDRObligationState) pledge.getTx().getOutput(0)).getExternalId();
+                centralBank.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId)).get();
+            }
+        }
+        // Opens the sessions between the banks before the measured transfers
+        bankA.startFlow(transferFromA("WARMUP-A")).get();
+        bankB.startFlow(transferFromB("WARMUP-B")).get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        NotaryPool pool = bankA.getServices().cordaService(NotaryPool.class);
+        System.out.printf("%n%d notaries, %s:%n", notaries, strategy);
+        for (Party notary : pool.getNotaries()) {
+            NotaryMetrics metrics = pool.metrics(notary);
+            System.out.printf("  %s count=%d notaryChanges=%d p50=%dus p99=%dus%n", notary.getName().getOrganisation(),
+                    metrics.getCount(), metrics.getNotaryChanges(), metrics.getP50Micros(), metrics.getP99Micros());
+        }
+        network.stopNodes();
+    }
+
+    @Benchmark
+    public void parallelTransfers(Outcome outcome) throws InterruptedException {
+        long changesBefore = notaryChanges();
+        List<CordaFuture<SignedTransaction>> futures = new ArrayList<>(transfers);
+        batch++;
+        for (int i = 0; i < transfers; i++) {
+            String reference = "BENCH-" + batch + "-" + i;
+            futures.add(i % 2 == 0 ? bankA.startFlow(transferFromA(reference)) : bankB.startFlow(transferFromB(reference)));
+        }
+        for (CordaFuture<SignedTransaction> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                outcome.failures++;
+            }
+        }
+        outcome.notaryChanges += notaryChanges() - changesBefore;
+    }
+
+    private long notaryChanges() {
+        long changes = 0;
+        for (StartedMockNode bank : ImmutableList.of(bankA, bankB)) {
+            NotaryPool pool = bank.getServices().cordaService(NotaryPool.class);
+            for (Party notary : pool.getNotaries()) changes += pool.metrics(notary).getNotaryChanges();
+        }
+        return changes;
+    }
+
+    private AtomicExchangeDDR.Initiator transferFromA(String reference) {
+        return new AtomicExchangeDDR.Initiator("0074444446513221", "008231111132135131", TRANSFER, new Date(), reference);
+    }
+
+    private AtomicExchangeDDR.Initiator transferFromB(String reference) {
+        return new AtomicExchangeDDR.Initiator("008231111132135131", "0074444446513221", TRANSFER, new Date(), reference);
+    }
+}
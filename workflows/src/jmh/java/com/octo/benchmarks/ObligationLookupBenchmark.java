@@ -0,0 +1,97 @@
+package com.octo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.octo.corda_services.ObligationCache;
+import com.octo.flows.RequestDDRPledge;
+import com.octo.metrics.ObligationCacheMetrics;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.Utils;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.FlowException;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of a pending pledge by external id, as done by the approve, deny and cancel flows, with and without the
+ * {@link ObligationCache}, run with {@code gradlew :workflows:jmh -PjmhInclude=ObligationLookupBenchmark}.
+ * <p>
+ * The setup has BankA request 200 pledges, which the benchmark then looks up in turn. With a {@code cacheSize} below
+ * that number every lookup misses the cache and queries the vault, the worst case of the LRU eviction. The teardown
+ * prints the hit rate and the hit and miss latencies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObligationLookupBenchmark {
+
+    private static final Amount<Currency> PLEDGE = new Amount<>(1000, Currency.getInstance("MAD"));
+    private static final int OBLIGATIONS = 200;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    @Param({"200", "50"})
+    public int cacheSize;
+
+    private MockNetwork network;
+    private StartedMockNode bankA;
+    private final List<String> externalIds = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setup() throws ExecutionException, InterruptedException {
+        network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+                TestCordapp.findCordapp("com.octo.contracts"),
+                TestCordapp.findCordapp("com.octo.flows").withConfig(ImmutableMap.of(
+                        "obligation.cache.enabled", cache,
+                        "obligation.cache.maxSize", cacheSize))
+        )).withThreadPerNode(true).withNetworkSendManuallyPumped(false));
+        bankA = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+        StartedMockNode centralBank = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+        centralBank.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        network.startNodes();
+
+        List<CordaFuture<SignedTransaction>> requests = new ArrayList<>(OBLIGATIONS);
+        for (int i = 0; i < OBLIGATIONS; i++) requests.add(bankA.startFlow(new RequestDDRPledge.Initiator(PLEDGE)));
+        for (CordaFuture<SignedTransaction> request : requests)
+            externalIds.add(((DDRObligationState) request.get().getTx().getOutput(0)).getExternalId());
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (cache) {
+            ObligationCacheMetrics metrics = bankA.getServices().cordaService(ObligationCache.class).getMetrics();
+            System.out.printf("%nmaxSize %d: %s%n", cacheSize, metrics.logSummary());
+        }
+        network.stopNodes();
+    }
+
+    @Benchmark
+    public StateAndRef<DDRObligationState> lookup() {
+        String externalId = externalIds.get(next++ % externalIds.size());
+        return bankA.transaction(() -> {
+            try {
+                return Utils.getObligationByExternalId(externalId, bankA.getServices());
+            } catch (FlowException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
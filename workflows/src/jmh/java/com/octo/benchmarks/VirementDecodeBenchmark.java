@@ -0,0 +1,54 @@
+package com.octo.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.octo.dto.BankTransferDTO;
+import com.octo.messaging.VirementCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding throughput of a virement message, run with {@code gradlew :workflows:jmh}.
+ * <p>
+ * The task runs JMH with the GC profiler, {@code gc.alloc.rate.norm} is the number of bytes allocated per message.
+ * {@code legacyDecode} is the decode path of the first consumer: a String copy of the body and a new reader per
+ * message from a mapper using {@code SimpleDateFormat}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirementDecodeBenchmark {
+
+    private static final String MESSAGE = "{\"reference\":\"VIR-2020-000042\",\"senderRIB\":\"007780000123456789012345\","
+            + "\"receiverRIB\":\"008780000987654321098765\",\"amount\":1250.50,\"executionDate\":\"15-06-2020 14:32:10\","
+            + "\"status\":\"PENDING\",\"statusUpdate\":\"15-06-2020 14:32:11\"}";
+
+    private byte[] body;
+    private ObjectMapper legacyMapper;
+
+    @Setup
+    public void setup() {
+        body = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        legacyMapper = new ObjectMapper();
+        legacyMapper.enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT);
+        legacyMapper.setDateFormat(new SimpleDateFormat("dd-MM-yyyy HH:mm:ss"));
+    }
+
+    @Benchmark
+    public BankTransferDTO codecDecode() throws IOException {
+        return VirementCodec.decodeTransfer(body);
+    }
+
+    @Benchmark
+    public BankTransferDTO legacyDecode() throws IOException {
+        String message = new String(body, StandardCharsets.UTF_8);
+        return legacyMapper.readerFor(BankTransferDTO.class).readValue(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.octo.approval;
+
+import com.octo.enums.DDRObligationType;
+import com.octo.states.DDRObligationState;
+import net.corda.core.identity.Party;
+
+/**
+ * Pending obligation waiting in the queue of the auto-approval service.
+ * <p>
+ * Pledges come first, as the requesting banks wait for their DDRs to make payments, then the oldest requests. Requests
+ * of the same date keep the order they were queued in.
+ */
+public class ApprovalRequest implements Comparable<ApprovalRequest> {
+
+    private final String externalId;
+    private final DDRObligationType type;
+    private final Party bank;
+    private final long quantity;
+    private final long requesterDateMillis;
+    private final long queuedNanos;
+    private final long sequence;
+
+    public ApprovalRequest(DDRObligationState obligation, long sequence) {
+        this.externalId = obligation.getExternalId();
+        this.type = obligation.getType();
+        this.bank = obligation.getRequester();
+        this.quantity = obligation.getAmount().getQuantity();
+        this.requesterDateMillis = obligation.getRequesterDate().getTime();
+        this.queuedNanos = System.nanoTime();
+        this.sequence = sequence;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+
+    public DDRObligationType getType() {
+        return type;
+    }
+
+    public Party getBank() {
+        return bank;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getRequesterDateMillis() {
+        return requesterDateMillis;
+    }
+
+    public long getQueuedNanos() {
+        return queuedNanos;
+    }
+
+    @Override
+    public int compareTo(ApprovalRequest other) {
+        if (type != other.type) return type == DDRObligationType.PLEDGE ? -1 : 1;
+        if (requesterDateMillis != other.requesterDateMillis) return Long.compare(requesterDateMillis, other.requesterDateMillis);
+        return Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,74 @@
+package com.octo.approval;
+
+import com.octo.enums.DDRObligationType;
+import net.corda.core.identity.Party;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Decides which pending obligations the central bank approves without an operator. Amounts are quantities of the
+ * obligation currency, in cents, and a limit of {@code 0} approves nothing automatically.
+ * <p>
+ * A pledge or redeem above its maximum amount is left for manual approval. The pledges of a bank are also approved up
+ * to its daily limit, counted in memory from the approvals of the current UTC day, those approved before a restart
+ * being added back with {@link #approved}: the amount of a pledge is reserved before its approval starts and given
+ * back if the approval fails.
+ */
+public class ApprovalRules {
+
+    private final long pledgeMaxAmount;
+    private final long redeemMaxAmount;
+    private final ToLongFunction<Party> dailyLimit;
+    private final Map<Party, Long> approvedToday = new HashMap<>();
+    private LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    public ApprovalRules(long pledgeMaxAmount, long redeemMaxAmount, ToLongFunction<Party> dailyLimit) {
+        this.pledgeMaxAmount = pledgeMaxAmount;
+        this.redeemMaxAmount = redeemMaxAmount;
+        this.dailyLimit = dailyLimit;
+    }
+
+    /**
+     * Returns true if the request can be approved, and then counts a pledge in the daily limit of its bank.
+     */
+    public synchronized boolean reserve(ApprovalRequest request) {
+        long maxAmount = request.getType() == DDRObligationType.PLEDGE ? pledgeMaxAmount : redeemMaxAmount;
+        if (maxAmount <= 0 || request.getQuantity() > maxAmount) return false;
+        if (request.getType() != DDRObligationType.PLEDGE) return true;
+
+        rollOver();
+        long limit = dailyLimit.applyAsLong(request.getBank());
+        long approved = approvedToday.getOrDefault(request.getBank(), 0L);
+        if (limit <= 0 || approved + request.getQuantity() > limit) return false;
+        approvedToday.put(request.getBank(), approved + request.getQuantity());
+        return true;
+    }
+
+    /**
+     * Counts a pledge of the bank approved during the current UTC day in its daily limit.
+     */
+    public synchronized void approved(Party bank, long quantity) {
+        rollOver();
+        approvedToday.merge(bank, quantity, Long::sum);
+    }
+
+    /**
+     * Gives back the amount reserved for a request whose approval failed.
+     */
+    public synchronized void release(ApprovalRequest request) {
+        if (request.getType() != DDRObligationType.PLEDGE) return;
+        rollOver();
+        approvedToday.computeIfPresent(request.getBank(), (bank, approved) -> Math.max(0, approved - request.getQuantity()));
+    }
+
+    private void rollOver() {
+        LocalDate now = LocalDate.now(ZoneOffset.UTC);
+        if (now.equals(today)) return;
+        today = now;
+        approvedToday.clear();
+    }
+}
@@ -0,0 +1,129 @@
+package com.octo.corda_services;
+
+import com.octo.flows.MergeDDRObjects;
+import com.octo.metrics.PipelineStage;
+import com.octo.metrics.StageMetrics;
+import com.octo.states.DDRObjectState;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.DDRQueries;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.ServiceLifecycleEvent;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Merges the small DDR Objects of our bank with {@link MergeDDRObjects} while the bank is idle.
+ * <p>
+ * Every {@code ddr.consolidation.intervalMs}, if no DDR was selected since the previous check and the bank holds more
+ * than {@code ddr.consolidation.maxFragments} unlocked DDRs below {@code ddr.consolidation.fragmentQuantity}, the
+ * smallest of them, up to {@code ddr.consolidation.batchSize}, are merged into one DDR. One merge runs at a time.
+ */
+@CordaService
+public class DDRConsolidationService extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(DDRConsolidationService.class);
+    private static final long INTERVAL_MS_DEFAULT = 60000;
+    private static final int MAX_FRAGMENTS_DEFAULT = 50;
+    private static final long FRAGMENT_QUANTITY_DEFAULT = 10000;
+    private static final int BATCH_SIZE_DEFAULT = 100;
+
+    private final AppServiceHub serviceHub;
+    private final Party us;
+    private final long intervalMillis;
+    private final int maxFragments;
+    private final long fragmentQuantity;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler = ServiceExecutors.newSingleThreadScheduledExecutor("ddr-consolidation");
+    private volatile boolean merging;
+    private long lastSelections = -1;
+
+    public DDRConsolidationService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.us = serviceHub.getMyInfo().getLegalIdentities().get(0);
+        this.intervalMillis = ConfigUtils.getLong(serviceHub, "ddr.consolidation.intervalMs", INTERVAL_MS_DEFAULT);
+        this.maxFragments = ConfigUtils.getInt(serviceHub, "ddr.consolidation.maxFragments", MAX_FRAGMENTS_DEFAULT);
+        this.fragmentQuantity = ConfigUtils.getLong(serviceHub, "ddr.consolidation.fragmentQuantity", FRAGMENT_QUANTITY_DEFAULT);
+        this.batchSize = Math.max(2, ConfigUtils.getInt(serviceHub, "ddr.consolidation.batchSize", BATCH_SIZE_DEFAULT));
+        if (ConfigUtils.getBoolean(serviceHub, "ddr.consolidation.enabled", false)) {
+            serviceHub.register(AppServiceHub.SERVICE_PRIORITY_LOW, event -> {
+                if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED)
+                    scheduler.scheduleWithFixedDelay(this::consolidate, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            });
+        }
+    }
+
+    private void consolidate() {
+        try {
+            if (merging || !isIdle()) return;
+            List<StateAndRef<DDRObjectState>> fragments = serviceHub.getDatabase().transaction(session -> findFragments());
+            if (fragments.isEmpty()) return;
+            merging = true;
+            logger.info("Merging {} DDR Objects below {}", fragments.size(), fragmentQuantity);
+            serviceHub.startFlow(new MergeDDRObjects.Initiator(fragments)).getReturnValue().toCompletableFuture()
+                    .whenComplete((stx, error) -> {
+                        merging = false;
+                        if (error != null) logger.info("DDR Objects were not merged: {}", error.getMessage());
+                    });
+        } catch (RuntimeException e) {
+            merging = false;
+            logger.warn("DDR consolidation failed", e);
+        }
+    }
+
+    /**
+     * The bank is idle when no DDR selection started, succeeded or failed since the previous check.
+     */
+    private boolean isIdle() {
+        StageMetrics selection = serviceHub.cordaService(PipelineMetrics.class).get(PipelineStage.DDR_SELECTION);
+        long selections = selection.getCount() + selection.getErrors() + selection.getRetries();
+        boolean idle = selections == lastSelections;
+        lastSelections = selections;
+        return idle;
+    }
+
+    private List<StateAndRef<DDRObjectState>> findFragments() {
+        QueryCriteria.VaultQueryCriteria unlocked = new QueryCriteria.VaultQueryCriteria()
+                .withSoftLockingCondition(new QueryCriteria.SoftLockingCondition(QueryCriteria.SoftLockingType.UNLOCKED_ONLY, Collections.emptyList()));
+        List<StateAndRef<DDRObjectState>> smallest;
+        if (DDRQueries.isMapped(serviceHub)) {
+            Vault.Page<DDRObjectState> page = serviceHub.getVaultService().queryBy(DDRObjectState.class,
+                    unlocked.and(DDRQueries.ownedBy(us)).and(DDRQueries.quantityBelow(fragmentQuantity)),
+                    new PageSpecification(DEFAULT_PAGE_NUM, batchSize), DDRQueries.byQuantity(Sort.Direction.ASC));
+            if (page.getTotalStatesAvailable() <= maxFragments) return Collections.emptyList();
+            smallest = page.getStates();
+        } else {
+            List<StateAndRef<DDRObjectState>> below = DDRQueries.ownedByWithoutSchema(serviceHub, unlocked, us, null).stream()
+                    .filter(ddr -> ddr.getState().getData().getAmount().getQuantity() < fragmentQuantity)
+                    .collect(Collectors.toList());
+            if (below.size() <= maxFragments) return Collections.emptyList();
+            smallest = below.subList(0, Math.min(batchSize, below.size()));
+        }
+
+        // A merge keeps the issuer and currency and has a single notary, so only the fragments matching the smallest
+        // one are merged together
+        StateAndRef<DDRObjectState> first = smallest.get(0);
+        List<StateAndRef<DDRObjectState>> fragments = smallest.stream()
+                .filter(ddr -> ddr.getState().getData().getIssuer().equals(first.getState().getData().getIssuer())
+                        && ddr.getState().getData().getCurrency().equals(first.getState().getData().getCurrency())
+                        && ddr.getState().getNotary().equals(first.getState().getNotary()))
+                .collect(Collectors.toList());
+        return fragments.size() >= 2 ? fragments : Collections.emptyList();
+    }
+}
@@ -0,0 +1,165 @@
+package com.octo.corda_services;
+
+import com.octo.flows.SplitDDRObjects;
+import com.octo.states.DDRObjectState;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.DDRQueries;
+import com.octo.utils.DDRSelectionStrategy;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.ServiceLifecycleEvent;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Keeps {@code ddr.lanes.count} liquidity lanes for the outgoing transfers of our bank: DDR Objects each covering
+ * many transfers, so concurrent {@code AtomicExchangeDDR} flows spend different DDRs instead of waiting on one large
+ * DDR. Transfers pick their lane with {@link DDRSelectionStrategy#SPREAD}.
+ * <p>
+ * A lane holds {@code ddr.lanes.transfersPerLane} times the average of the recent transfers. Every
+ * {@code ddr.lanes.refillIntervalMs}, if fewer unlocked DDRs than lanes cover an average transfer, the largest DDR is
+ * split into new lanes with {@link SplitDDRObjects}. One split runs at a time.
+ */
+@CordaService
+public class DDRLaneService extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(DDRLaneService.class);
+    private static final int LANES_DEFAULT = 8;
+    private static final int TRANSFERS_PER_LANE_DEFAULT = 20;
+    private static final long REFILL_INTERVAL_MS_DEFAULT = 5000;
+    private static final long MIN_LANE_QUANTITY_DEFAULT = 10000;
+    private static final int VOLUME_WINDOW = 256;
+
+    private final AppServiceHub serviceHub;
+    private final Party us;
+    private final boolean enabled;
+    private final int lanes;
+    private final int transfersPerLane;
+    private final long minLaneQuantity;
+    private final long[] recentTransfers = new long[VOLUME_WINDOW];
+    private long recordedTransfers;
+    private Currency currency;
+    private final ScheduledExecutorService scheduler = ServiceExecutors.newSingleThreadScheduledExecutor("ddr-lanes");
+    private volatile boolean splitting;
+
+    public DDRLaneService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.us = serviceHub.getMyInfo().getLegalIdentities().get(0);
+        this.enabled = ConfigUtils.getBoolean(serviceHub, "ddr.lanes.enabled", false);
+        this.lanes = Math.max(1, ConfigUtils.getInt(serviceHub, "ddr.lanes.count", LANES_DEFAULT));
+        this.transfersPerLane = Math.max(1, ConfigUtils.getInt(serviceHub, "ddr.lanes.transfersPerLane", TRANSFERS_PER_LANE_DEFAULT));
+        this.minLaneQuantity = ConfigUtils.getLong(serviceHub, "ddr.lanes.minQuantity", MIN_LANE_QUANTITY_DEFAULT);
+        long refillIntervalMillis = ConfigUtils.getLong(serviceHub, "ddr.lanes.refillIntervalMs", REFILL_INTERVAL_MS_DEFAULT);
+        if (enabled) {
+            serviceHub.register(AppServiceHub.SERVICE_PRIORITY_LOW, event -> {
+                if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED)
+                    scheduler.scheduleWithFixedDelay(this::refill, refillIntervalMillis, refillIntervalMillis, TimeUnit.MILLISECONDS);
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Strategy of the transfers not given one, lanes are only useful if transfers are spread over them.
+     */
+    public DDRSelectionStrategy selectionStrategy() {
+        return enabled ? DDRSelectionStrategy.SPREAD : DDRSelectionStrategy.DEFAULT;
+    }
+
+    /**
+     * Adds an outgoing transfer to the volume the lanes are sized from.
+     */
+    public synchronized void recordTransfer(Amount<Currency> amount) {
+        if (!enabled) return;
+        recentTransfers[(int) (recordedTransfers++ % VOLUME_WINDOW)] = amount.getQuantity();
+        currency = amount.getToken();
+    }
+
+    private synchronized long averageTransfer() {
+        int count = (int) Math.min(recordedTransfers, VOLUME_WINDOW);
+        long total = 0;
+        for (int i = 0; i < count; i++) total += recentTransfers[i];
+        return count == 0 ? 0 : total / count;
+    }
+
+    private synchronized Currency currency() {
+        return currency;
+    }
+
+    private void refill() {
+        try {
+            long averageTransfer = averageTransfer();
+            Currency laneCurrency = currency();
+            if (splitting || averageTransfer == 0) return;
+            long laneQuantity = Math.max(minLaneQuantity, averageTransfer * transfersPerLane);
+            List<Long> newLanes = new ArrayList<>();
+            StateAndRef<DDRObjectState> source = serviceHub.getDatabase().transaction(session ->
+                    findSource(laneCurrency, averageTransfer, laneQuantity, newLanes));
+            if (source == null) return;
+            splitting = true;
+            logger.info("Splitting a DDR Object of {} into {} lanes of {}", source.getState().getData().getAmount(),
+                    newLanes.size(), laneQuantity);
+            serviceHub.startFlow(new SplitDDRObjects.Initiator(source, newLanes)).getReturnValue().toCompletableFuture()
+                    .whenComplete((stx, error) -> {
+                        splitting = false;
+                        if (error != null) logger.info("DDR lanes were not refilled: {}", error.getMessage());
+                    });
+        } catch (RuntimeException e) {
+            splitting = false;
+            logger.warn("DDR lanes refill failed", e);
+        }
+    }
+
+    /**
+     * The largest unlocked DDR if lanes are missing and it can hold at least two of them, the quantities of the lanes
+     * it is split into are added to {@code newLanes}.
+     */
+    private StateAndRef<DDRObjectState> findSource(Currency laneCurrency, long averageTransfer, long laneQuantity, List<Long> newLanes) {
+        QueryCriteria.VaultQueryCriteria unlockedCriteria = new QueryCriteria.VaultQueryCriteria()
+                .withSoftLockingCondition(new QueryCriteria.SoftLockingCondition(QueryCriteria.SoftLockingType.UNLOCKED_ONLY, Collections.emptyList()));
+        long liveLanes;
+        StateAndRef<DDRObjectState> source;
+        if (DDRQueries.isMapped(serviceHub)) {
+            QueryCriteria unlocked = unlockedCriteria.and(DDRQueries.ownedBy(us, laneCurrency));
+            liveLanes = DDRQueries.aggregateResult(serviceHub.getVaultService().queryBy(DDRObjectState.class,
+                    unlocked.and(DDRQueries.quantityAtLeast(averageTransfer)).and(DDRQueries.countOfDDRs())));
+            if (liveLanes >= lanes) return null;
+
+            Vault.Page<DDRObjectState> largest = serviceHub.getVaultService().queryBy(DDRObjectState.class, unlocked,
+                    new PageSpecification(DEFAULT_PAGE_NUM, 1), DDRQueries.byQuantity(Sort.Direction.DESC));
+            if (largest.getStates().isEmpty()) return null;
+            source = largest.getStates().get(0);
+        } else {
+            List<StateAndRef<DDRObjectState>> ddrs = DDRQueries.ownedByWithoutSchema(serviceHub, unlockedCriteria, us, laneCurrency);
+            liveLanes = ddrs.stream().filter(ddr -> ddr.getState().getData().getAmount().getQuantity() >= averageTransfer).count();
+            if (liveLanes >= lanes || ddrs.isEmpty()) return null;
+            source = ddrs.get(ddrs.size() - 1);
+        }
+        // The largest DDR is itself a lane, splitting it adds one lane less than it creates
+        long count = Math.min(lanes - liveLanes + 1, source.getState().getData().getAmount().getQuantity() / laneQuantity);
+        if (count < 2) return null;
+        for (long i = 0; i < count; i++) newLanes.add(laneQuantity);
+        return source;
+    }
+}
@@ -0,0 +1,354 @@
+package com.octo.corda_services;
+
+import com.octo.states.DDRObjectState;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.DDRSelectionStrategy;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.InsufficientBalanceException;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.ServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.ServiceLifecycleEvent;
+import net.corda.core.node.services.StatesNotAvailableException;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.core.utilities.NonEmptySet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * In-memory index of the unconsumed DDR Objects of the vault, per owner and currency, sorted by amount.
+ * <p>
+ * The index is loaded in the background once the node has started, {@code ddr.pool.loadPageSize} DDRs per database
+ * transaction, and then kept current from the vault updates, so selecting DDRs does not query the vault. Until it is
+ * loaded, {@link #isStarted} is false and the flows select their DDRs from the vault. Selection walks the DDRs of the
+ * owner by amount, skipping the reserved ones, and hands the strategy only the few DDRs it can pick from. Selected DDRs
+ * are reserved for the lock id of the selecting flow, in memory and with a vault
+ * soft lock. A reservation ends when its DDRs are consumed, when the flow releases it on failure, or after
+ * {@code ddr.pool.reservationTtlMs} if the flow ended without releasing it; the soft lock itself is released by the
+ * node when the flow ends.
+ */
+@CordaService
+public class DDRTokenPool extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(DDRTokenPool.class);
+    private static final long RESERVATION_TTL_MS_DEFAULT = 60000;
+    private static final int LOAD_PAGE_SIZE_DEFAULT = 1000;
+    private static final int MAX_CANDIDATES = 200;
+
+    private final AppServiceHub serviceHub;
+    private final boolean enabled;
+    private final long reservationTtlMillis;
+    private final int loadPageSize;
+    private final Map<IndexKey, OwnerDDRs> index = new ConcurrentHashMap<>();
+    private final Map<StateRef, Reservation> reservations = new ConcurrentHashMap<>();
+    private final Set<StateRef> consumedWhileLoading = ConcurrentHashMap.newKeySet();
+    private volatile boolean started;
+
+    public DDRTokenPool(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.enabled = ConfigUtils.getBoolean(serviceHub, "ddr.pool.enabled", true);
+        this.reservationTtlMillis = ConfigUtils.getLong(serviceHub, "ddr.pool.reservationTtlMs", RESERVATION_TTL_MS_DEFAULT);
+        this.loadPageSize = Math.max(1, ConfigUtils.getInt(serviceHub, "ddr.pool.loadPageSize", LOAD_PAGE_SIZE_DEFAULT));
+        if (enabled) {
+            serviceHub.register(AppServiceHub.SERVICE_PRIORITY_LOW, event -> {
+                if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED) {
+                    ExecutorService loader = ServiceExecutors.newSingleThreadExecutor("ddr-token-pool-load");
+                    loader.execute(this::load);
+                    ServiceExecutors.shutdown(loader);
+                }
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the index is loaded, selections must not go through the pool before.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Reserves unreserved DDRs of the owner covering the amount, chosen by the selection strategy among those on the
+     * preferred notary if they cover it, otherwise among all of them. Returns null if the owner has enough DDRs but
+     * some of them are reserved by other flows, and throws InsufficientBalanceException if the owner does not have
+     * enough DDRs at all.
+     * <p>
+     * Must be called from a flow, the reservation uses the vault soft locks.
+     */
+    public List<StateAndRef<DDRObjectState>> reserve(AbstractParty owner, Amount<Currency> amount, DDRSelectionStrategy strategy,
+                                                     Party preferredNotary, UUID lockId, ServiceHub flowServiceHub) throws InsufficientBalanceException {
+        OwnerDDRs ddrs = index.get(new IndexKey(owner, amount.getToken()));
+        if (ddrs == null) throw new InsufficientBalanceException(amount);
+
+        List<StateAndRef<DDRObjectState>> selected = null;
+        synchronized (ddrs) {
+            if (ddrs.total < amount.getQuantity()) throw new InsufficientBalanceException(amount);
+            long now = System.currentTimeMillis();
+            if (preferredNotary != null) selected = select(ddrs.entries, amount.getQuantity(), strategy, preferredNotary, now);
+            if (selected == null) selected = select(ddrs.entries, amount.getQuantity(), strategy, null, now);
+            if (selected == null) return null;
+            Reservation reservation = new Reservation(lockId, now + reservationTtlMillis);
+            selected.forEach(ddr -> reservations.put(ddr.getRef(), reservation));
+        }
+
+        try {
+            flowServiceHub.getVaultService().softLockReserve(lockId, NonEmptySet.copyOf(refs(selected)));
+        } catch (StatesNotAvailableException e) {
+            // Soft locked by a flow that did not select through the pool, the caller retries
+            logger.debug("DDRs selected for {} are soft locked by another flow", lockId, e);
+            release(selected, lockId);
+            return null;
+        }
+        return selected;
+    }
+
+    /**
+     * Ends the reservation of DDRs that will not be consumed by the flow holding the lock id.
+     */
+    public void release(Collection<StateAndRef<DDRObjectState>> ddrs, UUID lockId) {
+        ddrs.forEach(ddr -> reservations.computeIfPresent(ddr.getRef(),
+                (ref, reservation) -> reservation.lockId.equals(lockId) ? null : reservation));
+    }
+
+    /**
+     * Ends all the reservations of the flow holding the lock id, when it fails.
+     */
+    public void release(UUID lockId) {
+        reservations.values().removeIf(reservation -> reservation.lockId.equals(lockId));
+    }
+
+    /**
+     * Selects with the strategy among the candidates, or returns null if the unreserved DDRs, on the notary if given,
+     * do not cover the amount.
+     */
+    private List<StateAndRef<DDRObjectState>> select(NavigableSet<PoolEntry> entries, long required, DDRSelectionStrategy strategy,
+                                                     Party notary, long now) {
+        List<StateAndRef<DDRObjectState>> candidates = candidates(entries, required, strategy, notary, now);
+        return candidates == null ? null : strategy.select(candidates, required);
+    }
+
+    /**
+     * The unreserved DDRs the strategy can pick from, sorted by amount, walking the DDRs of the owner from both ends
+     * instead of copying them all: the largest DDRs until they cover the amount, the smallest DDR covering it alone, up
+     * to {@code MAX_CANDIDATES} covering DDRs for {@code SPREAD}, and up to {@code MAX_CANDIDATES} DDRs below the amount
+     * for the strategies combining them. Null if the largest unreserved DDRs do not cover the amount.
+     */
+    private List<StateAndRef<DDRObjectState>> candidates(NavigableSet<PoolEntry> entries, long required, DDRSelectionStrategy strategy,
+                                                         Party notary, long now) {
+        NavigableSet<PoolEntry> candidates = new TreeSet<>();
+        long covered = 0;
+        for (PoolEntry entry : entries.descendingSet()) {
+            if (covered >= required) break;
+            if (isCandidate(entry, notary, now)) {
+                candidates.add(entry);
+                covered += entry.quantity;
+            }
+        }
+        if (covered < required) return null;
+
+        PoolEntry threshold = new PoolEntry(required);
+        int covering = strategy == DDRSelectionStrategy.SPREAD ? MAX_CANDIDATES : 1;
+        for (PoolEntry entry : entries.tailSet(threshold, true)) {
+            if (covering == 0) break;
+            if (isCandidate(entry, notary, now)) {
+                candidates.add(entry);
+                covering--;
+            }
+        }
+        if (strategy == DDRSelectionStrategy.EXACT_MATCH || strategy == DDRSelectionStrategy.BRANCH_AND_BOUND) {
+            int smaller = MAX_CANDIDATES;
+            for (PoolEntry entry : entries.headSet(threshold, false).descendingSet()) {
+                if (smaller == 0) break;
+                if (isCandidate(entry, notary, now)) {
+                    candidates.add(entry);
+                    smaller--;
+                }
+            }
+        }
+
+        List<StateAndRef<DDRObjectState>> ddrs = new ArrayList<>(candidates.size());
+        candidates.forEach(entry -> ddrs.add(entry.ddr));
+        return ddrs;
+    }
+
+    private boolean isCandidate(PoolEntry entry, Party notary, long now) {
+        if (notary != null && !entry.ddr.getState().getNotary().equals(notary)) return false;
+        Reservation reservation = reservations.get(entry.ddr.getRef());
+        return reservation == null || reservation.expiresAt < now;
+    }
+
+    /**
+     * Subscribes to the vault updates with the first page of DDRs, then loads the next pages each in its own database
+     * transaction. The pages hold the DDRs unconsumed or consumed since the load started, sorted by recording time, so
+     * DDRs consumed or recorded during the load do not shift the pages; consumed DDRs are not added, nor are those
+     * whose consumption was received before their page.
+     */
+    private void load() {
+        try {
+            Instant loadStart = Instant.now();
+            QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED)
+                    .or(new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.CONSUMED).withTimeCondition(new QueryCriteria.TimeCondition(
+                            QueryCriteria.TimeInstantType.CONSUMED, Builder.INSTANCE.greaterThanOrEqual(loadStart))));
+            Sort sort = new Sort(Arrays.asList(
+                    new Sort.SortColumn(new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC),
+                    new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+                    new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+
+            DataFeed<Vault.Page<DDRObjectState>, Vault.Update<DDRObjectState>> feed = serviceHub.getDatabase().transaction(session ->
+                    serviceHub.getVaultService().trackBy(DDRObjectState.class, criteria, new PageSpecification(DEFAULT_PAGE_NUM, loadPageSize), sort));
+            feed.getUpdates().subscribe(update -> {
+                update.getConsumed().forEach(this::remove);
+                update.getProduced().forEach(this::add);
+            }, error -> logger.error("DDR token pool stopped receiving vault updates", error));
+
+            long loaded = addUnconsumed(feed.getSnapshot());
+            for (int page = DEFAULT_PAGE_NUM + 1; loaded == (long) (page - 1) * loadPageSize; page++) {
+                final int pageNumber = page;
+                loaded += addUnconsumed(serviceHub.getDatabase().transaction(session -> serviceHub.getVaultService()
+                        .queryBy(DDRObjectState.class, criteria, new PageSpecification(pageNumber, loadPageSize), sort)));
+            }
+            started = true;
+            consumedWhileLoading.clear();
+            logger.info("DDR token pool loaded {} DDR Objects", index.values().stream().mapToInt(ddrs -> ddrs.entries.size()).sum());
+        } catch (RuntimeException e) {
+            logger.error("DDR token pool could not be loaded, DDRs are selected from the vault until the next restart", e);
+        }
+    }
+
+    /**
+     * Adds the unconsumed DDRs of the page, returns the number of DDRs in the page.
+     */
+    private int addUnconsumed(Vault.Page<DDRObjectState> page) {
+        List<StateAndRef<DDRObjectState>> states = page.getStates();
+        List<Vault.StateMetadata> metadata = page.getStatesMetadata();
+        for (int i = 0; i < states.size(); i++) {
+            StateAndRef<DDRObjectState> ddr = states.get(i);
+            if (metadata.get(i).getStatus() == Vault.StateStatus.UNCONSUMED && !consumedWhileLoading.contains(ddr.getRef())) add(ddr);
+        }
+        return states.size();
+    }
+
+    private void add(StateAndRef<DDRObjectState> ddr) {
+        OwnerDDRs ddrs = index.computeIfAbsent(key(ddr), key -> new OwnerDDRs());
+        synchronized (ddrs) {
+            if (ddrs.entries.add(new PoolEntry(ddr))) ddrs.total += quantity(ddr);
+        }
+    }
+
+    private void remove(StateAndRef<DDRObjectState> ddr) {
+        OwnerDDRs ddrs = index.get(key(ddr));
+        if (ddrs != null) {
+            synchronized (ddrs) {
+                if (ddrs.entries.remove(new PoolEntry(ddr))) ddrs.total -= quantity(ddr);
+            }
+        }
+        reservations.remove(ddr.getRef());
+        if (!started) consumedWhileLoading.add(ddr.getRef());
+    }
+
+    private static IndexKey key(StateAndRef<DDRObjectState> ddr) {
+        DDRObjectState state = ddr.getState().getData();
+        return new IndexKey(state.getOwner(), state.getCurrency());
+    }
+
+    private static long quantity(StateAndRef<DDRObjectState> ddr) {
+        return ddr.getState().getData().getAmount().getQuantity();
+    }
+
+    private static List<StateRef> refs(List<StateAndRef<DDRObjectState>> ddrs) {
+        List<StateRef> refs = new ArrayList<>(ddrs.size());
+        ddrs.forEach(ddr -> refs.add(ddr.getRef()));
+        return refs;
+    }
+
+    private static class OwnerDDRs {
+        private final NavigableSet<PoolEntry> entries = new TreeSet<>();
+        private long total;
+    }
+
+    /**
+     * DDR of the index, ordered by amount then state ref.
+     */
+    private static class PoolEntry implements Comparable<PoolEntry> {
+        private final long quantity;
+        private final String ref;
+        private final StateAndRef<DDRObjectState> ddr;
+
+        private PoolEntry(StateAndRef<DDRObjectState> ddr) {
+            this.quantity = quantity(ddr);
+            this.ref = ddr.getRef().toString();
+            this.ddr = ddr;
+        }
+
+        /**
+         * Bound of the entries of an amount, before all of them.
+         */
+        private PoolEntry(long quantity) {
+            this.quantity = quantity;
+            this.ref = "";
+            this.ddr = null;
+        }
+
+        @Override
+        public int compareTo(PoolEntry other) {
+            int byQuantity = Long.compare(quantity, other.quantity);
+            return byQuantity != 0 ? byQuantity : ref.compareTo(other.ref);
+        }
+    }
+
+    private static class IndexKey {
+        private final AbstractParty owner;
+        private final Currency currency;
+
+        private IndexKey(AbstractParty owner, Currency currency) {
+            this.owner = owner;
+            this.currency = currency;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof IndexKey)) return false;
+            IndexKey other = (IndexKey) o;
+            return owner.equals(other.owner) && currency.equals(other.currency);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(owner, currency);
+        }
+    }
+
+    private static class Reservation {
+        private final UUID lockId;
+        private final long expiresAt;
+
+        private Reservation(UUID lockId, long expiresAt) {
+            this.lockId = lockId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.octo.corda_services;
+
+import com.octo.builders.InterBankTransferStateBuilder;
+import com.octo.flows.NetInterBankTransfers;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.core.transactions.SignedTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Buffers outgoing inter-bank transfers per counterparty bank and settles them with {@link NetInterBankTransfers}.
+ * <p>
+ * When the netting window of a counterparty elapses, the buffered transfers are sent to the counterparty, which adds
+ * its own buffered transfers in the opposite direction, and only the net position moves DDR Objects. To avoid both
+ * banks starting a netting round at the same time, the bank with the greater name waits twice the window, so it
+ * usually contributes its transfers as responder.
+ */
+@CordaService
+public class InterBankNettingService extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(InterBankNettingService.class);
+    private static final long WINDOW_MS_DEFAULT = 1000;
+
+    private final AppServiceHub serviceHub;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final Map<Party, List<InterBankTransferStateBuilder>> buffers = new HashMap<>();
+    private final Map<Party, ScheduledFuture<?>> windowTimers = new HashMap<>();
+    private final Map<String, CompletableFuture<SignedTransaction>> pendingResults = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = ServiceExecutors.newSingleThreadScheduledExecutor("interbank-netting");
+
+    public InterBankNettingService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.enabled = ConfigUtils.getBoolean(serviceHub, "virement.netting.enabled", false);
+        this.windowMillis = ConfigUtils.getLong(serviceHub, "virement.netting.windowMs", WINDOW_MS_DEFAULT);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a transfer to its receiver bank, the returned future completes once the netted transaction is recorded.
+     */
+    public CompletableFuture<SignedTransaction> submit(InterBankTransferStateBuilder transfer) {
+        CompletableFuture<SignedTransaction> result = new CompletableFuture<>();
+        pendingResults.put(transfer.externalId, result);
+        Party counterparty = transfer.receiverBank;
+        synchronized (this) {
+            buffers.computeIfAbsent(counterparty, party -> new ArrayList<>()).add(transfer);
+            if (!windowTimers.containsKey(counterparty)) {
+                long delay = isPreferredInitiator(counterparty) ? windowMillis : 2 * windowMillis;
+                windowTimers.put(counterparty, scheduler.schedule(() -> settle(counterparty), delay, TimeUnit.MILLISECONDS));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Takes the transfers buffered for a counterparty, they are then settled by the caller.
+     */
+    public List<InterBankTransferStateBuilder> drain(Party counterparty) {
+        synchronized (this) {
+            ScheduledFuture<?> timer = windowTimers.remove(counterparty);
+            if (timer != null) timer.cancel(false);
+            List<InterBankTransferStateBuilder> transfers = buffers.remove(counterparty);
+            return transfers == null ? new ArrayList<>() : transfers;
+        }
+    }
+
+    public void settled(Collection<String> references, SignedTransaction stx) {
+        references.forEach(reference -> {
+            CompletableFuture<SignedTransaction> result = pendingResults.remove(reference);
+            if (result != null) result.complete(stx);
+        });
+    }
+
+    public void failed(Collection<String> references, Throwable error) {
+        references.forEach(reference -> {
+            CompletableFuture<SignedTransaction> result = pendingResults.remove(reference);
+            if (result != null) result.completeExceptionally(error);
+        });
+    }
+
+    private void settle(Party counterparty) {
+        List<InterBankTransferStateBuilder> transfers = drain(counterparty);
+        if (transfers.isEmpty()) return;
+        List<String> references = new ArrayList<>();
+        transfers.forEach(transfer -> references.add(transfer.externalId));
+        logger.info("Netting {} transfers to {}", transfers.size(), counterparty);
+        try {
+            serviceHub.startFlow(new NetInterBankTransfers.Initiator(counterparty, transfers)).getReturnValue()
+                    .toCompletableFuture().whenComplete((stx, error) -> {
+                if (error == null) settled(references, stx);
+                else failed(references, error);
+            });
+        } catch (RuntimeException e) {
+            failed(references, e);
+        }
+    }
+
+    private boolean isPreferredInitiator(Party counterparty) {
+        Party us = serviceHub.getMyInfo().getLegalIdentities().get(0);
+        return us.getName().toString().compareTo(counterparty.getName().toString()) < 0;
+    }
+}
@@ -0,0 +1,121 @@
+package com.octo.corda_services;
+
+import com.octo.metrics.NotaryMetrics;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.JmxUtils;
+import com.octo.utils.NotarySelectionStrategy;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Notaries of the network map available to the flows, and choice of the notary of the transactions without inputs
+ * with the {@code notary.pool.strategy}.
+ * <p>
+ * The pool holds the notaries whose organisation is listed in {@code notary.pool.notaries}, or all the notaries
+ * without it, and is looked up again on any network map change. The latency of each notary is recorded by the flows
+ * and exposed by the {@code com.octo.notary:type=NotaryPool,node=<organisation>,notary=<notary organisation>} MBeans.
+ */
+@CordaService
+public class NotaryPool extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotaryPool.class);
+    private static final long LOG_INTERVAL_MS_DEFAULT = 60000;
+
+    private final AppServiceHub serviceHub;
+    private final String organisation;
+    private final NotarySelectionStrategy strategy;
+    // Organisations of the notaries of the pool, all notaries if empty
+    private final Set<String> configuredNotaries;
+    private final Map<Party, NotaryMetrics> metrics = new ConcurrentHashMap<>();
+    private final AtomicLong turns = new AtomicLong();
+    private volatile List<Party> notaries;
+
+    public NotaryPool(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.organisation = serviceHub.getMyInfo().getLegalIdentities().get(0).getName().getOrganisation();
+        this.strategy = NotarySelectionStrategy.valueOf(ConfigUtils.getString(serviceHub, "notary.pool.strategy",
+                NotarySelectionStrategy.DEFAULT.name()));
+        this.configuredNotaries = Arrays.stream(ConfigUtils.getString(serviceHub, "notary.pool.notaries", "").split(","))
+                .map(String::trim).filter(name -> !name.isEmpty()).collect(Collectors.toSet());
+        serviceHub.getNetworkMapCache().getChanged().subscribe(change -> notaries = null,
+                error -> logger.error("Notary pool stopped receiving network map changes", error));
+        ServiceExecutors.scheduleLogSummary(logger, "notary-pool-metrics",
+                ConfigUtils.getLong(serviceHub, "notary.pool.metrics.logIntervalMs", LOG_INTERVAL_MS_DEFAULT), this::logSummary);
+    }
+
+    public NotarySelectionStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Notaries of the pool sorted by name.
+     */
+    public List<Party> getNotaries() {
+        List<Party> pool = notaries;
+        if (pool == null) {
+            pool = serviceHub.getNetworkMapCache().getNotaryIdentities().stream()
+                    .filter(notary -> configuredNotaries.isEmpty() || configuredNotaries.contains(notary.getName().getOrganisation()))
+                    .sorted(Comparator.comparing(notary -> notary.getName().toString()))
+                    .collect(Collectors.toList());
+            notaries = pool;
+        }
+        return pool;
+    }
+
+    /**
+     * Notary of the new states of the bank, or null if the pool is empty.
+     */
+    public Party choose(Party bank) {
+        List<Party> pool = getNotaries();
+        if (pool.isEmpty()) return null;
+        if (pool.size() == 1) return pool.get(0);
+        return strategy.select(pool, bank, turns.getAndIncrement(), notary -> metrics(notary).load());
+    }
+
+    /**
+     * Marks the start of a notarisation by the notary and returns its start time, to pass to {@link #notarised} or
+     * {@link #failed}.
+     */
+    public long started(Party notary) {
+        metrics(notary).started();
+        return System.nanoTime();
+    }
+
+    public void notarised(Party notary, long startNanos) {
+        metrics(notary).notarised(startNanos);
+    }
+
+    public void failed(Party notary) {
+        metrics(notary).failed();
+    }
+
+    public void notaryChanged(Party notary) {
+        metrics(notary).notaryChanged();
+    }
+
+    public NotaryMetrics metrics(Party notary) {
+        return metrics.computeIfAbsent(notary, party -> {
+            NotaryMetrics notaryMetrics = new NotaryMetrics(party.getName().getOrganisation());
+            JmxUtils.register(notaryMetrics, "com.octo.notary:type=NotaryPool,node=" + organisation
+                    + ",notary=" + party.getName().getOrganisation());
+            return notaryMetrics;
+        });
+    }
+
+    private String logSummary() {
+        if (metrics.isEmpty()) return null;
+        StringBuilder summary = new StringBuilder("Notary pool (").append(strategy).append(") latencies:");
+        metrics.values().forEach(notaryMetrics -> summary.append("\n  ").append(notaryMetrics.logSummary()));
+        return summary.toString();
+    }
+}
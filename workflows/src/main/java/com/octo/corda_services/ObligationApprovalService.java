@@ -0,0 +1,198 @@
+package com.octo.corda_services;
+
+import com.octo.approval.ApprovalRequest;
+import com.octo.approval.ApprovalRules;
+import com.octo.enums.DDRObligationStatus;
+import com.octo.enums.DDRObligationType;
+import com.octo.flows.ApproveDDRPledge;
+import com.octo.flows.ApproveDDRRedeem;
+import com.octo.metrics.ApprovalMetrics;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.JmxUtils;
+import com.octo.utils.ObligationQueries;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.ServiceLifecycleEvent;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.core.transactions.SignedTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Approves the pledges and redeems sent to the central bank without an operator, with {@code approval.enabled}.
+ * <p>
+ * The pending obligations issued by the central bank are loaded at startup and then followed from the vault updates,
+ * after the pledges approved since midnight UTC have been counted in the daily limits.
+ * Those passing the {@link ApprovalRules} are approved by {@code approval.workers} threads, each running one
+ * {@link ApproveDDRPledge} or {@link ApproveDDRRedeem} at a time, in the order of {@link ApprovalRequest}. The others
+ * stay pending for an operator, as do the obligations arriving while {@code approval.queueCapacity} requests wait.
+ * Queue depth, outcomes and time to approval are exposed by the
+ * {@code com.octo.approval:type=AutoApproval,node=<organisation>} MBean.
+ */
+@CordaService
+public class ObligationApprovalService extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObligationApprovalService.class);
+    private static final int WORKERS_DEFAULT = 4;
+    private static final int QUEUE_CAPACITY_DEFAULT = 1000;
+    private static final long LOG_INTERVAL_MS_DEFAULT = 60000;
+    private static final int PAGE_SIZE = 1000;
+    private static final String MBEAN_NAME_PREFIX = "com.octo.approval:type=AutoApproval,node=";
+
+    private final AppServiceHub serviceHub;
+    private final Party us;
+    private final boolean enabled;
+    private final int workers;
+    private final int queueCapacity;
+    private final long logIntervalMillis;
+    private final ApprovalRules rules;
+    private final PriorityBlockingQueue<ApprovalRequest> queue = new PriorityBlockingQueue<>();
+    // External ids queued or being approved, an obligation is in both the startup snapshot and the updates at worst
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ApprovalMetrics metrics = new ApprovalMetrics(queue::size);
+
+    public ObligationApprovalService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.us = serviceHub.getMyInfo().getLegalIdentities().get(0);
+        this.enabled = ConfigUtils.getBoolean(serviceHub, "approval.enabled", false);
+        this.workers = Math.max(1, ConfigUtils.getInt(serviceHub, "approval.workers", WORKERS_DEFAULT));
+        this.queueCapacity = Math.max(1, ConfigUtils.getInt(serviceHub, "approval.queueCapacity", QUEUE_CAPACITY_DEFAULT));
+        this.logIntervalMillis = ConfigUtils.getLong(serviceHub, "approval.metrics.logIntervalMs", LOG_INTERVAL_MS_DEFAULT);
+        long defaultDailyLimit = ConfigUtils.getLong(serviceHub, "approval.pledge.dailyLimit", 0);
+        this.rules = new ApprovalRules(ConfigUtils.getLong(serviceHub, "approval.pledge.maxAmount", 0),
+                ConfigUtils.getLong(serviceHub, "approval.redeem.maxAmount", 0),
+                bank -> ConfigUtils.getLong(serviceHub, "approval.banks.\"" + bank.getName().getOrganisation() + "\".dailyLimit", defaultDailyLimit));
+        if (enabled) {
+            serviceHub.register(AppServiceHub.SERVICE_PRIORITY_LOW, event -> {
+                if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED) start();
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ApprovalMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void start() {
+        if (!us.getName().equals(RIBService.CENTRAL_BANK_NAME)) {
+            logger.warn("approval.enabled is only used by the central bank, {} does not approve obligations", us.getName());
+            return;
+        }
+        JmxUtils.register(metrics, MBEAN_NAME_PREFIX + us.getName().getOrganisation());
+        countApprovedToday();
+        DataFeed<Vault.Page<DDRObligationState>, Vault.Update<DDRObligationState>> feed = serviceHub.getDatabase().transaction(session ->
+                serviceHub.getVaultService().trackBy(DDRObligationState.class, ObligationQueries.pending().and(ObligationQueries.issuedBy(us)),
+                        new PageSpecification(DEFAULT_PAGE_NUM, queueCapacity), ObligationQueries.byRequesterDate()));
+        feed.getSnapshot().getStates().forEach(this::submit);
+        feed.getUpdates().subscribe(update -> update.getProduced().forEach(this::submit),
+                error -> logger.error("Auto-approvals stopped receiving vault updates", error));
+
+        ExecutorService executor = ServiceExecutors.newFixedThreadPool(workers, "obligation-approval");
+        for (int i = 0; i < workers; i++) executor.execute(this::work);
+        ServiceExecutors.scheduleLogSummary(logger, "obligation-approval-metrics", logIntervalMillis, metrics::logSummary);
+        logger.info("Auto-approval started with {} workers and {} pending obligations", workers, queue.size());
+    }
+
+    /**
+     * Counts the pledges approved since midnight UTC, before a restart, in the daily limits of their banks. Approved
+     * pledges stay unconsumed and are paged by recording time, a page per database transaction.
+     */
+    private void countApprovedToday() {
+        Instant midnight = LocalDate.now(ZoneOffset.UTC).atStartOfDay(ZoneOffset.UTC).toInstant();
+        QueryCriteria criteria = ObligationQueries.approved(DDRObligationType.PLEDGE).and(ObligationQueries.issuedBy(us))
+                .and(new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED).withTimeCondition(new QueryCriteria.TimeCondition(
+                        QueryCriteria.TimeInstantType.RECORDED, Builder.INSTANCE.greaterThanOrEqual(midnight))));
+        Sort sort = new Sort(Collections.singletonList(new Sort.SortColumn(
+                new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC)));
+        int counted = 0;
+        List<StateAndRef<DDRObligationState>> page;
+        do {
+            final int pageNumber = DEFAULT_PAGE_NUM + counted / PAGE_SIZE;
+            page = serviceHub.getDatabase().transaction(session -> serviceHub.getVaultService()
+                    .queryBy(DDRObligationState.class, criteria, new PageSpecification(pageNumber, PAGE_SIZE), sort).getStates());
+            page.forEach(stateAndRef -> {
+                DDRObligationState obligation = stateAndRef.getState().getData();
+                rules.approved(obligation.getRequester(), obligation.getAmount().getQuantity());
+            });
+            counted += page.size();
+        } while (page.size() == PAGE_SIZE);
+        if (counted > 0) logger.info("{} pledges approved today counted in the daily limits", counted);
+    }
+
+    private void submit(StateAndRef<DDRObligationState> stateAndRef) {
+        DDRObligationState obligation = stateAndRef.getState().getData();
+        if (obligation.getStatus() != DDRObligationStatus.REQUEST || !obligation.getIssuer().equals(us)) return;
+        if (!inProgress.add(obligation.getExternalId())) return;
+        if (queue.size() >= queueCapacity) {
+            inProgress.remove(obligation.getExternalId());
+            metrics.dropped();
+            logger.warn("Auto-approval queue is full, {} is left for manual approval", obligation.getExternalId());
+            return;
+        }
+        queue.add(new ApprovalRequest(obligation, sequence.incrementAndGet()));
+    }
+
+    private void work() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ApprovalRequest request = queue.take();
+                metrics.taken(request.getQueuedNanos());
+                try {
+                    approve(request);
+                } finally {
+                    inProgress.remove(request.getExternalId());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void approve(ApprovalRequest request) throws InterruptedException {
+        if (!rules.reserve(request)) {
+            metrics.manual();
+            logger.info("{} {} of {} for {} is left for manual approval", request.getType(), request.getExternalId(),
+                    request.getBank().getName(), request.getQuantity());
+            return;
+        }
+        FlowLogic<SignedTransaction> flow = request.getType() == DDRObligationType.PLEDGE
+                ? new ApproveDDRPledge.Initiator(request.getExternalId()) : new ApproveDDRRedeem.Initiator(request.getExternalId());
+        try {
+            serviceHub.startFlow(flow).getReturnValue().get();
+            metrics.approved(request.getRequesterDateMillis());
+        } catch (ExecutionException | RuntimeException e) {
+            rules.release(request);
+            metrics.failed();
+            logger.warn("Auto-approval of {} {} failed: {}", request.getType(), request.getExternalId(),
+                    e instanceof ExecutionException ? e.getCause().getMessage() : e.getMessage());
+        }
+    }
+}
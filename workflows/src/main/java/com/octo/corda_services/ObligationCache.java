@@ -0,0 +1,162 @@
+package com.octo.corda_services;
+
+import com.octo.metrics.ObligationCacheMetrics;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.JmxUtils;
+import com.octo.utils.ObligationQueries;
+import com.octo.utils.ServiceExecutors;
+import com.octo.utils.Utils;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.ServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.ServiceLifecycleEvent;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Unconsumed obligations of the vault by external id, so the approve, deny and cancel flows find the obligation
+ * without a vault query.
+ * <p>
+ * The cache is loaded in the background with the {@code obligation.cache.maxSize} most recent obligations once the
+ * node has started, lookups query the vault until then, and is then kept current from the vault updates. It holds at most that many obligations, the least recently used are evicted.
+ * A lookup missing the cache queries the vault and caches the obligation found, unless the vault was updated
+ * meanwhile, as the obligation may have been consumed. Hit rate and lookup latencies are exposed by the
+ * {@code com.octo.obligation:type=ObligationCache,node=<organisation>} MBean.
+ */
+@CordaService
+public class ObligationCache extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObligationCache.class);
+    private static final int MAX_SIZE_DEFAULT = 10000;
+    private static final long LOG_INTERVAL_MS_DEFAULT = 60000;
+
+    private final AppServiceHub serviceHub;
+    private final boolean enabled;
+    private final int maxSize;
+    private final Map<String, StateAndRef<DDRObligationState>> obligations;
+    private final ObligationCacheMetrics metrics;
+    // Incremented with each vault update, a lookup only caches what it read from the vault if it did not change
+    private long updates;
+    private volatile boolean tracking;
+
+    public ObligationCache(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.enabled = ConfigUtils.getBoolean(serviceHub, "obligation.cache.enabled", true);
+        this.maxSize = Math.max(1, ConfigUtils.getInt(serviceHub, "obligation.cache.maxSize", MAX_SIZE_DEFAULT));
+        this.metrics = new ObligationCacheMetrics(this::size);
+        this.obligations = new LinkedHashMap<String, StateAndRef<DDRObligationState>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StateAndRef<DDRObligationState>> eldest) {
+                if (size() <= maxSize) return false;
+                metrics.evicted();
+                return true;
+            }
+        };
+        if (enabled) {
+            String organisation = serviceHub.getMyInfo().getLegalIdentities().get(0).getName().getOrganisation();
+            JmxUtils.register(metrics, "com.octo.obligation:type=ObligationCache,node=" + organisation);
+            ServiceExecutors.scheduleLogSummary(logger, "obligation-cache-metrics",
+                    ConfigUtils.getLong(serviceHub, "obligation.cache.metrics.logIntervalMs", LOG_INTERVAL_MS_DEFAULT), metrics::logSummary);
+            serviceHub.register(AppServiceHub.SERVICE_PRIORITY_LOW, event -> {
+                if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED) {
+                    ExecutorService loader = ServiceExecutors.newSingleThreadExecutor("obligation-cache-load");
+                    loader.execute(this::load);
+                    ServiceExecutors.shutdown(loader);
+                }
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ObligationCacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the unconsumed obligation of the external id, from the cache or else from the vault, or null if the
+     * vault has none. Must be called from a flow.
+     */
+    public StateAndRef<DDRObligationState> get(String externalId, ServiceHub flowServiceHub) {
+        long start = System.nanoTime();
+        if (!tracking) {
+            StateAndRef<DDRObligationState> obligation = Utils.queryObligationByExternalId(externalId, flowServiceHub);
+            metrics.miss(start);
+            return obligation;
+        }
+        long updatesBefore;
+        synchronized (this) {
+            StateAndRef<DDRObligationState> obligation = obligations.get(externalId);
+            if (obligation != null) {
+                metrics.hit(start);
+                return obligation;
+            }
+            updatesBefore = updates;
+        }
+        StateAndRef<DDRObligationState> obligation = Utils.queryObligationByExternalId(externalId, flowServiceHub);
+        synchronized (this) {
+            if (obligation != null && updates == updatesBefore) obligations.put(externalId, obligation);
+        }
+        metrics.miss(start);
+        return obligation;
+    }
+
+    private synchronized int size() {
+        return obligations.size();
+    }
+
+    private void load() {
+        QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED);
+        DataFeed<Vault.Page<DDRObligationState>, Vault.Update<DDRObligationState>> feed;
+        try {
+            feed = serviceHub.getDatabase().transaction(session -> serviceHub.getVaultService()
+                    .trackBy(DDRObligationState.class, criteria, new PageSpecification(DEFAULT_PAGE_NUM, maxSize),
+                            ObligationQueries.byRequesterDate(Sort.Direction.DESC)));
+        } catch (RuntimeException e) {
+            logger.error("Obligation cache could not be loaded, lookups query the vault until the next restart", e);
+            return;
+        }
+        feed.getSnapshot().getStates().forEach(this::add);
+        feed.getUpdates().subscribe(this::update, error -> {
+            // Without updates the cached obligations could be consumed ones, lookups go to the vault from now on
+            tracking = false;
+            synchronized (this) {
+                obligations.clear();
+                updates++;
+            }
+            logger.error("Obligation cache stopped receiving vault updates", error);
+        });
+        tracking = true;
+        logger.info("Obligation cache loaded {} obligations", feed.getSnapshot().getStates().size());
+    }
+
+    private synchronized void update(Vault.Update<DDRObligationState> update) {
+        updates++;
+        update.getConsumed().forEach(obligation -> obligations.remove(externalId(obligation), obligation));
+        update.getProduced().forEach(this::add);
+    }
+
+    private synchronized void add(StateAndRef<DDRObligationState> obligation) {
+        obligations.put(externalId(obligation), obligation);
+    }
+
+    private static String externalId(StateAndRef<DDRObligationState> obligation) {
+        return obligation.getState().getData().getExternalId();
+    }
+}
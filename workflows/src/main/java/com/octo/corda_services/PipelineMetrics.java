@@ -0,0 +1,69 @@
+package com.octo.corda_services;
+
+import com.octo.metrics.PipelineStage;
+import com.octo.metrics.StageMetrics;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.JmxUtils;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latency of each stage of the virement pipeline, recorded by the consumer, the service and the flows it starts.
+ * <p>
+ * Every stage is exposed as the {@code com.octo.virement:type=PipelineMetrics,node=<organisation>,stage=<stage>} MBean,
+ * and summarised in the log every {@code virement.metrics.logIntervalMs}.
+ */
+@CordaService
+public class PipelineMetrics extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineMetrics.class);
+    private static final long LOG_INTERVAL_MS_DEFAULT = 60000;
+
+    private final Map<PipelineStage, StageMetrics> stages = new EnumMap<>(PipelineStage.class);
+
+    public PipelineMetrics(AppServiceHub serviceHub) {
+        String organisation = serviceHub.getMyInfo().getLegalIdentities().get(0).getName().getOrganisation();
+        for (PipelineStage stage : PipelineStage.values()) {
+            StageMetrics stageMetrics = new StageMetrics(stage);
+            stages.put(stage, stageMetrics);
+            JmxUtils.register(stageMetrics, "com.octo.virement:type=PipelineMetrics,node=" + organisation + ",stage=" + stage.getLabel());
+        }
+        ServiceExecutors.scheduleLogSummary(logger, "pipeline-metrics",
+                ConfigUtils.getLong(serviceHub, "virement.metrics.logIntervalMs", LOG_INTERVAL_MS_DEFAULT), this::logSummary);
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, taken from {@link System#nanoTime()}.
+     */
+    public void record(PipelineStage stage, long startNanos) {
+        stages.get(stage).record(startNanos);
+    }
+
+    public void error(PipelineStage stage) {
+        stages.get(stage).error();
+    }
+
+    /**
+     * Counts an attempt of the stage that must be made again, e.g. a DDR selection that found its DDRs reserved.
+     */
+    public void retry(PipelineStage stage) {
+        stages.get(stage).retry();
+    }
+
+    public StageMetrics get(PipelineStage stage) {
+        return stages.get(stage);
+    }
+
+    private String logSummary() {
+        StringBuilder summary = new StringBuilder("Virement pipeline latencies:");
+        stages.values().forEach(stageMetrics -> summary.append("\n  ").append(stageMetrics.logSummary()));
+        return summary.toString();
+    }
+}
@@ -1,44 +1,206 @@
 package com.octo.corda_services;
 
+import com.octo.flows.SyncIdentitiesFlow;
+import com.octo.schemas.PersistentBankRoute;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.NodeInfo;
 import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.NetworkMapCache;
+import net.corda.core.node.services.ServiceLifecycleEvent;
 import net.corda.core.serialization.SingletonSerializeAsToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Routing table from bank codes, the first 3 digits of a RIB, to the node of the bank, and cache of the central bank
+ * party.
+ * <p>
+ * Routes are persisted in {@code bank_routes} and loaded when the node starts. {@link SyncIdentitiesFlow} runs in the
+ * background for the nodes without a route, once at startup, when a node joins or changes in the network map with
+ * {@code bank.routes.syncOnNetworkChange}, and when a transfer finds no route. The cached party is looked up
+ * again on any network map change. Notaries are provided by {@link NotaryPool}.
+ */
 @CordaService
 public class RIBService  extends SingletonSerializeAsToken {
     public static final Logger logger = LoggerFactory.getLogger(RIBService.class);
 
+    public static final CordaX500Name CENTRAL_BANK_NAME = CordaX500Name.parse("O=CentralBank,L=New York,C=US");
+    private static final long SYNC_DELAY_MS = 1000;
+
     public final String ourOrgName;
 
     private final AppServiceHub serviceHub;
-    private final Map<String, Party> identities = new HashMap<>();
+    private final String ourIdentifier;
+    private final Map<String, Party> identities = new ConcurrentHashMap<>();
+    // Parties that sent or received our code, with or without a code of their own
+    private final Set<Party> synced = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+    // Parties with a SyncIdentitiesFlow in flight
+    private final Set<Party> syncing = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = ServiceExecutors.newSingleThreadScheduledExecutor("rib-routes");
+    private final boolean syncOnNetworkChange;
+    private volatile boolean started;
+    private volatile Party centralBank;
 
     public RIBService(AppServiceHub serviceHub) {
         this.serviceHub = serviceHub;
         this.ourOrgName = serviceHub.getMyInfo().getLegalIdentities().get(0).getName().getOrganisation();
+        String configuredIdentifier = ConfigUtils.getString(serviceHub, "bank.code", null);
+        this.ourIdentifier = configuredIdentifier != null ? configuredIdentifier : defaultIdentifier();
+        this.syncOnNetworkChange = ConfigUtils.getBoolean(serviceHub, "bank.routes.syncOnNetworkChange", true);
+        serviceHub.register(AppServiceHub.SERVICE_PRIORITY_NORMAL, event -> {
+            if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED) {
+                serviceHub.getDatabase().transaction(session -> loadRoutes());
+                started = true;
+                requestSync();
+            }
+        });
+        serviceHub.getNetworkMapCache().getChanged().subscribe(this::onNetworkMapChange,
+                error -> logger.error("Bank routes stopped receiving network map changes", error));
     }
 
-    public String getOurIdentifier(){
-        // TODO This must be a constant, or retrieved from config file, but now the class it's used for all nodes so we do ifs
+    /**
+     * Code of the banks on nodes without {@code bank.code} in their config, before it was configurable.
+     */
+    private String defaultIdentifier() {
         if(ourOrgName.equals("BankA")) return "007";
         if(ourOrgName.equals("CentralBank")) return "";
         if(ourOrgName.equals("Notary")) return "";
+        logger.warn("No bank.code in the CorDapp config of {}, using 008", ourOrgName);
         return "008";
     }
 
+    public String getOurIdentifier(){
+        return ourIdentifier;
+    }
+
     public Party getPartyFromRIB(String rib){
         String identifier = rib.substring(0, 3);
         return identities.get(identifier);
     }
 
+    /**
+     * Adds or replaces the route of a bank code. Must be called in a database transaction, as flows are.
+     */
     public void addToMap(String identifier, Party bank){
-        identities.put(identifier, bank);
-        logger.info("Identifier {} added to map {}", identifier, identities);
+        Party previous = identities.put(identifier, bank);
+        if (bank.equals(previous)) return;
+        serviceHub.withEntityManager(entityManager -> {
+            entityManager.merge(new PersistentBankRoute(identifier, bank.getName().toString()));
+        });
+        logger.info("Identifier {} routed to {}", identifier, bank.getName());
+    }
+
+    public boolean isSynced(Party party) {
+        return synced.contains(party);
+    }
+
+    public void markSynced(Party party) {
+        synced.add(party);
+    }
+
+    /**
+     * Nodes of the network map, other than ours and the notaries, that did not send or receive our code yet.
+     */
+    public List<Party> unsyncedParties() {
+        NetworkMapCache networkMapCache = serviceHub.getNetworkMapCache();
+        List<Party> unsynced = new ArrayList<>();
+        for (NodeInfo nodeInfo : networkMapCache.getAllNodes()) {
+            // Notary nodes may have their service identity after the node identity
+            if (nodeInfo.getLegalIdentities().stream().anyMatch(networkMapCache::isNotary)) continue;
+            Party party = nodeInfo.getLegalIdentities().get(0);
+            if (!serviceHub.getMyInfo().isLegalIdentity(party) && !isSynced(party)) unsynced.add(party);
+        }
+        return unsynced;
+    }
+
+    /**
+     * Syncs the nodes without a route in the background, once for all the requests of {@code SYNC_DELAY_MS}.
+     */
+    public void requestSync() {
+        if (started && !ourIdentifier.isEmpty() && !isNotary(serviceHub.getMyInfo()) && syncScheduled.compareAndSet(false, true))
+            scheduler.schedule(this::sync, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public Party getCentralBank() {
+        Party party = centralBank;
+        if (party == null) {
+            party = serviceHub.getNetworkMapCache().getPeerByLegalName(CENTRAL_BANK_NAME);
+            centralBank = party;
+        }
+        return party;
+    }
+
+    private Void loadRoutes() {
+        List<PersistentBankRoute> routes = new ArrayList<>();
+        serviceHub.withEntityManager(entityManager -> {
+            routes.addAll(entityManager.createQuery("SELECT r FROM PersistentBankRoute r", PersistentBankRoute.class).getResultList());
+        });
+        for (PersistentBankRoute route : routes) {
+            Party party = serviceHub.getIdentityService().wellKnownPartyFromX500Name(CordaX500Name.parse(route.getPartyName()));
+            if (party != null) {
+                identities.putIfAbsent(route.getBankCode(), party);
+                synced.add(party);
+            } else logger.warn("Party {} of bank code {} is not known anymore", route.getPartyName(), route.getBankCode());
+        }
+        logger.info("Loaded {} bank routes", identities.size());
+        return null;
+    }
+
+    private void onNetworkMapChange(NetworkMapCache.MapChange change) {
+        centralBank = null;
+        NodeInfo node = change.getNode();
+        if (change instanceof NetworkMapCache.MapChange.Removed) {
+            forget(node);
+            return;
+        }
+        // A modified node may have a new identity key, its routes come back with the sync
+        if (change instanceof NetworkMapCache.MapChange.Modified)
+            forget(((NetworkMapCache.MapChange.Modified) change).getPreviousNode());
+        if (syncOnNetworkChange && !isNotary(node)) requestSync();
+    }
+
+    private void forget(NodeInfo node) {
+        identities.values().removeIf(node.getLegalIdentities()::contains);
+        synced.removeAll(node.getLegalIdentities());
+    }
+
+    private boolean isNotary(NodeInfo node) {
+        return serviceHub.getNetworkMapCache().isNotary(node.getLegalIdentities().get(0));
+    }
+
+    /**
+     * Starts a flow per unsynced node, unless the previous one for the node is still running, so an unreachable node
+     * holds only its own flow and its failure does not affect the other nodes.
+     */
+    private void sync() {
+        syncScheduled.set(false);
+        for (Party party : unsyncedParties()) {
+            if (!syncing.add(party)) continue;
+            try {
+                serviceHub.startFlow(new SyncIdentitiesFlow.Initiator(Collections.singletonList(party))).getReturnValue()
+                        .toCompletableFuture().whenComplete((result, error) -> {
+                            syncing.remove(party);
+                            if (error != null) logger.warn("Bank routes sync with {} failed: {}", party.getName(), error.getMessage());
+                        });
+            } catch (RuntimeException e) {
+                syncing.remove(party);
+                logger.warn("Bank routes sync with {} could not start", party.getName(), e);
+            }
+        }
     }
 }
@@ -0,0 +1,175 @@
+package com.octo.corda_services;
+
+import com.octo.schemas.*;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import com.octo.states.InterBankTransferState;
+import com.octo.states.IntraBankTransferState;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.ServiceExecutors;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.ServiceLifecycleEvent;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+import net.corda.core.schemas.PersistentStateRef;
+import net.corda.core.schemas.QueryableState;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.PersistenceException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Copies the DDR Objects recorded before {@link DDRObjectSchemaV1}, and the obligations and transfers recorded before
+ * the V2 schemas, into their tables, which the vault only fills for the states it records from then on.
+ * <p>
+ * The copy runs in the background once the node has started, {@code schema.migration.pageSize} states per database
+ * transaction, and is skipped for a state type whose V2 table already has a row for each of its states. States are
+ * mapped again from the vault rather than from the V1 rows, so parties and currencies get their V2 format. Queries on
+ * the mapped columns may miss older states until the copy of their type is done, {@link #isCopied} tells when DDR
+ * queries can rely on {@code ddr_object_states}.
+ */
+@CordaService
+public class SchemaMigrationService extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrationService.class);
+    private static final int PAGE_SIZE_DEFAULT = 1000;
+    private static final int PAGE_MAX_ATTEMPTS = 3;
+
+    private final AppServiceHub serviceHub;
+    private final boolean enabled;
+    private final int pageSize;
+    private final ExecutorService executor = ServiceExecutors.newSingleThreadExecutor("schema-migration");
+    private final Set<Class<?>> copied = ConcurrentHashMap.newKeySet();
+    private volatile boolean done;
+
+    public SchemaMigrationService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        this.enabled = ConfigUtils.getBoolean(serviceHub, "schema.migration.enabled", true);
+        this.pageSize = Math.max(1, ConfigUtils.getInt(serviceHub, "schema.migration.pageSize", PAGE_SIZE_DEFAULT));
+        if (enabled) {
+            serviceHub.register(AppServiceHub.SERVICE_PRIORITY_LOW, event -> {
+                if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED) {
+                    executor.execute(this::migrate);
+                    ServiceExecutors.shutdown(executor);
+                }
+            });
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Whether every state of the type has its row in the tables of its schema. Always true with
+     * {@code schema.migration.enabled} off, the tables are then expected to be complete.
+     */
+    public boolean isCopied(Class<? extends QueryableState> stateClass) {
+        return !enabled || copied.contains(stateClass);
+    }
+
+    /**
+     * Copies the states missing from the tables of their schema. Runs in the background once the node has started.
+     */
+    public synchronized void migrate() {
+        try {
+            copy(DDRObjectState.class, new DDRObjectSchemaV1(), PersistentDDRObject.class);
+            copy(DDRObligationState.class, new DDRObligationSchemaV2(), PersistentDDRObligationV2.class);
+            copy(InterBankTransferState.class, new InterBankTransferSchemaV2(), PersistentInterBankTransferV2.class);
+            copy(IntraBankTransferState.class, new IntraBankTransferSchemaV2(), PersistentIntraBankTransferV2.class);
+            done = true;
+        } catch (RuntimeException e) {
+            logger.error("Copy of the states to the V2 schemas failed, it starts again with the next restart", e);
+        }
+    }
+
+    private <T extends QueryableState> void copy(Class<T> stateClass, MappedSchema schema, Class<? extends PersistentState> entityClass) {
+        long states = serviceHub.getDatabase().transaction(session -> serviceHub.getVaultService()
+                .queryBy(stateClass, allStates(), new PageSpecification(1, 1)).getTotalStatesAvailable());
+        long rows = serviceHub.getDatabase().transaction(session -> countRows(entityClass));
+        if (rows >= states) {
+            copied.add(stateClass);
+            return;
+        }
+
+        logger.info("Copying {} {} to {}", states - rows, stateClass.getSimpleName(), schema.getName());
+        long copiedStates = 0;
+        for (int page = 1; (long) (page - 1) * pageSize < states; page++) {
+            final int pageNumber = page;
+            copiedStates += copyPage(stateClass, schema, entityClass, pageNumber);
+        }
+        logger.info("Copied {} {} to {}", copiedStates, stateClass.getSimpleName(), schema.getName());
+        copied.add(stateClass);
+    }
+
+    /**
+     * Copies a page in a database transaction. A row written by the vault between the lookup and the insert makes the
+     * transaction fail on its key, the page is then copied again and the row found this time.
+     */
+    private <T extends QueryableState> int copyPage(Class<T> stateClass, MappedSchema schema, Class<? extends PersistentState> entityClass,
+                                                    int pageNumber) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return serviceHub.getDatabase().transaction(session -> copyRows(stateClass, schema, entityClass, pageNumber));
+            } catch (RuntimeException e) {
+                if (attempt == PAGE_MAX_ATTEMPTS || !isPersistenceError(e)) throw e;
+                logger.warn("Copy of page {} of {} failed, copying it again: {}", pageNumber, stateClass.getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    private <T extends QueryableState> int copyRows(Class<T> stateClass, MappedSchema schema, Class<? extends PersistentState> entityClass,
+                                                    int pageNumber) {
+        Vault.Page<T> page = serviceHub.getVaultService().queryBy(stateClass, allStates(), new PageSpecification(pageNumber, pageSize), byStateRef());
+        int[] copiedRows = {0};
+        serviceHub.withEntityManager(entityManager -> {
+            for (StateAndRef<T> stateAndRef : page.getStates()) {
+                PersistentStateRef ref = new PersistentStateRef(stateAndRef.getRef());
+                if (entityManager.find(entityClass, ref) != null) continue;
+                PersistentState row = stateAndRef.getState().getData().generateMappedObject(schema);
+                row.setStateRef(ref);
+                entityManager.persist(row);
+                copiedRows[0]++;
+            }
+        });
+        return copiedRows[0];
+    }
+
+    private static boolean isPersistenceError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PersistenceException) return true;
+        }
+        return false;
+    }
+
+    private long countRows(Class<? extends PersistentState> entityClass) {
+        long[] count = {0};
+        serviceHub.withEntityManager(entityManager -> {
+            count[0] = entityManager.createQuery("SELECT COUNT(r) FROM " + entityClass.getSimpleName() + " r", Long.class).getSingleResult();
+        });
+        return count[0];
+    }
+
+    private static QueryCriteria allStates() {
+        return new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL);
+    }
+
+    // A stable order, states recorded during the copy are written to the V2 tables by the vault anyway
+    private static Sort byStateRef() {
+        return new Sort(Arrays.asList(
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+    }
+}
@@ -1,13 +1,30 @@
 package com.octo.corda_services;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.octo.builders.InterBankTransferStateBuilder;
+import com.octo.builders.IntraBankTransferStateBuilder;
+import com.octo.contracts.IntraBankTransferContract;
 import com.octo.dto.BankTransferDTO;
+import com.octo.dto.TransferStatusDTO;
 import com.octo.flows.AtomicExchangeDDR;
 import com.octo.flows.RecordIntraBankTransfer;
+import com.octo.flows.RecordIntraBankTransferBatch;
 import com.octo.mapper.TransferMapper;
+import com.octo.metrics.PipelineStage;
+import com.octo.messaging.FlowAdmissionController;
+import com.octo.messaging.IntraBankTransferBatcher;
+import com.octo.messaging.StatusPublisher;
+import com.octo.messaging.VirementCodec;
+import com.octo.messaging.VirementConsumer;
+import com.octo.messaging.VirementDeduplicator;
+import com.octo.messaging.VirementRetryHandler;
+import com.octo.messaging.VirementRetryPolicy;
+import com.octo.messaging.VirementShardRouter;
 import com.octo.states.InterBankTransferState;
 import com.octo.states.IntraBankTransferState;
+import com.octo.utils.ConfigUtils;
+import com.octo.utils.JmxUtils;
+import com.octo.utils.ServiceExecutors;
+import com.octo.utils.Utils;
 import com.rabbitmq.client.*;
 import net.corda.core.contracts.Amount;
 import net.corda.core.identity.Party;
@@ -22,17 +39,17 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.Currency;
-import java.util.concurrent.ExecutionException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeoutException;
 
 @CordaService
 public class VirementProcessingService extends SingletonSerializeAsToken {
 
-    public static final ObjectMapper mapper = new ObjectMapper();
     public static final Logger logger = LoggerFactory.getLogger(VirementProcessingService.class);
 
     public static final String CORDA_EXCHANGE = "corda_exchange";
@@ -42,18 +59,48 @@ public class VirementProcessingService extends SingletonSerializeAsToken {
     public static final String STATUS_ROUTING_KEY = "status";
     public static final String RECEIVED_VIR_QUEUE = "virements_received";
     public static final String RECEIVED_ROUTING_KEY = "received";
+    public static final String DEAD_LETTER_QUEUE = "virements_dead";
+    public static final String VIREMENT_SHARD_EXCHANGE = "virements_shards";
+    public static final String VIREMENT_SHARD_QUEUE_PREFIX = "virements_shard_";
+
+    private static final int PREFETCH_DEFAULT = 32;
+    private static final int INTRA_BATCH_SIZE_DEFAULT = 50;
+    private static final long INTRA_BATCH_WINDOW_MS_DEFAULT = 100;
+    private static final int STATUS_BATCH_SIZE_DEFAULT = 100;
+    private static final long STATUS_CONFIRM_TIMEOUT_MS_DEFAULT = 5000;
+    private static final int RETRY_MAX_ATTEMPTS_DEFAULT = 5;
+    private static final long RETRY_INITIAL_DELAY_MS_DEFAULT = 1000;
+    private static final int DEDUP_LRU_SIZE_DEFAULT = 10000;
+    private static final long DEDUP_EXPECTED_REFERENCES_DEFAULT = 1000000;
+    private static final int SHARDS_DEFAULT = 1;
+    private static final int ADMISSION_MAX_IN_FLIGHT_DEFAULT = 256;
+    private static final long ADMISSION_MAX_LATENCY_MS_DEFAULT = 30000;
+    private static final String ADMISSION_MBEAN_NAME_PREFIX = "com.octo.virement:type=FlowAdmission,node=";
+    private static final int SHARD_PREFETCH_DEFAULT = 1;
 
-    private static final String CONTENT_TYPE_JSON = "application/json";
     private Channel channel;
     private final AppServiceHub serviceHub;
     private final Party thisParty;
     private final ConnectionFactory factory = new ConnectionFactory();
     private Connection conn;
+    private final int prefetch;
+    private final ScheduledExecutorService scheduler = ServiceExecutors.newSingleThreadScheduledExecutor("virement-scheduler");
+    private IntraBankTransferBatcher intraBankTransferBatcher;
+    private StatusPublisher statusPublisher;
+    private VirementDeduplicator deduplicator;
+    private FlowAdmissionController admissionController;
+    private PipelineMetrics metrics;
 
     public VirementProcessingService(AppServiceHub serviceHub) throws IOException, TimeoutException {
         logger.info("Init virement processing service");
         this.serviceHub = serviceHub;
         this.thisParty = serviceHub.getMyInfo().getLegalIdentities().get(0);
+        this.prefetch = ConfigUtils.getInt(serviceHub, "virement.prefetch", PREFETCH_DEFAULT);
+        int intraBatchSize = ConfigUtils.getInt(serviceHub, "virement.intraBatch.size", INTRA_BATCH_SIZE_DEFAULT);
+        long intraBatchWindow = ConfigUtils.getLong(serviceHub, "virement.intraBatch.windowMs", INTRA_BATCH_WINDOW_MS_DEFAULT);
+        if (intraBatchSize > 1)
+            this.intraBankTransferBatcher = new IntraBankTransferBatcher(Math.min(intraBatchSize, IntraBankTransferContract.MAX_BATCH_SIZE),
+                    intraBatchWindow, scheduler, this::recordIntraBankTransferBatch);
         if (!thisParty.getName().getOrganisation().equals("Notary")){
             factory.setVirtualHost(thisParty.getName().getOrganisation().toLowerCase());
             conn = factory.newConnection();
@@ -61,6 +108,11 @@ public class VirementProcessingService extends SingletonSerializeAsToken {
         }
     }
 
+    private CompletableFuture<SignedTransaction> recordIntraBankTransferBatch(List<IntraBankTransferStateBuilder> transfers) {
+        logger.info("About to record a batch of {} intrabank transfers", transfers.size());
+        return serviceHub.startFlow(new RecordIntraBankTransferBatch.Initiator(transfers)).getReturnValue().toCompletableFuture();
+    }
+
     class MyServiceLifeCycleObserver implements ServiceLifecycleObserver {
 
 
@@ -75,8 +127,7 @@ public class VirementProcessingService extends SingletonSerializeAsToken {
         }
 
         private void init() throws IOException {
-            mapper.enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT);
-            mapper.setDateFormat(new SimpleDateFormat("dd-MM-yyyy hh:mm:ss"));
+            metrics = serviceHub.cordaService(PipelineMetrics.class);
             logger.info("Created factory");
             channel = conn.createChannel();
             logger.info("Created channel");
@@ -90,102 +141,144 @@ public class VirementProcessingService extends SingletonSerializeAsToken {
             channel.queueBind(STATUS_QUEUE, CORDA_EXCHANGE, STATUS_ROUTING_KEY);
             channel.queueBind(RECEIVED_VIR_QUEUE, CORDA_EXCHANGE, RECEIVED_ROUTING_KEY);
 
-            Consumer consumer = new DefaultConsumer(channel) {
-                @Override
-                public void handleDelivery(String consumerTag,
-                                           Envelope envelope,
-                                           AMQP.BasicProperties properties,
-                                           byte[] body) throws IOException {
-                    long deliveryTag = envelope.getDeliveryTag();
-                    logger.debug("Received message with deliveryTag={} ", deliveryTag);
-                    logger.debug("Received message with consumerTag={} ", consumerTag);
-                    logger.debug("Received message with envelope={} ", envelope);
-                    // Processing
-                    String message = new String(body);
-                    logger.debug("Received message as String={} ", message);
-                    BankTransferDTO transferDTO = mapper.readerFor(BankTransferDTO.class).readValue(message);
-                    logger.debug("Received transfer={} ", transferDTO);
-
-                    try {
-                        boolean isInterne = isVirementInterne(transferDTO);
-                        SignedTransaction sTx = isInterne ? makeIntraBankTransfer(transferDTO) : makeInterBankTransfer(transferDTO);
-                        channel.basicAck(deliveryTag, false);
-                        logger.debug("Recording {}banktransfer complete, txId={} ", isInterne ? "intra" : "inter", sTx.getId());
-                        // TODO What happens if flows throws exception (Other parties didn't sign, or insufficient funds)?
-                    } catch (ExecutionException | InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            };
-            logger.info("Setup Consume messages");
-            channel.basicConsume(VIREMENT_QUEUE, false, consumer);
+            statusPublisher = new StatusPublisher(conn, CORDA_EXCHANGE, VirementCodec.writer(),
+                    ConfigUtils.getInt(serviceHub, "virement.status.batchSize", STATUS_BATCH_SIZE_DEFAULT),
+                    ConfigUtils.getLong(serviceHub, "virement.status.confirmTimeoutMs", STATUS_CONFIRM_TIMEOUT_MS_DEFAULT), metrics);
+            statusPublisher.start();
+            logger.info("Started status publisher with publisher confirms");
+
+            deduplicator = new VirementDeduplicator(serviceHub, thisParty,
+                    ConfigUtils.getInt(serviceHub, "virement.dedup.lruSize", DEDUP_LRU_SIZE_DEFAULT),
+                    ConfigUtils.getLong(serviceHub, "virement.dedup.expectedReferences", DEDUP_EXPECTED_REFERENCES_DEFAULT));
+            ExecutorService seeder = ServiceExecutors.newSingleThreadExecutor("virement-dedup-seed");
+            seeder.execute(deduplicator::seed);
+            ServiceExecutors.shutdown(seeder);
+
+            VirementRetryPolicy retryPolicy = new VirementRetryPolicy(
+                    ConfigUtils.getInt(serviceHub, "virement.retry.maxAttempts", RETRY_MAX_ATTEMPTS_DEFAULT),
+                    ConfigUtils.getLong(serviceHub, "virement.retry.initialDelayMs", RETRY_INITIAL_DELAY_MS_DEFAULT));
+            VirementRetryHandler retryHandler = new VirementRetryHandler(conn, VIREMENT_QUEUE, DEAD_LETTER_QUEUE, retryPolicy);
+            retryHandler.declareTopology();
+            logger.info("Declared retry queues for {} attempts and dead-letter queue {}", retryPolicy.getMaxAttempts(), DEAD_LETTER_QUEUE);
+
+            int maxInFlight = ConfigUtils.getInt(serviceHub, "virement.admission.maxInFlight", ADMISSION_MAX_IN_FLIGHT_DEFAULT);
+            long maxLatency = ConfigUtils.getLong(serviceHub, "virement.admission.maxLatencyMs", ADMISSION_MAX_LATENCY_MS_DEFAULT);
+            admissionController = new FlowAdmissionController(maxInFlight,
+                    ConfigUtils.getInt(serviceHub, "virement.admission.resumeInFlight", maxInFlight / 2),
+                    maxLatency, ConfigUtils.getLong(serviceHub, "virement.admission.resumeLatencyMs", maxLatency / 2));
+            JmxUtils.register(admissionController, ADMISSION_MBEAN_NAME_PREFIX + thisParty.getName().getOrganisation());
+
+            int shards = ConfigUtils.getInt(serviceHub, "virement.shards", SHARDS_DEFAULT);
+            if (shards > 1) {
+                consumeSharded(retryHandler, shards);
+            } else {
+                channel.basicQos(prefetch);
+                logger.info("Setup Consume messages with prefetch={}", prefetch);
+                admissionController.consume(channel, VIREMENT_QUEUE, new VirementConsumer(channel, this::processVirement, retryHandler, metrics));
+            }
 
             trackTransferUpdates();
         }
 
+        /**
+         * Routes the virements queue to shard queues keyed by sender RIB, each consumed on its own channel, so
+         * virements of different accounts are processed in parallel and virements of one account in order.
+         */
+        private void consumeSharded(VirementRetryHandler retryHandler, int shards) throws IOException {
+            int shardPrefetch = ConfigUtils.getInt(serviceHub, "virement.shardPrefetch", SHARD_PREFETCH_DEFAULT);
+            VirementShardRouter router = new VirementShardRouter(conn.createChannel(), VIREMENT_SHARD_EXCHANGE,
+                    VIREMENT_SHARD_QUEUE_PREFIX, shards, retryHandler);
+            router.declareTopology();
+            for (int shard = 0; shard < shards; shard++) {
+                Channel shardChannel = conn.createChannel();
+                shardChannel.basicQos(shardPrefetch);
+                admissionController.consume(shardChannel, router.shardQueue(shard), new VirementConsumer(shardChannel, this::processVirement, retryHandler, metrics));
+            }
+            router.getChannel().basicQos(prefetch);
+            router.getChannel().basicConsume(VIREMENT_QUEUE, false, router);
+            logger.info("Setup Consume messages on {} shards with shard prefetch={}", shards, shardPrefetch);
+        }
+
         private void trackTransferUpdates() {
             logger.info("Setting up track state IntraBankTransferState in vault");
             serviceHub.getVaultService().trackBy(IntraBankTransferState.class).getUpdates().subscribe(update -> {
-                logger.info("Received intrabank update");
-                update.getProduced().forEach(transfer -> {
-                    String reference = transfer.getState().getData().getExternalId();
-                    try {
-                        String message = "{\"reference\":\"" + reference + "\"}";
-                        channel.basicPublish(CORDA_EXCHANGE, STATUS_ROUTING_KEY, false,
-                                new AMQP.BasicProperties.Builder().deliveryMode(2).contentType(CONTENT_TYPE_JSON).build(),
-                                message.getBytes());
-                        logger.info("Set up publish transfer reference to RabbitMQ corda queue");
-                    } catch (IOException e) {
-                        logger.error("Exception while sending intrabank state to queue", e);
-                    }
-                });
+                logger.debug("Received intrabank update");
+                update.getProduced().forEach(transfer -> statusPublisher.publish(STATUS_ROUTING_KEY,
+                        new TransferStatusDTO(transfer.getState().getData().getExternalId())));
             });
 
             logger.info("Setting up track state InterBankTransferState in vault");
             serviceHub.getVaultService().trackBy(InterBankTransferState.class).getUpdates().subscribe(update -> {
-                logger.info("Received interbank update");
+                logger.debug("Received interbank update");
                 update.getProduced().forEach(transfer -> {
                     InterBankTransferState transferState = transfer.getState().getData();
-                    String reference = transfer.getState().getData().getExternalId();
-
-                    try {
-                        if (transferState.getSenderBank().equals(thisParty)) {
-                            String message = "{\"reference\":\"" + reference + "\"}";
-                            channel.basicPublish(CORDA_EXCHANGE, STATUS_ROUTING_KEY, false,
-                                    new AMQP.BasicProperties.Builder().deliveryMode(2).contentType(CONTENT_TYPE_JSON).build(),
-                                    message.getBytes());
-                            logger.info("Published interbank transfer reference to queue");
-                        } else {
-                            BankTransferDTO dto = TransferMapper.mapInterBankState(transferState);
-                            ByteArrayOutputStream out = new ByteArrayOutputStream();
-                            mapper.writeValue(out, dto);
-                            channel.basicPublish(CORDA_EXCHANGE, RECEIVED_ROUTING_KEY, false,
-                                    new AMQP.BasicProperties.Builder().deliveryMode(2).contentType(CONTENT_TYPE_JSON).build(),
-                                    out.toByteArray());
-                            logger.info("Published interbank transfer to queue");
-                        }
-                    } catch (IOException e) {
-                        logger.error("Exception while sending message to queue", e);
-                    }
+                    if (transferState.getSenderBank().equals(thisParty))
+                        statusPublisher.publish(STATUS_ROUTING_KEY, new TransferStatusDTO(transferState.getExternalId()));
+                    else
+                        statusPublisher.publish(RECEIVED_ROUTING_KEY, TransferMapper.mapInterBankState(transferState));
                 });
             });
         }
 
-        private SignedTransaction makeIntraBankTransfer(BankTransferDTO transferDTO) throws ExecutionException, InterruptedException {
+        private CompletableFuture<SignedTransaction> processVirement(BankTransferDTO transferDTO) {
+            String reference = transferDTO.getReference();
+            if (reference == null || reference.isEmpty()) {
+                long startNanos = admissionController.started();
+                return startTransfer(transferDTO).whenComplete((stx, error) -> admissionController.completed(startNanos));
+            }
+            if (deduplicator.isDuplicate(reference)) {
+                logger.info("Virement {} is already recorded or being recorded, skipping it", reference);
+                return CompletableFuture.completedFuture(null);
+            }
+            long startNanos = admissionController.started();
+            CompletableFuture<SignedTransaction> result;
+            try {
+                result = startTransfer(transferDTO);
+            } catch (RuntimeException e) {
+                admissionController.completed(startNanos);
+                deduplicator.failed(reference);
+                throw e;
+            }
+            return result.whenComplete((stx, error) -> {
+                admissionController.completed(startNanos);
+                if (error == null) deduplicator.recorded(reference);
+                else deduplicator.failed(reference);
+            });
+        }
+
+        private CompletableFuture<SignedTransaction> startTransfer(BankTransferDTO transferDTO) {
+            long routingStart = System.nanoTime();
+            boolean isInterne = isVirementInterne(transferDTO);
+            metrics.record(PipelineStage.ROUTING, routingStart);
+            return isInterne ? makeIntraBankTransfer(transferDTO) : makeInterBankTransfer(transferDTO);
+        }
+
+        private CompletableFuture<SignedTransaction> makeIntraBankTransfer(BankTransferDTO transferDTO) {
             // TODO validate argument
             logger.info("Received transfer from queue and about to record it");
             Amount<Currency> amount = new Amount<>(transferDTO.getAmount().longValue() * 100, Currency.getInstance("MAD"));
+            if (intraBankTransferBatcher != null)
+                return intraBankTransferBatcher.submit(new IntraBankTransferStateBuilder().amount(amount).senderRIB(transferDTO.getSenderRIB())
+                        .receiverRIB(transferDTO.getReceiverRIB()).executionDate(transferDTO.getExecutionDate()).externalId(transferDTO.getReference()));
             RecordIntraBankTransfer.Initiator flow = new RecordIntraBankTransfer.Initiator(amount, transferDTO.getSenderRIB(),
                     transferDTO.getReceiverRIB(), transferDTO.getExecutionDate(), transferDTO.getReference());
-            return serviceHub.startFlow(flow).getReturnValue().get();
+            return serviceHub.startFlow(flow).getReturnValue().toCompletableFuture();
         }
 
-        private SignedTransaction makeInterBankTransfer(BankTransferDTO dto) throws ExecutionException, InterruptedException {
+        private CompletableFuture<SignedTransaction> makeInterBankTransfer(BankTransferDTO dto) {
             // TODO validate argument, choose receiver bank from RIB
             logger.info("Received transfer from queue and about to record it");
             Amount<Currency> amount = new Amount<>(dto.getAmount().longValue() * 100, Currency.getInstance("MAD"));
+            InterBankNettingService nettingService = serviceHub.cordaService(InterBankNettingService.class);
+            Party receiverBank = serviceHub.cordaService(RIBService.class).getPartyFromRIB(dto.getReceiverRIB());
+            // An unknown receiver bank goes through AtomicExchangeDDR, which fails and is retried while identities are synced
+            if (nettingService.isEnabled() && receiverBank != null) {
+                String reference = dto.getReference() == null || dto.getReference().isEmpty() ? Utils.generateReference("INTER") : dto.getReference();
+                return nettingService.submit(new InterBankTransferStateBuilder().senderRIB(dto.getSenderRIB()).receiverRIB(dto.getReceiverRIB())
+                        .senderBank(thisParty).receiverBank(receiverBank).amount(amount).executionDate(dto.getExecutionDate()).externalId(reference));
+            }
             AtomicExchangeDDR.Initiator flow = new AtomicExchangeDDR.Initiator(dto.getSenderRIB(), dto.getReceiverRIB(), amount, dto.getExecutionDate(), dto.getReference());
-            return serviceHub.startFlow(flow).getReturnValue().get();
+            return serviceHub.startFlow(flow).getReturnValue().toCompletableFuture();
         }
 
         private boolean isVirementInterne(BankTransferDTO dto) {
@@ -0,0 +1,29 @@
+package com.octo.dto;
+
+import java.io.Serializable;
+
+public class TransferStatusDTO implements Serializable {
+    private String reference;
+
+    public TransferStatusDTO() {
+    }
+
+    public TransferStatusDTO(String reference) {
+        this.reference = reference;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public void setReference(String reference) {
+        this.reference = reference;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferStatusDTO{" +
+                "reference='" + reference + '\'' +
+                '}';
+    }
+}
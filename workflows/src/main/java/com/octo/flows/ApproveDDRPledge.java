@@ -4,7 +4,9 @@ import co.paralleluniverse.fibers.Suspendable;
 import com.octo.builders.DDRObligationStateBuilder;
 import com.octo.contracts.DDRObligationContract;
 import com.octo.enums.DDRObligationStatus;
+import com.octo.states.DDRObjectState;
 import com.octo.states.DDRObligationState;
+import com.octo.utils.DenominationPolicy;
 import com.octo.utils.Utils;
 import com.octo.utils.UtilsDDR;
 import net.corda.core.contracts.StateAndRef;
@@ -25,14 +27,22 @@ public class ApproveDDRPledge {
 
     @InitiatingFlow
     @StartableByRPC
+    @StartableByService
     public static class Initiator extends FlowLogic<SignedTransaction> {
         // Idealy, we would pass the externalId as only parameter
         private final String externalId;
+        // Null for the policy of the CorDapp config
+        private final DenominationPolicy denominationPolicy;
 
         private final ProgressTracker progressTracker = new ProgressTracker();
 
         public Initiator(String externalId) {
+            this(externalId, null);
+        }
+
+        public Initiator(String externalId, DenominationPolicy denominationPolicy) {
             this.externalId = externalId;
+            this.denominationPolicy = denominationPolicy;
         }
 
         @Override
@@ -67,7 +77,9 @@ public class ApproveDDRPledge {
                     .addOutputState(new DDRObligationStateBuilder(inputPledge).status(DDRObligationStatus.APPROVED).build())
                     .addCommand(new DDRObligationContract.DDRObligationCommands.ApproveDDRPledge(), requiredSigners);
 
-            UtilsDDR.produceDDRObjects(inputPledge).forEach(txBuilder::addOutputState);
+            List<DDRObjectState> ddrs = denominationPolicy == null ? UtilsDDR.produceDDRObjects(inputPledge, getServiceHub())
+                    : UtilsDDR.produceDDRObjects(inputPledge, denominationPolicy, getServiceHub());
+            ddrs.forEach(txBuilder::addOutputState);
             return txBuilder;
         }
     }
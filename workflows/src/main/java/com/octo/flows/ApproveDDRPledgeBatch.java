@@ -0,0 +1,164 @@
+package com.octo.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.octo.builders.DDRObligationStateBuilder;
+import com.octo.contracts.DDRObligationContract;
+import com.octo.enums.DDRObligationStatus;
+import com.octo.enums.DDRObligationType;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.DenominationPolicy;
+import com.octo.utils.Utils;
+import com.octo.utils.UtilsDDR;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Approves many pledges with one transaction for each requesting bank, instead of one {@link ApproveDDRPledge} for
+ * each pledge.
+ * <p>
+ * A transaction consumes the pledges of a bank, creates them approved and issues their DDR Objects. The pledges of a
+ * bank are split over more transactions when they are on different notaries, or when their DDRs would be more than
+ * {@link DDRObligationContract#MAX_ISSUED_DDR_OBJECTS}. All the pledges are checked before the first
+ * transaction, the flow approves none of them if one is unknown, not a pending request or not issued by our bank.
+ */
+public class ApproveDDRPledgeBatch {
+
+    // ******************
+    // * Initiator flow *
+    // ******************
+    @InitiatingFlow
+    @StartableByRPC
+    @StartableByService
+    public static class Initiator extends FlowLogic<List<SignedTransaction>> {
+        private final List<String> externalIds;
+        // Null for the policy of the CorDapp config
+        private final DenominationPolicy denominationPolicy;
+
+        private final ProgressTracker progressTracker = new ProgressTracker();
+
+        public Initiator(List<String> externalIds) {
+            this(externalIds, null);
+        }
+
+        public Initiator(List<String> externalIds, DenominationPolicy denominationPolicy) {
+            this.externalIds = externalIds;
+            this.denominationPolicy = denominationPolicy;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public List<SignedTransaction> call() throws FlowException {
+            List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(externalIds));
+            if (distinctIds.isEmpty()) throw new FlowException("At least one pledge should be approved");
+
+            Map<String, StateAndRef<DDRObligationState>> pledges = new HashMap<>();
+            Utils.getObligationsByExternalIds(distinctIds, getServiceHub())
+                    .forEach(pledge -> pledges.put(pledge.getState().getData().getExternalId(), pledge));
+            // Pledges of the same requester and notary, in the order of the external ids
+            Map<List<Party>, List<StateAndRef<DDRObligationState>>> groups = new LinkedHashMap<>();
+            for (String externalId : distinctIds) {
+                StateAndRef<DDRObligationState> pledge = checkPledge(externalId, pledges.get(externalId));
+                List<Party> key = Arrays.asList(pledge.getState().getData().getRequester(), pledge.getState().getNotary());
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(pledge);
+            }
+
+            List<SignedTransaction> approvals = new ArrayList<>();
+            for (Map.Entry<List<Party>, List<StateAndRef<DDRObligationState>>> group : groups.entrySet()) {
+                Party requester = group.getKey().get(0);
+                for (TransactionBuilder txBuilder : approvePledgesTxs(group.getValue())) {
+                    final FlowSession requesterBankSession = initiateFlow(requester);
+                    SignedTransaction fullySignedTx = subFlow(Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), requesterBankSession));
+                    approvals.add(subFlow(new FinalityFlow(fullySignedTx, Collections.singletonList(requesterBankSession), StatesToRecord.ALL_VISIBLE)));
+                }
+            }
+            return approvals;
+        }
+
+        private StateAndRef<DDRObligationState> checkPledge(String externalId, StateAndRef<DDRObligationState> pledge) throws FlowException {
+            if (pledge == null) throw new FlowException("No obligation is found with external id " + externalId);
+            DDRObligationState state = pledge.getState().getData();
+            if (state.getType() != DDRObligationType.PLEDGE || state.getStatus() != DDRObligationStatus.REQUEST)
+                throw new FlowException("Obligation " + externalId + " is not a pledge request");
+            if (!state.getIssuer().equals(getOurIdentity()))
+                throw new FlowException("Pledge " + externalId + " is not issued by " + getOurIdentity());
+            return pledge;
+        }
+
+        /**
+         * Transactions approving the pledges of one requester and notary, each issuing at most
+         * {@link DDRObligationContract#MAX_ISSUED_DDR_OBJECTS} DDR Objects.
+         */
+        private List<TransactionBuilder> approvePledgesTxs(List<StateAndRef<DDRObligationState>> pledges) {
+            List<TransactionBuilder> txBuilders = new ArrayList<>();
+            TransactionBuilder txBuilder = null;
+            int issuedDDRs = 0;
+            for (StateAndRef<DDRObligationState> inputStateAndRef : pledges) {
+                final DDRObligationState inputPledge = inputStateAndRef.getState().getData();
+                List<DDRObjectState> ddrs = denominationPolicy == null ? UtilsDDR.produceDDRObjects(inputPledge, getServiceHub())
+                        : UtilsDDR.produceDDRObjects(inputPledge, denominationPolicy, getServiceHub());
+                if (txBuilder == null || issuedDDRs + ddrs.size() > DDRObligationContract.MAX_ISSUED_DDR_OBJECTS) {
+                    txBuilder = new TransactionBuilder(inputStateAndRef.getState().getNotary())
+                            .addCommand(new DDRObligationContract.DDRObligationCommands.ApproveDDRPledge(),
+                                    Arrays.asList(getOurIdentity().getOwningKey(), inputPledge.getRequester().getOwningKey()));
+                    txBuilders.add(txBuilder);
+                    issuedDDRs = 0;
+                }
+                txBuilder.addInputState(inputStateAndRef)
+                        .addOutputState(new DDRObligationStateBuilder(inputPledge).status(DDRObligationStatus.APPROVED).build());
+                ddrs.forEach(txBuilder::addOutputState);
+                issuedDDRs += ddrs.size();
+            }
+            return txBuilders;
+        }
+    }
+
+    // ******************
+    // * Responder flow *
+    // ******************
+    @InitiatedBy(ApproveDDRPledgeBatch.Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession counterpartySession;
+
+        public Responder(FlowSession counterpartySession) {
+            this.counterpartySession = counterpartySession;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            final SecureHash txId = subFlow(new CheckTransactionAndSignFlow(counterpartySession, SignTransactionFlow.Companion.tracker())).getId();
+
+            return subFlow(new ReceiveFinalityFlow(counterpartySession, txId));
+        }
+
+        private static class CheckTransactionAndSignFlow extends SignTransactionFlow {
+
+            public CheckTransactionAndSignFlow(@NotNull FlowSession otherSideSession, @NotNull ProgressTracker progressTracker) {
+                super(otherSideSession, progressTracker);
+            }
+
+            @Override
+            protected void checkTransaction(@NotNull SignedTransaction stx) throws FlowException {
+                Party us = getOurIdentity();
+                boolean ourPledges = stx.getTx().outputsOfType(DDRObligationState.class).stream()
+                        .allMatch(pledge -> pledge.getRequester().equals(us));
+                if (!ourPledges) throw new FlowException("Batch approval includes pledges of other banks");
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.octo.contracts.DDRObligationContract;
 import com.octo.enums.DDRObligationStatus;
 import com.octo.states.DDRObjectState;
 import com.octo.states.DDRObligationState;
+import com.octo.utils.DDRSelectionStrategy;
 import com.octo.utils.Utils;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.crypto.SecureHash;
@@ -28,13 +29,20 @@ public class ApproveDDRRedeem {
 
     @InitiatingFlow
     @StartableByRPC
+    @StartableByService
     public static class Initiator extends FlowLogic<SignedTransaction> {
         private final String externalId;
+        private final DDRSelectionStrategy selectionStrategy;
 
         private final ProgressTracker progressTracker = new ProgressTracker();
 
         public Initiator(String externalId) {
+            this(externalId, DDRSelectionStrategy.DEFAULT);
+        }
+
+        public Initiator(String externalId, DDRSelectionStrategy selectionStrategy) {
             this.externalId = externalId;
+            this.selectionStrategy = selectionStrategy;
         }
 
         @Override
@@ -47,13 +55,18 @@ public class ApproveDDRRedeem {
         public SignedTransaction call() throws FlowException {
             final StateAndRef<DDRObligationState> stateAndRef = Utils.getObligationByExternalId(externalId, getServiceHub());
 
-            TransactionBuilder txBuilder = approveRedeemTx(stateAndRef);
+            try {
+                TransactionBuilder txBuilder = approveRedeemTx(stateAndRef);
 
-            final FlowSession requesterBankSession = initiateRequesterFlowSession(stateAndRef);
+                final FlowSession requesterBankSession = initiateRequesterFlowSession(stateAndRef);
 
-            SignedTransaction fullySignedTx = subFlow(Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), requesterBankSession));
+                SignedTransaction fullySignedTx = subFlow(Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), requesterBankSession));
 
-            return subFlow(new FinalityFlow(fullySignedTx, Collections.singletonList(requesterBankSession), StatesToRecord.ALL_VISIBLE));
+                return subFlow(new FinalityFlow(fullySignedTx, Collections.singletonList(requesterBankSession), StatesToRecord.ALL_VISIBLE));
+            } catch (FlowException | RuntimeException e) {
+                Utils.releaseReservations(getServiceHub(), getRunId().getUuid());
+                throw e;
+            }
         }
 
         @Suspendable
@@ -72,7 +85,9 @@ public class ApproveDDRRedeem {
                     .addCommand(new DDRObligationContract.DDRObligationCommands.ApproveDDRRedeem(), requiredSigners);
 
             AtomicLong totalAmountConsumed = new AtomicLong(0L);
-            Utils.selectDDRs(state.getOwner(), state.getAmount(), getServiceHub(), txBuilder.getLockId()).forEach(ddr -> {
+            // The DDRs must be on the notary of the redeem, those on another notary are moved to it
+            Utils.selectDDRsOnNotary(this, state.getOwner(), state.getAmount(), selectionStrategy, txBuilder.getNotary(),
+                    txBuilder.getLockId()).forEach(ddr -> {
                 txBuilder.addInputState(ddr);
                 totalAmountConsumed.addAndGet(ddr.getState().getData().getAmount().getQuantity());
             });
@@ -0,0 +1,166 @@
+package com.octo.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.octo.builders.DDRObjectStateBuilder;
+import com.octo.builders.DDRObligationStateBuilder;
+import com.octo.contracts.DDRObligationContract;
+import com.octo.enums.DDRObligationStatus;
+import com.octo.enums.DDRObligationType;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.DDRSelectionStrategy;
+import com.octo.utils.ObligationQueries;
+import com.octo.utils.Utils;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.security.PublicKey;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Approves the pending redeems of a bank in one transaction, instead of one {@link ApproveDDRRedeem} for each redeem.
+ * <p>
+ * The DDR Objects of the bank are selected once for the total of its redeems in each currency, with a single change
+ * output. At most {@code MAX_REDEEMS} redeems are approved, the oldest first, the others are left for the next batch.
+ */
+public class ApproveDDRRedeemBatch {
+
+    // ******************
+    // * Initiator flow *
+    // ******************
+    @InitiatingFlow
+    @StartableByRPC
+    @StartableByService
+    public static class Initiator extends FlowLogic<SignedTransaction> {
+        private static final int MAX_REDEEMS = 200;
+
+        private final Party bank;
+        private final DDRSelectionStrategy selectionStrategy;
+
+        private final ProgressTracker progressTracker = new ProgressTracker();
+
+        public Initiator(Party bank) {
+            this(bank, DDRSelectionStrategy.DEFAULT);
+        }
+
+        public Initiator(Party bank, DDRSelectionStrategy selectionStrategy) {
+            this.bank = bank;
+            this.selectionStrategy = selectionStrategy;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            final List<StateAndRef<DDRObligationState>> redeems = pendingRedeems();
+            if (redeems.isEmpty()) throw new FlowException("No pending redeem of " + bank);
+
+            try {
+                TransactionBuilder txBuilder = approveRedeemsTx(redeems);
+
+                final FlowSession requesterBankSession = initiateFlow(bank);
+
+                SignedTransaction fullySignedTx = subFlow(Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), requesterBankSession));
+
+                return subFlow(new FinalityFlow(fullySignedTx, Collections.singletonList(requesterBankSession), StatesToRecord.ALL_VISIBLE));
+            } catch (FlowException | RuntimeException e) {
+                Utils.releaseReservations(getServiceHub(), getRunId().getUuid());
+                throw e;
+            }
+        }
+
+        /**
+         * The oldest pending redeems requested by the bank for itself, on the notary of the oldest one.
+         */
+        private List<StateAndRef<DDRObligationState>> pendingRedeems() {
+            List<StateAndRef<DDRObligationState>> redeems = getServiceHub().getVaultService().queryBy(DDRObligationState.class,
+                    ObligationQueries.pending(DDRObligationType.REDEEM).and(ObligationQueries.requestedBy(bank))
+                            .and(ObligationQueries.issuedBy(getOurIdentity())),
+                    new PageSpecification(DEFAULT_PAGE_NUM, MAX_REDEEMS), ObligationQueries.byRequesterDate()).getStates();
+            if (redeems.isEmpty()) return redeems;
+            Party notary = redeems.get(0).getState().getNotary();
+            return redeems.stream().filter(redeem -> redeem.getState().getNotary().equals(notary)).collect(Collectors.toList());
+        }
+
+        @Suspendable
+        private TransactionBuilder approveRedeemsTx(List<StateAndRef<DDRObligationState>> redeems) throws FlowException {
+            List<PublicKey> requiredSigners = Arrays.asList(getOurIdentity().getOwningKey(), bank.getOwningKey());
+            TransactionBuilder txBuilder = new TransactionBuilder(redeems.get(0).getState().getNotary())
+                    .addCommand(new DDRObligationContract.DDRObligationCommands.ApproveDDRRedeem(), requiredSigners);
+
+            Map<Currency, Long> redeemedByCurrency = new LinkedHashMap<>();
+            for (StateAndRef<DDRObligationState> stateAndRef : redeems) {
+                final DDRObligationState state = stateAndRef.getState().getData();
+                txBuilder.addInputState(stateAndRef)
+                        .addOutputState(new DDRObligationStateBuilder(state).status(DDRObligationStatus.APPROVED).build());
+                redeemedByCurrency.merge(state.getCurrency(), state.getAmount().getQuantity(), Long::sum);
+            }
+
+            Date issuerDate = new Date();
+            for (Map.Entry<Currency, Long> redeemed : redeemedByCurrency.entrySet()) {
+                long amountConsumed = 0;
+                for (StateAndRef<DDRObjectState> ddr : Utils.selectDDRsOnNotary(this, bank, new Amount<>(redeemed.getValue(), redeemed.getKey()),
+                        selectionStrategy, txBuilder.getNotary(), txBuilder.getLockId())) {
+                    txBuilder.addInputState(ddr);
+                    amountConsumed += ddr.getState().getData().getAmount().getQuantity();
+                }
+                if (amountConsumed > redeemed.getValue()) {
+                    DDRObjectState restDDR = new DDRObjectStateBuilder().owner(bank).issuerDate(issuerDate).issuer(getOurIdentity())
+                            .currency(redeemed.getKey()).amount(amountConsumed - redeemed.getValue()).build();
+                    txBuilder.addOutputState(restDDR);
+                }
+            }
+            return txBuilder;
+        }
+    }
+
+    // ******************
+    // * Responder flow *
+    // ******************
+    @InitiatedBy(ApproveDDRRedeemBatch.Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession counterpartySession;
+
+        public Responder(FlowSession counterpartySession) {
+            this.counterpartySession = counterpartySession;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            final SecureHash txId = subFlow(new CheckTransactionAndSignFlow(counterpartySession, SignTransactionFlow.Companion.tracker())).getId();
+            return subFlow(new ReceiveFinalityFlow(counterpartySession, txId));
+        }
+
+        private static class CheckTransactionAndSignFlow extends SignTransactionFlow {
+
+            public CheckTransactionAndSignFlow(@NotNull FlowSession otherSideSession, @NotNull ProgressTracker progressTracker) {
+                super(otherSideSession, progressTracker);
+            }
+
+            @Override
+            protected void checkTransaction(@NotNull SignedTransaction stx) throws FlowException {
+                Party us = getOurIdentity();
+                boolean ourRedeems = stx.getTx().outputsOfType(DDRObligationState.class).stream()
+                        .allMatch(redeem -> redeem.getRequester().equals(us));
+                if (!ourRedeems) throw new FlowException("Batch approval includes redeems of other banks");
+            }
+        }
+    }
+}
@@ -3,10 +3,14 @@ package com.octo.flows;
 import co.paralleluniverse.fibers.Suspendable;
 import com.octo.builders.DDRObjectStateBuilder;
 import com.octo.contracts.InterBankTransferContract;
+import com.octo.corda_services.DDRLaneService;
 import com.octo.corda_services.RIBService;
 import com.octo.states.DDRObjectState;
 import com.octo.states.InterBankTransferState;
+import com.octo.utils.DDRSelectionStrategy;
+import com.octo.utils.UnknownBankException;
 import com.octo.utils.Utils;
+import com.octo.metrics.PipelineStage;
 import net.corda.core.contracts.Amount;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.crypto.SecureHash;
@@ -37,6 +41,8 @@ public class AtomicExchangeDDR {
         private final Amount<Currency> amount;
         private final Date executionDate;
         private String reference = "";
+        // Null for the strategy of the liquidity lanes if they are enabled, DDRSelectionStrategy.DEFAULT otherwise
+        private DDRSelectionStrategy selectionStrategy;
         private final ProgressTracker progressTracker = new ProgressTracker();
         private Party centralBank;
 
@@ -55,6 +61,12 @@ public class AtomicExchangeDDR {
             this.reference = reference;
         }
 
+        public Initiator(String senderRIB, String receiverRIB, Amount<Currency> amount, Date executionDate, String reference,
+                         DDRSelectionStrategy selectionStrategy) {
+            this(senderRIB, receiverRIB, amount, executionDate, reference);
+            this.selectionStrategy = selectionStrategy;
+        }
+
         @Override
         public ProgressTracker getProgressTracker() {
             return progressTracker;
@@ -66,23 +78,31 @@ public class AtomicExchangeDDR {
             centralBank = Utils.getCentralBankParty(getServiceHub());
 
             reference = reference.isEmpty() ? Utils.generateReference("INTER") : reference;
-            receiverBank = getServiceHub().cordaService(RIBService.class).getPartyFromRIB(receiverRIB);
-            if(receiverBank == null) subFlow(new SyncIdentitiesFlow.Initiator());
-            receiverBank = getServiceHub().cordaService(RIBService.class).getPartyFromRIB(receiverRIB);
-            if(receiverBank == null) throw new FlowException("Can't find party for rib " + receiverRIB);
+            RIBService ribService = getServiceHub().cordaService(RIBService.class);
+            receiverBank = ribService.getPartyFromRIB(receiverRIB);
+            // Identities are synced in the background, not on the payment path
+            if(receiverBank == null) {
+                ribService.requestSync();
+                throw new UnknownBankException(receiverRIB);
+            }
 
             InterBankTransferState state = new InterBankTransferState(senderRIB, receiverRIB, getOurIdentity(),
                     receiverBank, amount, executionDate, reference);
 
-            TransactionBuilder txBuilder = exchangeTx(state);
+            try {
+                TransactionBuilder txBuilder = exchangeTx(state);
 
-            final FlowSession centralBankSession = initiateFlow(centralBank);
-            final FlowSession receiverBankSession = initiateFlow(receiverBank);
+                final FlowSession centralBankSession = initiateFlow(centralBank);
+                final FlowSession receiverBankSession = initiateFlow(receiverBank);
 
-            SignedTransaction fullySignedTx = subFlow(Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(),
-                    centralBankSession, receiverBankSession));
+                SignedTransaction fullySignedTx = Utils.timedSubFlow(this, PipelineStage.SIGNATURE_COLLECTION,
+                        Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), centralBankSession, receiverBankSession));
 
-            return subFlow(new FinalityFlow(fullySignedTx, Arrays.asList(centralBankSession, receiverBankSession), StatesToRecord.ONLY_RELEVANT));
+                return Utils.notariseAndFinalise(this, fullySignedTx, Arrays.asList(centralBankSession, receiverBankSession), StatesToRecord.ONLY_RELEVANT);
+            } catch (FlowException | RuntimeException e) {
+                Utils.releaseReservations(getServiceHub(), getRunId().getUuid());
+                throw e;
+            }
         }
 
         @Suspendable
@@ -91,12 +111,19 @@ public class AtomicExchangeDDR {
             List<PublicKey> requiredSigners = Arrays.asList(getOurIdentity().getOwningKey(), centralBank.getOwningKey(),
                     receiverBank.getOwningKey());
 
-            TransactionBuilder txBuilder = new TransactionBuilder(getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0))
-                    .addOutputState(state)
+            DDRLaneService lanes = getServiceHub().cordaService(DDRLaneService.class);
+            lanes.recordTransfer(amount);
+            DDRSelectionStrategy strategy = selectionStrategy != null ? selectionStrategy : lanes.selectionStrategy();
+
+            // The DDRs are the only inputs, the transaction is notarised by their notary
+            TransactionBuilder txBuilder = new TransactionBuilder();
+            List<StateAndRef<DDRObjectState>> ddrs = Utils.selectDDRsToSpend(this, getOurIdentity(), amount, strategy,
+                    txBuilder.getLockId());
+            txBuilder.setNotary(ddrs.get(0).getState().getNotary());
+            txBuilder.addOutputState(state)
                     .addCommand(new InterBankTransferContract.InterBankTransferCommands.BankTransfer(), requiredSigners);
 
             long totalAmountConsumed = 0;
-            List<StateAndRef<DDRObjectState>> ddrs = Utils.selectDDRs(getOurIdentity(), amount, getServiceHub(), txBuilder.getLockId());
             int lastIndex = ddrs.size() - 1;
             /*
             Add All DDRs but the last one to the receiver bank
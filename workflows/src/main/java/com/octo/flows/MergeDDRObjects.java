@@ -0,0 +1,104 @@
+package com.octo.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.octo.builders.DDRObjectStateBuilder;
+import com.octo.contracts.DDRObjectContract;
+import com.octo.states.DDRObjectState;
+import com.octo.utils.Utils;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.flows.*;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.node.services.StatesNotAvailableException;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.NonEmptySet;
+import net.corda.core.utilities.ProgressTracker;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Merges DDR Objects of our bank into a single DDR Object of the same total, so later transfers consume fewer inputs.
+ * <p>
+ * The DDRs are soft locked first, the flow fails without consuming anything if a transfer already reserved one of
+ * them. The issuer only receives the transaction, a merge does not need its signature.
+ */
+public class MergeDDRObjects {
+
+    // ******************
+    // * Initiator flow *
+    // ******************
+    @InitiatingFlow
+    @StartableByRPC
+    @StartableByService
+    public static class Initiator extends FlowLogic<SignedTransaction> {
+
+        private final List<StateAndRef<DDRObjectState>> ddrs;
+        private final ProgressTracker progressTracker = new ProgressTracker();
+
+        public Initiator(List<StateAndRef<DDRObjectState>> ddrs) {
+            this.ddrs = ddrs;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            if (ddrs.size() < 2)
+                throw new FlowException("At least 2 DDR Objects are needed for a merge");
+            DDRObjectState first = ddrs.get(0).getState().getData();
+            for (StateAndRef<DDRObjectState> ddr : ddrs) {
+                DDRObjectState state = ddr.getState().getData();
+                if (!state.getOwner().equals(getOurIdentity()))
+                    throw new FlowException("Only DDR Objects owned by " + getOurIdentity() + " can be merged");
+                if (!state.getIssuer().equals(first.getIssuer()) || !state.getCurrency().equals(first.getCurrency()))
+                    throw new FlowException("Merged DDR Objects should have the same issuer and currency");
+            }
+
+            TransactionBuilder txBuilder = new TransactionBuilder(ddrs.get(0).getState().getNotary());
+            List<StateRef> refs = ddrs.stream().map(StateAndRef::getRef).collect(Collectors.toList());
+            try {
+                getServiceHub().getVaultService().softLockReserve(txBuilder.getLockId(), NonEmptySet.copyOf(refs));
+            } catch (StatesNotAvailableException e) {
+                throw new FlowException("DDR Objects to merge are reserved by another flow", e);
+            }
+
+            long total = 0;
+            for (StateAndRef<DDRObjectState> ddr : ddrs) {
+                txBuilder.addInputState(ddr);
+                total += ddr.getState().getData().getAmount().getQuantity();
+            }
+            txBuilder.addOutputState(new DDRObjectStateBuilder(first).amount(total).issuerDate(new Date()).build())
+                    .addCommand(new DDRObjectContract.DDRObjectCommands.MergeDDRObjects(), getOurIdentity().getOwningKey());
+
+            txBuilder.verify(getServiceHub());
+            SignedTransaction signedTx = getServiceHub().signInitialTransaction(txBuilder);
+            FlowSession issuerSession = initiateFlow(first.getIssuer());
+            return Utils.notariseAndFinalise(this, signedTx, Collections.singletonList(issuerSession), StatesToRecord.ONLY_RELEVANT);
+        }
+    }
+
+    // ******************
+    // * Responder flow *
+    // ******************
+    @InitiatedBy(MergeDDRObjects.Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession counterpartySession;
+
+        public Responder(FlowSession counterpartySession) {
+            this.counterpartySession = counterpartySession;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // The central bank records every DDR Object, it selects them when approving a redeem
+            return subFlow(new ReceiveFinalityFlow(counterpartySession, null, StatesToRecord.ALL_VISIBLE));
+        }
+    }
+}
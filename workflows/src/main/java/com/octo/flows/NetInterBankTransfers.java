@@ -0,0 +1,268 @@
+package com.octo.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.octo.builders.DDRObjectStateBuilder;
+import com.octo.builders.InterBankTransferStateBuilder;
+import com.octo.contracts.InterBankTransferContract;
+import com.octo.corda_services.InterBankNettingService;
+import com.octo.states.DDRObjectState;
+import com.octo.states.InterBankTransferState;
+import com.octo.utils.DDRSelectionStrategy;
+import com.octo.utils.Utils;
+import com.octo.metrics.PipelineStage;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.transactions.LedgerTransaction;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Settles the inter-bank transfers queued by two banks for each other in a single transaction.
+ * <p>
+ * The initiator sends its pending transfers to the counterparty, which answers with its own pending transfers for the
+ * initiator. Both sides compute the same net position, the bank that owes it provides the DDR Objects, and every
+ * transfer is recorded as an InterBankTransferState of the same transaction, with one net DDR movement.
+ */
+public class NetInterBankTransfers {
+
+    @InitiatingFlow
+    @StartableByRPC
+    @StartableByService
+    public static class Initiator extends FlowLogic<SignedTransaction> {
+
+        private final Party counterparty;
+        private final List<InterBankTransferStateBuilder> transfers;
+        private final ProgressTracker progressTracker = new ProgressTracker();
+
+        public Initiator(Party counterparty, List<InterBankTransferStateBuilder> transfers) {
+            this.counterparty = counterparty;
+            this.transfers = transfers;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            if (transfers.isEmpty())
+                throw new FlowException("Cannot net an empty list of transfers");
+            final Party centralBank = Utils.getCentralBankParty(getServiceHub());
+            transfers.forEach(transfer -> transfer.senderBank(getOurIdentity()).receiverBank(counterparty));
+
+            final FlowSession counterpartySession = initiateFlow(counterparty);
+            List<InterBankTransferStateBuilder> counterpartyTransfers = counterpartySession
+                    .sendAndReceive(List.class, transfers)
+                    .unwrap(data -> validateTransfers(data, counterparty, getOurIdentity()));
+
+            try {
+                long netPosition = netPosition(transfers, counterpartyTransfers);
+                List<StateAndRef<DDRObjectState>> ddrs = Collections.emptyList();
+                TransactionBuilder txBuilder = new TransactionBuilder(Utils.getNotaryParty(getServiceHub(), getOurIdentity()));
+                if (netPosition > 0)
+                    ddrs = Utils.selectDDRsToSpend(this, getOurIdentity(), netAmount(netPosition), DDRSelectionStrategy.DEFAULT,
+                            txBuilder.getLockId());
+                else if (netPosition < 0)
+                    ddrs = subFlow(new ReceiveStateAndRefFlow<DDRObjectState>(counterpartySession));
+                // The DDRs are all on one notary, the transaction is notarised by it
+                if (!ddrs.isEmpty()) txBuilder.setNotary(ddrs.get(0).getState().getNotary());
+
+                List<PublicKey> requiredSigners = Arrays.asList(getOurIdentity().getOwningKey(), counterparty.getOwningKey(),
+                        centralBank.getOwningKey());
+                txBuilder.addCommand(new InterBankTransferContract.InterBankTransferCommands.NettedBankTransfer(), requiredSigners);
+                transfers.forEach(transfer -> txBuilder.addOutputState(transfer.build()));
+                counterpartyTransfers.forEach(transfer -> txBuilder.addOutputState(transfer.build()));
+                if (netPosition != 0) {
+                    Party payer = netPosition > 0 ? getOurIdentity() : counterparty;
+                    Party payee = netPosition > 0 ? counterparty : getOurIdentity();
+                    addNetDDRMovement(txBuilder, ddrs, payer, payee, Math.abs(netPosition), centralBank);
+                }
+
+                final FlowSession centralBankSession = initiateFlow(centralBank);
+                SignedTransaction fullySignedTx = Utils.timedSubFlow(this, PipelineStage.SIGNATURE_COLLECTION,
+                        Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), centralBankSession, counterpartySession));
+
+                return Utils.notariseAndFinalise(this, fullySignedTx, Arrays.asList(centralBankSession, counterpartySession), StatesToRecord.ONLY_RELEVANT);
+            } catch (FlowException | RuntimeException e) {
+                Utils.releaseReservations(getServiceHub(), getRunId().getUuid());
+                throw e;
+            }
+        }
+
+        private Amount<Currency> netAmount(long netPosition) {
+            return new Amount<>(Math.abs(netPosition), transfers.get(0).amount.getToken());
+        }
+
+        private void addNetDDRMovement(TransactionBuilder txBuilder, List<StateAndRef<DDRObjectState>> ddrs, Party payer,
+                                       Party payee, long netAmount, Party centralBank) throws FlowException {
+            long totalAmountConsumed = 0;
+            for (StateAndRef<DDRObjectState> ddr : ddrs) {
+                if (!ddr.getState().getData().getOwner().equals(payer))
+                    throw new FlowException("DDR Objects used to settle a netted transfer should belong to " + payer);
+                txBuilder.addInputState(ddr);
+                totalAmountConsumed += ddr.getState().getData().getAmount().getQuantity();
+            }
+            if (totalAmountConsumed < netAmount)
+                throw new FlowException("DDR Objects provided do not cover net amount " + netAmount);
+
+            DDRObjectStateBuilder builder = new DDRObjectStateBuilder().issuer(centralBank)
+                    .currency(transfers.get(0).amount.getToken()).issuerDate(new Date());
+            txBuilder.addOutputState(builder.owner(payee).amount(netAmount).build());
+            if (totalAmountConsumed > netAmount)
+                txBuilder.addOutputState(builder.owner(payer).amount(totalAmountConsumed - netAmount).build());
+        }
+    }
+
+    // ******************
+    // * Responder flow *
+    // ******************
+    @InitiatedBy(NetInterBankTransfers.Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession counterpartySession;
+
+        public Responder(FlowSession counterpartySession) {
+            this.counterpartySession = counterpartySession;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            if (getOurIdentity().equals(Utils.getCentralBankParty(getServiceHub()))) {
+                final SecureHash txId = subFlow(new CheckTransactionAndSignFlow(counterpartySession, null, 0)).getId();
+                return subFlow(new ReceiveFinalityFlow(counterpartySession, txId, StatesToRecord.ALL_VISIBLE));
+            }
+
+            final Party counterparty = counterpartySession.getCounterparty();
+            List<InterBankTransferStateBuilder> counterpartyTransfers = counterpartySession.receive(List.class)
+                    .unwrap(data -> validateTransfers(data, counterparty, getOurIdentity()));
+
+            InterBankNettingService nettingService = getServiceHub().cordaService(InterBankNettingService.class);
+            List<InterBankTransferStateBuilder> ourTransfers = nettingService.drain(counterparty);
+            Set<String> ourReferences = ourTransfers.stream().map(transfer -> transfer.externalId).collect(Collectors.toSet());
+            try {
+                counterpartySession.send(ourTransfers);
+
+                long netPosition = netPosition(counterpartyTransfers, ourTransfers);
+                if (netPosition < 0) {
+                    Amount<Currency> netAmount = new Amount<>(-netPosition, counterpartyTransfers.isEmpty() ?
+                            ourTransfers.get(0).amount.getToken() : counterpartyTransfers.get(0).amount.getToken());
+                    List<StateAndRef<DDRObjectState>> ddrs = Utils.selectDDRsToSpend(this, getOurIdentity(), netAmount,
+                            DDRSelectionStrategy.DEFAULT, getRunId().getUuid());
+                    subFlow(new SendStateAndRefFlow(counterpartySession, ddrs));
+                }
+
+                List<InterBankTransferStateBuilder> agreedTransfers = new ArrayList<>(counterpartyTransfers);
+                agreedTransfers.addAll(ourTransfers);
+                final SecureHash txId = subFlow(new CheckTransactionAndSignFlow(counterpartySession, agreedTransfers, netPosition)).getId();
+                SignedTransaction stx = subFlow(new ReceiveFinalityFlow(counterpartySession, txId));
+                nettingService.settled(ourReferences, stx);
+                return stx;
+            } catch (FlowException | RuntimeException e) {
+                Utils.releaseReservations(getServiceHub(), getRunId().getUuid());
+                nettingService.failed(ourReferences, e);
+                throw e;
+            }
+        }
+
+        /**
+         * Signs the netted transfer if every DDR amount consumed comes back in the outputs, per issuer and currency. A
+         * bank also requires the transfers to be exactly those agreed with the initiator, and its own DDRs to change by
+         * the net amount it receives, negative when it pays.
+         */
+        private static class CheckTransactionAndSignFlow extends SignTransactionFlow {
+
+            // Null for the central bank, which is not a party to the transfers
+            private final List<InterBankTransferStateBuilder> agreedTransfers;
+            private final long netReceived;
+
+            public CheckTransactionAndSignFlow(@NotNull FlowSession otherSideSession, List<InterBankTransferStateBuilder> agreedTransfers,
+                                               long netReceived) {
+                super(otherSideSession, SignTransactionFlow.Companion.tracker());
+                this.agreedTransfers = agreedTransfers;
+                this.netReceived = netReceived;
+            }
+
+            @Override
+            protected void checkTransaction(@NotNull SignedTransaction stx) throws FlowException {
+                LedgerTransaction ltx;
+                try {
+                    ltx = stx.toLedgerTransaction(getServiceHub(), false);
+                } catch (SignatureException e) {
+                    throw new FlowException("Netted transfer has an invalid signature", e);
+                }
+                checkDDRsBalance(ltx);
+                if (agreedTransfers == null) return;
+
+                Map<String, InterBankTransferStateBuilder> agreed = new HashMap<>();
+                agreedTransfers.forEach(transfer -> agreed.put(transfer.externalId, transfer));
+                List<InterBankTransferState> transfers = ltx.outputsOfType(InterBankTransferState.class);
+                if (transfers.size() != agreed.size())
+                    throw new FlowException("Netted transfer settles " + transfers.size() + " transfers instead of the " + agreed.size() + " agreed");
+                for (InterBankTransferState transfer : transfers) {
+                    if (!isAgreed(transfer, agreed.get(transfer.getExternalId())))
+                        throw new FlowException("Netted transfer settles transfer " + transfer.getExternalId() + " that was not agreed");
+                }
+
+                Party us = getOurIdentity();
+                long received = ltx.outputsOfType(DDRObjectState.class).stream().filter(ddr -> ddr.getOwner().equals(us))
+                        .mapToLong(ddr -> ddr.getAmount().getQuantity()).sum()
+                        - ltx.inputsOfType(DDRObjectState.class).stream().filter(ddr -> ddr.getOwner().equals(us))
+                        .mapToLong(ddr -> ddr.getAmount().getQuantity()).sum();
+                if (received != netReceived)
+                    throw new FlowException("Netted transfer moves " + received + " to " + us + " instead of the net " + netReceived);
+            }
+
+            private static boolean isAgreed(InterBankTransferState transfer, InterBankTransferStateBuilder agreed) {
+                return agreed != null && transfer.getSenderBank().equals(agreed.senderBank)
+                        && transfer.getReceiverBank().equals(agreed.receiverBank) && transfer.getAmount().equals(agreed.amount)
+                        && transfer.getSenderRIB().equals(agreed.senderRIB) && transfer.getReceiverRIB().equals(agreed.receiverRIB);
+            }
+
+            private static void checkDDRsBalance(LedgerTransaction ltx) throws FlowException {
+                Map<List<Object>, Long> balances = new HashMap<>();
+                ltx.inputsOfType(DDRObjectState.class).forEach(ddr -> balances.merge(Arrays.asList(ddr.getIssuer(), ddr.getCurrency()),
+                        ddr.getAmount().getQuantity(), Long::sum));
+                ltx.outputsOfType(DDRObjectState.class).forEach(ddr -> balances.merge(Arrays.asList(ddr.getIssuer(), ddr.getCurrency()),
+                        -ddr.getAmount().getQuantity(), Long::sum));
+                if (balances.values().stream().anyMatch(balance -> balance != 0))
+                    throw new FlowException("Netted transfer does not keep the DDR amounts of each issuer and currency");
+            }
+        }
+    }
+
+    /**
+     * Net position of the first list of transfers against the second one, positive when the senders of the first list owe.
+     */
+    private static long netPosition(List<InterBankTransferStateBuilder> transfers, List<InterBankTransferStateBuilder> otherTransfers) {
+        return transfers.stream().mapToLong(transfer -> transfer.amount.getQuantity()).sum()
+                - otherTransfers.stream().mapToLong(transfer -> transfer.amount.getQuantity()).sum();
+    }
+
+    private static List<InterBankTransferStateBuilder> validateTransfers(List<?> data, Party senderBank, Party receiverBank) throws FlowException {
+        List<InterBankTransferStateBuilder> transfers = new ArrayList<>();
+        for (Object item : data) {
+            if (!(item instanceof InterBankTransferStateBuilder))
+                throw new FlowException("Netted transfer expects a list of InterBankTransferStateBuilder");
+            InterBankTransferStateBuilder transfer = (InterBankTransferStateBuilder) item;
+            if (!senderBank.equals(transfer.senderBank) || !receiverBank.equals(transfer.receiverBank))
+                throw new FlowException("Transfer " + transfer.externalId + " is not a transfer from " + senderBank + " to " + receiverBank);
+            if (transfer.amount == null || transfer.amount.getQuantity() <= 0)
+                throw new FlowException("Transfer " + transfer.externalId + " should have a positive amount");
+            transfers.add(transfer);
+        }
+        return transfers;
+    }
+}
@@ -4,6 +4,7 @@ import co.paralleluniverse.fibers.Suspendable;
 import com.octo.contracts.IntraBankTransferContract;
 import com.octo.states.IntraBankTransferState;
 import com.octo.utils.Utils;
+import com.octo.metrics.PipelineStage;
 import net.corda.core.contracts.Amount;
 import net.corda.core.crypto.SecureHash;
 import net.corda.core.flows.*;
@@ -18,6 +19,7 @@ import org.jetbrains.annotations.NotNull;
 import java.security.PublicKey;
 import java.security.SignatureException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Currency;
 import java.util.Date;
 import java.util.List;
@@ -68,17 +70,18 @@ public class RecordIntraBankTransfer {
 
             TransactionBuilder txBuilder = recordIntraTx(amount, senderRIB, receiverRIB, centralBankParty);
 
-            final SignedTransaction fullySignedTx = subFlow(Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), centralBankSession));
+            final SignedTransaction fullySignedTx = Utils.timedSubFlow(this, PipelineStage.SIGNATURE_COLLECTION,
+                    Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), centralBankSession));
 
-            return subFlow(new FinalityFlow(fullySignedTx, centralBankSession));
+            return Utils.notariseAndFinalise(this, fullySignedTx, Collections.singletonList(centralBankSession), StatesToRecord.ONLY_RELEVANT);
         }
 
-        private TransactionBuilder recordIntraTx(Amount<Currency> amount, String senderRIB, String receiverRIB, Party centralBank) {
+        private TransactionBuilder recordIntraTx(Amount<Currency> amount, String senderRIB, String receiverRIB, Party centralBank) throws FlowException {
             reference = reference.isEmpty() ? Utils.generateReference("INTRA") : reference;
             IntraBankTransferState transferState = new IntraBankTransferState(senderRIB, receiverRIB, getOurIdentity(), amount,
                     executionDate, reference);
             List<PublicKey> requiredSigners = Arrays.asList(centralBank.getOwningKey(), getOurIdentity().getOwningKey());
-            return new TransactionBuilder(getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0))
+            return new TransactionBuilder(Utils.getNotaryParty(getServiceHub(), getOurIdentity()))
                     .addOutputState(transferState)
                     .addCommand(new IntraBankTransferContract.IntraBankTransferCommands.RecordTransfer(), requiredSigners);
         }
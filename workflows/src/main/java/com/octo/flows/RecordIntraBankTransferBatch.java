@@ -0,0 +1,121 @@
+package com.octo.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.octo.builders.IntraBankTransferStateBuilder;
+import com.octo.contracts.IntraBankTransferContract;
+import com.octo.states.IntraBankTransferState;
+import com.octo.utils.Utils;
+import com.octo.metrics.PipelineStage;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.transactions.LedgerTransaction;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records many intra-bank transfers in a single transaction, so the central bank signature and the notarisation
+ * are paid once per batch instead of once per transfer.
+ */
+public class RecordIntraBankTransferBatch {
+
+    // ******************
+    // * Initiator flow *
+    // ******************
+    @InitiatingFlow
+    @StartableByRPC
+    @StartableByService
+    public static class Initiator extends FlowLogic<SignedTransaction> {
+
+        // The bank of each transfer is set by the flow, and a reference is generated if missing
+        private final List<IntraBankTransferStateBuilder> transfers;
+
+        private final ProgressTracker progressTracker = new ProgressTracker();
+
+        public Initiator(List<IntraBankTransferStateBuilder> transfers) {
+            this.transfers = transfers;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            if (transfers.isEmpty())
+                throw new FlowException("Cannot record an empty batch of intrabank transfers");
+            if (transfers.size() > IntraBankTransferContract.MAX_BATCH_SIZE)
+                throw new FlowException("Cannot record more than " + IntraBankTransferContract.MAX_BATCH_SIZE + " intrabank transfers in a batch");
+
+            final Party centralBankParty = Utils.getCentralBankParty(getServiceHub());
+            final FlowSession centralBankSession = initiateFlow(centralBankParty);
+
+            TransactionBuilder txBuilder = recordIntraBatchTx(centralBankParty);
+
+            final SignedTransaction fullySignedTx = Utils.timedSubFlow(this, PipelineStage.SIGNATURE_COLLECTION,
+                    Utils.verifyAndCollectSignatures(txBuilder, getServiceHub(), centralBankSession));
+
+            return Utils.notariseAndFinalise(this, fullySignedTx, Collections.singletonList(centralBankSession), StatesToRecord.ONLY_RELEVANT);
+        }
+
+        private TransactionBuilder recordIntraBatchTx(Party centralBank) throws FlowException {
+            List<PublicKey> requiredSigners = Arrays.asList(centralBank.getOwningKey(), getOurIdentity().getOwningKey());
+            TransactionBuilder txBuilder = new TransactionBuilder(Utils.getNotaryParty(getServiceHub(), getOurIdentity()))
+                    .addCommand(new IntraBankTransferContract.IntraBankTransferCommands.RecordTransferBatch(), requiredSigners);
+            for (IntraBankTransferStateBuilder transfer : transfers) {
+                if (transfer.externalId == null || transfer.externalId.isEmpty())
+                    transfer.externalId(Utils.generateReference("INTRA"));
+                IntraBankTransferState transferState = transfer.bank(getOurIdentity()).build();
+                txBuilder.addOutputState(transferState);
+            }
+            return txBuilder;
+        }
+    }
+
+    // ******************
+    // * Responder flow *
+    // ******************
+    @InitiatedBy(RecordIntraBankTransferBatch.Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession counterPartySession;
+
+        public Responder(FlowSession counterPartySession) {
+            this.counterPartySession = counterPartySession;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            final SecureHash txId = subFlow(new CheckTransactionAndSignFlow(counterPartySession, SignTransactionFlow.Companion.tracker())).getId();
+            return subFlow(new ReceiveFinalityFlow(counterPartySession, txId, StatesToRecord.ALL_VISIBLE));
+        }
+
+        private static class CheckTransactionAndSignFlow extends SignTransactionFlow {
+
+            public CheckTransactionAndSignFlow(@NotNull FlowSession otherSideSession, @NotNull ProgressTracker progressTracker) {
+                super(otherSideSession, progressTracker);
+            }
+
+            @Override
+            protected void checkTransaction(@NotNull SignedTransaction stx) throws FlowException {
+                try {
+                    LedgerTransaction ltx = stx.toLedgerTransaction(getServiceHub(), false);
+                } catch (SignatureException e) {
+                    throw new FlowException("Transaction had invalid signature.");
+                }
+            }
+        }
+
+    }
+}
@@ -59,8 +59,8 @@ public class RequestDDRPledge {
             return subFlow(new FinalityFlow(fullySignedTx, centralBankSession));
         }
 
-        private TransactionBuilder requestPledgeTx(Amount<Currency> amount, Party centralBank) {
-            TransactionBuilder txBuilder = new TransactionBuilder(getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0));
+        private TransactionBuilder requestPledgeTx(Amount<Currency> amount, Party centralBank) throws FlowException {
+            TransactionBuilder txBuilder = new TransactionBuilder(Utils.getNotaryParty(getServiceHub(), getOurIdentity()));
             final List<PublicKey> requiredSigners = Arrays.asList(centralBank.getOwningKey(), getOurIdentity().getOwningKey());
 
             DDRObligationState ddrObligationState = new DDRObligationState(centralBank, getOurIdentity(), new Date(), amount, getOurIdentity(),
@@ -59,8 +59,8 @@ public class RequestDDRRedeem {
             return subFlow(new FinalityFlow(fullySignedTx, centralBankSession));
         }
 
-        private TransactionBuilder requestRedeemTx(Amount<Currency> amount, Party centralBank) {
-            TransactionBuilder txBuilder = new TransactionBuilder(getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0));
+        private TransactionBuilder requestRedeemTx(Amount<Currency> amount, Party centralBank) throws FlowException {
+            TransactionBuilder txBuilder = new TransactionBuilder(Utils.getNotaryParty(getServiceHub(), getOurIdentity()));
             final List<PublicKey> requiredSigners = Arrays.asList(centralBank.getOwningKey(), getOurIdentity().getOwningKey());
 
             DDRObligationState redeemState = new DDRObligationState(centralBank, getOurIdentity(), new Date(), amount,
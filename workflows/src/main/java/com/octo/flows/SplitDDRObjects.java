@@ -0,0 +1,106 @@
+package com.octo.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.octo.builders.DDRObjectStateBuilder;
+import com.octo.contracts.DDRObjectContract;
+import com.octo.states.DDRObjectState;
+import com.octo.utils.Utils;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.*;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.node.services.StatesNotAvailableException;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.NonEmptySet;
+import net.corda.core.utilities.ProgressTracker;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Splits a DDR Object of our bank into DDR Objects of the given quantities, and one more for the rest of its amount.
+ * <p>
+ * The DDR is soft locked first, the flow fails without consuming anything if a transfer already reserved it. The
+ * issuer only receives the transaction, a split does not need its signature.
+ */
+public class SplitDDRObjects {
+
+    // ******************
+    // * Initiator flow *
+    // ******************
+    @InitiatingFlow
+    @StartableByRPC
+    @StartableByService
+    public static class Initiator extends FlowLogic<SignedTransaction> {
+
+        private final StateAndRef<DDRObjectState> ddr;
+        private final List<Long> quantities;
+        private final ProgressTracker progressTracker = new ProgressTracker();
+
+        public Initiator(StateAndRef<DDRObjectState> ddr, List<Long> quantities) {
+            this.ddr = ddr;
+            this.quantities = quantities;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            DDRObjectState state = ddr.getState().getData();
+            if (!state.getOwner().equals(getOurIdentity()))
+                throw new FlowException("Only DDR Objects owned by " + getOurIdentity() + " can be split");
+            long total = 0;
+            for (long quantity : quantities) {
+                if (quantity <= 0) throw new FlowException("Split DDR Objects should have positive amounts");
+                total += quantity;
+            }
+            long rest = state.getAmount().getQuantity() - total;
+            if (rest < 0)
+                throw new FlowException("Split quantities add up to more than the DDR Object amount " + state.getAmount());
+            if (quantities.size() + (rest > 0 ? 1 : 0) < 2)
+                throw new FlowException("A split should create at least 2 DDR Objects");
+
+            TransactionBuilder txBuilder = new TransactionBuilder(ddr.getState().getNotary());
+            try {
+                getServiceHub().getVaultService().softLockReserve(txBuilder.getLockId(), NonEmptySet.of(ddr.getRef()));
+            } catch (StatesNotAvailableException e) {
+                throw new FlowException("DDR Object to split is reserved by another flow", e);
+            }
+
+            Date issuerDate = new Date();
+            txBuilder.addInputState(ddr);
+            quantities.forEach(quantity -> txBuilder.addOutputState(new DDRObjectStateBuilder(state).amount(quantity).issuerDate(issuerDate).build()));
+            if (rest > 0) txBuilder.addOutputState(new DDRObjectStateBuilder(state).amount(rest).issuerDate(issuerDate).build());
+            txBuilder.addCommand(new DDRObjectContract.DDRObjectCommands.SplitDDRObjects(), getOurIdentity().getOwningKey());
+
+            txBuilder.verify(getServiceHub());
+            SignedTransaction signedTx = getServiceHub().signInitialTransaction(txBuilder);
+            FlowSession issuerSession = initiateFlow(state.getIssuer());
+            return Utils.notariseAndFinalise(this, signedTx, Collections.singletonList(issuerSession), StatesToRecord.ONLY_RELEVANT);
+        }
+    }
+
+    // ******************
+    // * Responder flow *
+    // ******************
+    @InitiatedBy(SplitDDRObjects.Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession counterpartySession;
+
+        public Responder(FlowSession counterpartySession) {
+            this.counterpartySession = counterpartySession;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // The central bank records every DDR Object, it selects them when approving a redeem
+            return subFlow(new ReceiveFinalityFlow(counterpartySession, null, StatesToRecord.ALL_VISIBLE));
+        }
+    }
+}
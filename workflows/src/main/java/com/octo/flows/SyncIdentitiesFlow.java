@@ -4,12 +4,20 @@ import co.paralleluniverse.fibers.Suspendable;
 import com.octo.corda_services.RIBService;
 import net.corda.core.flows.*;
 import net.corda.core.identity.Party;
-import net.corda.core.node.NodeInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Exchanges bank codes with the nodes of the network map that were not synced yet, or with the given parties.
+ * <p>
+ * Our code is sent to every node first, then the answers are received, so the flow waits for the slowest node rather
+ * than for each node in turn. A node whose responder fails is left unsynced and the others are synced all the same.
+ * {@link RIBService} starts a flow per node, so an unreachable node only holds its own flow. Notaries and our own
+ * node are never contacted.
+ */
 public class SyncIdentitiesFlow {
 
     @InitiatingFlow
@@ -19,31 +27,45 @@ public class SyncIdentitiesFlow {
 
         public static final Logger logger = LoggerFactory.getLogger(Initiator.class);
 
+        // Null for the nodes of the network map not synced yet
+        private final List<Party> parties;
+
+        public Initiator() {
+            this(null);
+        }
+
+        public Initiator(List<Party> parties) {
+            this.parties = parties;
+        }
+
         @Override
         @Suspendable
         public Void call() throws FlowException {
-            final List<NodeInfo> allNodes = getServiceHub().getNetworkMapCache().getAllNodes();
-            String ourIdentifier = getServiceHub().cordaService(RIBService.class).getOurIdentifier();
-            logger.info("Our Identifier = {}", ourIdentifier);
+            RIBService ribService = getServiceHub().cordaService(RIBService.class);
+            List<Party> targets = new ArrayList<>(parties != null ? parties : ribService.unsyncedParties());
+            targets.removeIf(party -> party.equals(getOurIdentity()) || getServiceHub().getNetworkMapCache().isNotary(party));
+            if (targets.isEmpty()) return null;
+            String ourIdentifier = ribService.getOurIdentifier();
+            logger.info("Sending our identifier {} to {} nodes", ourIdentifier, targets.size());
 
-            for(NodeInfo nodeInfo : allNodes){
-                logger.info("Inside foreach of node={}", nodeInfo);
-                Party party = nodeInfo.getLegalIdentities().get(0);
+            List<FlowSession> sessions = new ArrayList<>(targets.size());
+            for (Party party : targets) {
                 FlowSession session = initiateFlow(party);
-                String identifier = null;
+                session.send(ourIdentifier);
+                sessions.add(session);
+            }
+            for (FlowSession session : sessions) {
+                Party party = session.getCounterparty();
                 try {
-                    logger.info("Sending our identifier and getting other parties identifiers");
-                    identifier = session.sendAndReceive(String.class, ourIdentifier)
-                            .unwrap(SyncIdentitiesFlow::validator);
-                    logger.info("Received identifier={}", identifier);
+                    String identifier = session.receive(String.class).unwrap(SyncIdentitiesFlow::validator);
+                    if (identifier != null) ribService.addToMap(identifier, party);
+                    ribService.markSynced(party);
                 } catch (FlowException e) {
-                    e.printStackTrace();
+                    logger.warn("Could not sync identifiers with {}: {}", party.getName(), e.getMessage());
                 }
-                if(identifier != null) getServiceHub().cordaService(RIBService.class).addToMap(identifier, party);
             }
             return null;
         }
-
     }
 
     @Suspendable
@@ -70,10 +92,12 @@ public class SyncIdentitiesFlow {
         @Override
         @Suspendable
         public Void call() throws FlowException {
+            RIBService ribService = getServiceHub().cordaService(RIBService.class);
             String receivedIdentifier = counterpartySession.receive(String.class).unwrap(SyncIdentitiesFlow::validator);
-            getServiceHub().cordaService(RIBService.class).addToMap(receivedIdentifier, counterpartySession.getCounterparty());
-            String ourIdentifier = getServiceHub().cordaService(RIBService.class).getOurIdentifier();
-            counterpartySession.send(ourIdentifier);
+            // The central bank has no code
+            if (receivedIdentifier != null) ribService.addToMap(receivedIdentifier, counterpartySession.getCounterparty());
+            ribService.markSynced(counterpartySession.getCounterparty());
+            counterpartySession.send(ribService.getOurIdentifier());
             return null;
         }
     }
@@ -0,0 +1,176 @@
+package com.octo.messaging;
+
+import com.octo.utils.ServiceExecutors;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops consuming virements while the node has too many flows in flight, or while they take too long to complete.
+ * <p>
+ * Every started flow is counted until it completes, and its duration feeds a moving average. When the in-flight count
+ * exceeds {@code maxInFlight} or the average latency exceeds {@code maxLatencyMillis}, the managed consumers are
+ * cancelled ({@code basicCancel}), so the broker keeps the next virements. Consumption resumes once the in-flight count
+ * is back to {@code resumeInFlight} and the latency to {@code resumeLatencyMillis}, or no flow is left in flight.
+ */
+public class FlowAdmissionController implements FlowAdmissionControllerMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlowAdmissionController.class);
+    // Weight of the last completed flow in the average latency
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final int maxInFlight;
+    private final int resumeInFlight;
+    private final long maxLatencyMillis;
+    private final long resumeLatencyMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<ManagedConsumer> consumers = new CopyOnWriteArrayList<>();
+    // Consumers are cancelled and registered again off the flow and dispatch threads
+    private final ExecutorService executor = ServiceExecutors.newSingleThreadExecutor("virement-admission");
+
+    private volatile double averageLatencyMillis;
+    private volatile boolean paused;
+    private volatile long pauseCount;
+
+    public FlowAdmissionController(int maxInFlight, int resumeInFlight, long maxLatencyMillis, long resumeLatencyMillis) {
+        this.maxInFlight = maxInFlight;
+        this.resumeInFlight = Math.min(resumeInFlight, maxInFlight);
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.resumeLatencyMillis = Math.min(resumeLatencyMillis, maxLatencyMillis);
+    }
+
+    /**
+     * Starts consuming the queue with the consumer, which is then paused and resumed with the others.
+     */
+    public void consume(Channel channel, String queue, Consumer consumer) throws IOException {
+        ManagedConsumer managedConsumer = new ManagedConsumer(channel, queue, consumer);
+        synchronized (channel) {
+            managedConsumer.consumerTag = channel.basicConsume(queue, false, consumer);
+        }
+        consumers.add(managedConsumer);
+    }
+
+    /**
+     * Called before starting a flow, returns the start time to give back to {@link #completed}.
+     */
+    public long started() {
+        if (inFlight.incrementAndGet() > maxInFlight && !paused) executor.execute(this::update);
+        return System.nanoTime();
+    }
+
+    public void completed(long startNanos) {
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        synchronized (this) {
+            averageLatencyMillis += LATENCY_SMOOTHING * (latencyMillis - averageLatencyMillis);
+        }
+        inFlight.decrementAndGet();
+        if (paused ? canResume() : mustPause()) executor.execute(this::update);
+    }
+
+    public void stop() {
+        ServiceExecutors.shutdown(executor);
+    }
+
+    private boolean mustPause() {
+        return inFlight.get() > maxInFlight || averageLatencyMillis > maxLatencyMillis;
+    }
+
+    private boolean canResume() {
+        int current = inFlight.get();
+        return current == 0 || (current <= resumeInFlight && averageLatencyMillis <= resumeLatencyMillis);
+    }
+
+    private void update() {
+        if (!paused && mustPause()) {
+            paused = true;
+            pauseCount++;
+            logger.warn("Pausing virement consumption, inFlight={} averageLatency={}ms", inFlight.get(), getAverageLatencyMillis());
+            consumers.forEach(ManagedConsumer::cancel);
+        } else if (paused && canResume()) {
+            paused = false;
+            logger.info("Resuming virement consumption, inFlight={} averageLatency={}ms", inFlight.get(), getAverageLatencyMillis());
+            consumers.forEach(ManagedConsumer::start);
+        }
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getAverageLatencyMillis() {
+        return Math.round(averageLatencyMillis);
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public long getPauseCount() {
+        return pauseCount;
+    }
+
+    @Override
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    @Override
+    public int getResumeInFlight() {
+        return resumeInFlight;
+    }
+
+    @Override
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    @Override
+    public long getResumeLatencyMillis() {
+        return resumeLatencyMillis;
+    }
+
+    private static class ManagedConsumer {
+        private final Channel channel;
+        private final String queue;
+        private final Consumer consumer;
+        private String consumerTag;
+
+        private ManagedConsumer(Channel channel, String queue, Consumer consumer) {
+            this.channel = channel;
+            this.queue = queue;
+            this.consumer = consumer;
+        }
+
+        private void start() {
+            try {
+                synchronized (channel) {
+                    consumerTag = channel.basicConsume(queue, false, consumer);
+                }
+            } catch (IOException e) {
+                logger.error("Could not consume queue {}", queue, e);
+            }
+        }
+
+        private void cancel() {
+            try {
+                synchronized (channel) {
+                    channel.basicCancel(consumerTag);
+                }
+            } catch (IOException e) {
+                logger.error("Could not cancel consumer of queue {}", queue, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.octo.messaging;
+
+/**
+ * JMX view of the {@link FlowAdmissionController}, registered as {@code com.octo.virement:type=FlowAdmission,node=<organisation>}.
+ */
+public interface FlowAdmissionControllerMBean {
+
+    int getInFlight();
+
+    long getAverageLatencyMillis();
+
+    boolean isPaused();
+
+    long getPauseCount();
+
+    int getMaxInFlight();
+
+    int getResumeInFlight();
+
+    long getMaxLatencyMillis();
+
+    long getResumeLatencyMillis();
+}
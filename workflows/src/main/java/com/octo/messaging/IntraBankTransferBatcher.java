@@ -0,0 +1,109 @@
+package com.octo.messaging;
+
+import com.octo.builders.IntraBankTransferStateBuilder;
+import net.corda.core.transactions.SignedTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups intra-bank transfers into micro-batches recorded by a single flow.
+ * <p>
+ * A batch is flushed as soon as it holds {@code maxBatchSize} transfers, or {@code windowMillis} after its first
+ * transfer was submitted, whichever comes first. The future returned for each transfer completes with the batch, if
+ * the batch fails its transfers are retried individually.
+ */
+public class IntraBankTransferBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntraBankTransferBatcher.class);
+
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Function<List<IntraBankTransferStateBuilder>, CompletableFuture<SignedTransaction>> recorder;
+
+    private List<PendingTransfer> pending = new ArrayList<>();
+    private ScheduledFuture<?> windowTimer;
+
+    public IntraBankTransferBatcher(int maxBatchSize, long windowMillis, ScheduledExecutorService scheduler,
+                                    Function<List<IntraBankTransferStateBuilder>, CompletableFuture<SignedTransaction>> recorder) {
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+        this.recorder = recorder;
+    }
+
+    public CompletableFuture<SignedTransaction> submit(IntraBankTransferStateBuilder transfer) {
+        PendingTransfer pendingTransfer = new PendingTransfer(transfer);
+        List<PendingTransfer> fullBatch = null;
+        synchronized (this) {
+            pending.add(pendingTransfer);
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takeBatch();
+            } else if (windowTimer == null) {
+                windowTimer = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) record(fullBatch);
+        return pendingTransfer.result;
+    }
+
+    public void flush() {
+        List<PendingTransfer> batch;
+        synchronized (this) {
+            batch = takeBatch();
+        }
+        if (!batch.isEmpty()) record(batch);
+    }
+
+    private List<PendingTransfer> takeBatch() {
+        List<PendingTransfer> batch = pending;
+        pending = new ArrayList<>();
+        if (windowTimer != null) {
+            windowTimer.cancel(false);
+            windowTimer = null;
+        }
+        return batch;
+    }
+
+    private void record(List<PendingTransfer> batch) {
+        logger.debug("Recording batch of {} intrabank transfers", batch.size());
+        List<IntraBankTransferStateBuilder> transfers = new ArrayList<>(batch.size());
+        batch.forEach(pendingTransfer -> transfers.add(pendingTransfer.transfer));
+        CompletableFuture<SignedTransaction> recorded;
+        try {
+            recorded = recorder.apply(transfers);
+        } catch (RuntimeException e) {
+            recorded = new CompletableFuture<>();
+            recorded.completeExceptionally(e);
+        }
+        recorded.whenComplete((stx, error) -> {
+            if (error == null) {
+                batch.forEach(pendingTransfer -> pendingTransfer.result.complete(stx));
+            } else if (batch.size() > 1) {
+                // One invalid transfer must not fail the whole batch, so each transfer is recorded on its own
+                logger.warn("Recording batch of {} intrabank transfers failed, recording them one by one", batch.size(), error);
+                batch.forEach(pendingTransfer -> record(Collections.singletonList(pendingTransfer)));
+            } else {
+                batch.forEach(pendingTransfer -> pendingTransfer.result.completeExceptionally(error));
+            }
+        });
+    }
+
+    private static class PendingTransfer {
+        private final IntraBankTransferStateBuilder transfer;
+        private final CompletableFuture<SignedTransaction> result = new CompletableFuture<>();
+
+        private PendingTransfer(IntraBankTransferStateBuilder transfer) {
+            this.transfer = transfer;
+        }
+    }
+}
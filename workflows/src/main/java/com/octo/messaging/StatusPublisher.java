@@ -0,0 +1,155 @@
+package com.octo.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.octo.corda_services.PipelineMetrics;
+import com.octo.metrics.PipelineStage;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes transfer statuses to RabbitMQ from its own thread and its own channel, with publisher confirms.
+ * <p>
+ * {@link #publish} only enqueues the message, so the vault update thread never waits for the broker. The publishing
+ * thread takes up to {@code maxBatchSize} queued messages, publishes them and waits for their confirms once per batch.
+ * A batch that is not confirmed is published again on a new channel, up to {@code MAX_ATTEMPTS} times.
+ */
+public class StatusPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatusPublisher.class);
+    private static final int MAX_ATTEMPTS = 3;
+
+    // Statuses are persistent JSON messages, the same properties object is shared by every publish
+    private static final AMQP.BasicProperties PERSISTENT_JSON = new AMQP.BasicProperties.Builder()
+            .deliveryMode(2).contentType("application/json").build();
+
+    private final Connection connection;
+    private final String exchange;
+    private final ObjectWriter writer;
+    private final int maxBatchSize;
+    private final long confirmTimeoutMillis;
+    private final PipelineMetrics metrics;
+    private final BlockingQueue<OutgoingMessage> queue = new LinkedBlockingQueue<>();
+
+    private Channel channel;
+    private Thread publishingThread;
+    private volatile boolean running;
+
+    public StatusPublisher(Connection connection, String exchange, ObjectWriter writer, int maxBatchSize, long confirmTimeoutMillis,
+                           PipelineMetrics metrics) {
+        this.connection = connection;
+        this.exchange = exchange;
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+        this.metrics = metrics;
+    }
+
+    public void start() throws IOException {
+        channel = openChannel();
+        running = true;
+        publishingThread = new Thread(this::run, "status-publisher");
+        publishingThread.setDaemon(true);
+        publishingThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (publishingThread != null) publishingThread.interrupt();
+    }
+
+    public void publish(String routingKey, Object payload) {
+        queue.add(new OutgoingMessage(routingKey, payload));
+    }
+
+    private void run() {
+        List<OutgoingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publishBatch(List<OutgoingMessage> batch) throws InterruptedException {
+        List<byte[]> bodies = new ArrayList<>(batch.size());
+        List<OutgoingMessage> messages = new ArrayList<>(batch.size());
+        for (OutgoingMessage message : batch) {
+            try {
+                bodies.add(writer.writeValueAsBytes(message.payload));
+                messages.add(message);
+            } catch (JsonProcessingException e) {
+                logger.error("Could not serialise status {}, dropping it", message.payload, e);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                for (int i = 0; i < messages.size(); i++)
+                    channel.basicPublish(exchange, messages.get(i).routingKey, false, PERSISTENT_JSON, bodies.get(i));
+                channel.waitForConfirmsOrDie(confirmTimeoutMillis);
+                metrics.record(PipelineStage.PUBLISH, start);
+                logger.debug("Published batch of {} statuses", messages.size());
+                return;
+            } catch (IOException | TimeoutException | ShutdownSignalException e) {
+                metrics.error(PipelineStage.PUBLISH);
+                logger.warn("Batch of {} statuses was not confirmed (attempt {}/{})", messages.size(), attempt, MAX_ATTEMPTS, e);
+                reopenChannel();
+            }
+        }
+        logger.error("Dropping batch of {} statuses after {} attempts", messages.size(), MAX_ATTEMPTS);
+    }
+
+    // waitForConfirmsOrDie closes the channel on a nack or a timeout, publishing continues on a new one
+    private void reopenChannel() throws InterruptedException {
+        while (running) {
+            try {
+                if (channel.isOpen()) channel.close();
+            } catch (IOException | TimeoutException | RuntimeException e) {
+                logger.debug("Could not close status channel", e);
+            }
+            try {
+                channel = openChannel();
+                return;
+            } catch (IOException e) {
+                logger.error("Could not open status channel, retrying", e);
+                Thread.sleep(confirmTimeoutMillis);
+            }
+        }
+    }
+
+    private Channel openChannel() throws IOException {
+        Channel newChannel = connection.createChannel();
+        newChannel.confirmSelect();
+        return newChannel;
+    }
+
+    private static class OutgoingMessage {
+        private final String routingKey;
+        private final Object payload;
+
+        private OutgoingMessage(String routingKey, Object payload) {
+            this.routingKey = routingKey;
+            this.payload = payload;
+        }
+    }
+}
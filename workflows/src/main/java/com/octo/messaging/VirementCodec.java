@@ -0,0 +1,85 @@
+package com.octo.messaging;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.octo.dto.BankTransferDTO;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Encodes and decodes the JSON messages exchanged with the bank system.
+ * <p>
+ * The mapper is configured once, and the reader and writer derived from it are immutable, so they are shared by every
+ * consumer and publisher thread. Dates use the {@value #DATE_PATTERN} pattern through {@code java.time}, which is
+ * thread-safe unlike the {@code SimpleDateFormat} Jackson would otherwise clone for each call.
+ */
+public final class VirementCodec {
+
+    public static final String DATE_PATTERN = "dd-MM-yyyy HH:mm:ss";
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_PATTERN);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT)
+            .registerModule(new SimpleModule("VirementDates")
+                    .addSerializer(Date.class, new DateSerializer())
+                    .addDeserializer(Date.class, new DateDeserializer()));
+    private static final ObjectReader TRANSFER_READER = MAPPER.readerFor(BankTransferDTO.class);
+    private static final ObjectWriter WRITER = MAPPER.writer();
+
+    private VirementCodec() {
+    }
+
+    /**
+     * Decodes a virement straight from the message body, without an intermediate String.
+     */
+    public static BankTransferDTO decodeTransfer(byte[] body) throws IOException {
+        return TRANSFER_READER.readValue(body);
+    }
+
+    public static ObjectWriter writer() {
+        return WRITER;
+    }
+
+    private static class DateSerializer extends StdScalarSerializer<Date> {
+        private DateSerializer() {
+            super(Date.class);
+        }
+
+        @Override
+        public void serialize(Date value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeString(DATE_FORMATTER.format(LocalDateTime.ofInstant(value.toInstant(), ZONE)));
+        }
+    }
+
+    private static class DateDeserializer extends StdScalarDeserializer<Date> {
+        private DateDeserializer() {
+            super(Date.class);
+        }
+
+        @Override
+        public Date deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.hasToken(JsonToken.VALUE_NUMBER_INT))
+                return new Date(p.getLongValue());
+            String text = p.getValueAsString();
+            if (text == null || text.isEmpty())
+                return null;
+            try {
+                return Date.from(LocalDateTime.parse(text, DATE_FORMATTER).atZone(ZONE).toInstant());
+            } catch (DateTimeParseException e) {
+                return (Date) ctxt.handleWeirdStringValue(Date.class, text, "expected format \"%s\"", DATE_PATTERN);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.octo.messaging;
+
+import com.octo.corda_services.PipelineMetrics;
+import com.octo.dto.BankTransferDTO;
+import com.octo.metrics.PipelineStage;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pipelined consumer of the virements queue.
+ * <p>
+ * The dispatch thread only decodes the message and hands it to the {@link VirementProcessor}, the delivery is acked
+ * (or nacked) from the completion callback of the started flow. The number of virements in flight is bounded by the
+ * channel prefetch ({@code basicQos}). Failed virements are handed to the {@link VirementRetryHandler} and acked once
+ * they were republished to a delay queue or to the dead-letter queue.
+ */
+public class VirementConsumer extends DefaultConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirementConsumer.class);
+
+    private final VirementProcessor processor;
+    private final VirementRetryHandler retryHandler;
+    private final PipelineMetrics metrics;
+
+    public VirementConsumer(Channel channel, VirementProcessor processor, VirementRetryHandler retryHandler, PipelineMetrics metrics) {
+        super(channel);
+        this.processor = processor;
+        this.retryHandler = retryHandler;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+        long deliveryTag = envelope.getDeliveryTag();
+        logger.debug("Received message with deliveryTag={} ", deliveryTag);
+
+        BankTransferDTO transferDTO;
+        long decodeStart = System.nanoTime();
+        try {
+            transferDTO = VirementCodec.decodeTransfer(body);
+            metrics.record(PipelineStage.DECODE, decodeStart);
+        } catch (IOException e) {
+            metrics.error(PipelineStage.DECODE);
+            logger.error("Could not decode message with deliveryTag={}, dead-lettering it", deliveryTag, e);
+            ackWhenComplete(deliveryTag, retryHandler.deadLetter(properties, body, e));
+            return;
+        }
+        logger.debug("Received transfer={} ", transferDTO);
+
+        processor.process(transferDTO).whenComplete((result, error) -> {
+            if (error == null) {
+                ack(deliveryTag);
+                logger.debug("Recording transfer {} complete", transferDTO.getReference());
+            } else {
+                logger.warn("Recording transfer {} failed", transferDTO.getReference());
+                ackWhenComplete(deliveryTag, retryHandler.handleFailure(properties, body, error));
+            }
+        });
+    }
+
+    // The delivery is only acked once its copy is safely in a retry or dead-letter queue, otherwise it is requeued
+    private void ackWhenComplete(long deliveryTag, CompletableFuture<Void> republished) {
+        republished.whenComplete((result, error) -> {
+            if (error == null) {
+                ack(deliveryTag);
+            } else {
+                logger.error("Could not republish failed message with deliveryTag={}, requeuing it", deliveryTag, error);
+                nack(deliveryTag, true);
+            }
+        });
+    }
+
+    private void ack(long deliveryTag) {
+        long start = System.nanoTime();
+        try {
+            synchronized (getChannel()) {
+                getChannel().basicAck(deliveryTag, false);
+            }
+            metrics.record(PipelineStage.ACK, start);
+        } catch (IOException e) {
+            metrics.error(PipelineStage.ACK);
+            logger.error("Could not ack message with deliveryTag={}", deliveryTag, e);
+        }
+    }
+
+    private void nack(long deliveryTag, boolean requeue) {
+        try {
+            synchronized (getChannel()) {
+                getChannel().basicNack(deliveryTag, false, requeue);
+            }
+        } catch (IOException e) {
+            logger.error("Could not nack message with deliveryTag={}", deliveryTag, e);
+        }
+    }
+}
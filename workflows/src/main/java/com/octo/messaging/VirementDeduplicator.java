@@ -0,0 +1,148 @@
+package com.octo.messaging;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.octo.states.InterBankTransferState;
+import com.octo.states.IntraBankTransferState;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.LinearState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * Tells whether the transfer of a virement reference was already recorded by this bank, before any flow is started.
+ * <p>
+ * References being processed are kept in an in-flight set. Recorded references go to a bounded LRU of recent
+ * references and to a Bloom filter of every reference recorded since the node started (seeded from the vault). Once
+ * seeded, a reference the Bloom filter has never seen is new without touching the database; only possible duplicates
+ * older than the LRU are confirmed by a lookup on the indexed external id of the vault linear states. Until then,
+ * every reference not in the LRU is looked up.
+ */
+public class VirementDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirementDeduplicator.class);
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    private static final int SEED_PAGE_SIZE = 1000;
+    private static final Set<Class<? extends ContractState>> TRANSFER_TYPES =
+            ImmutableSet.of(IntraBankTransferState.class, InterBankTransferState.class);
+
+    private final AppServiceHub serviceHub;
+    private final Party bank;
+    private final BloomFilter<CharSequence> recordedFilter;
+    private final Map<String, Boolean> recentlyRecorded;
+    private final Set<String> inFlight = Collections.newSetFromMap(new HashMap<>());
+    private volatile boolean seeded;
+
+    public VirementDeduplicator(AppServiceHub serviceHub, Party bank, int lruSize, long expectedReferences) {
+        this.serviceHub = serviceHub;
+        this.bank = bank;
+        this.recordedFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedReferences, BLOOM_FALSE_POSITIVE_RATE);
+        this.recentlyRecorded = new LinkedHashMap<String, Boolean>(lruSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > lruSize;
+            }
+        };
+    }
+
+    /**
+     * Adds the references of every transfer of this bank already in the vault to the Bloom filter, a page per
+     * database transaction. Meant to run in the background, references are looked up in the vault meanwhile.
+     */
+    public void seed() {
+        QueryCriteria criteria = new QueryCriteria.LinearStateQueryCriteria()
+                .withStatus(Vault.StateStatus.ALL).withContractStateTypes(TRANSFER_TYPES);
+        // Transfers recorded during the seeding come after the pages already read
+        Sort byRecordedTime = new Sort(Collections.singletonList(new Sort.SortColumn(
+                new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC)));
+        try {
+            int count = 0;
+            int pageNumber = DEFAULT_PAGE_NUM;
+            Vault.Page<LinearState> page;
+            do {
+                final int currentPage = pageNumber++;
+                page = serviceHub.getDatabase().transaction(session -> serviceHub.getVaultService()
+                        .queryBy(LinearState.class, criteria, new PageSpecification(currentPage, SEED_PAGE_SIZE), byRecordedTime));
+                for (StateAndRef<LinearState> transfer : page.getStates()) {
+                    String reference = ourReference(transfer.getState().getData());
+                    if (reference != null) {
+                        recordedFilter.put(reference);
+                        count++;
+                    }
+                }
+            } while ((long) SEED_PAGE_SIZE * (pageNumber - 1) < page.getTotalStatesAvailable());
+            seeded = true;
+            logger.info("Seeded virement deduplication with {} recorded references", count);
+        } catch (RuntimeException e) {
+            logger.error("Could not seed virement deduplication, references are looked up in the vault", e);
+        }
+    }
+
+    /**
+     * Returns true if the reference is recorded or being recorded. Otherwise the reference is marked in flight until
+     * {@link #recorded} or {@link #failed} is called.
+     */
+    public boolean isDuplicate(String reference) {
+        synchronized (this) {
+            if (inFlight.contains(reference) || recentlyRecorded.containsKey(reference)) return true;
+            if (seeded && !recordedFilter.mightContain(reference)) {
+                inFlight.add(reference);
+                return false;
+            }
+        }
+        boolean recorded = isRecordedInVault(reference);
+        synchronized (this) {
+            if (recorded) {
+                recentlyRecorded.put(reference, Boolean.TRUE);
+                return true;
+            }
+            return !inFlight.add(reference);
+        }
+    }
+
+    public void recorded(String reference) {
+        synchronized (this) {
+            inFlight.remove(reference);
+            recentlyRecorded.put(reference, Boolean.TRUE);
+        }
+        recordedFilter.put(reference);
+    }
+
+    public void failed(String reference) {
+        synchronized (this) {
+            inFlight.remove(reference);
+        }
+    }
+
+    private boolean isRecordedInVault(String reference) {
+        QueryCriteria criteria = new QueryCriteria.LinearStateQueryCriteria()
+                .withExternalId(Collections.singletonList(reference))
+                .withStatus(Vault.StateStatus.ALL).withContractStateTypes(TRANSFER_TYPES);
+        return serviceHub.getDatabase().transaction(session -> serviceHub.getVaultService()
+                .queryBy(LinearState.class, criteria).getStates().stream()
+                .anyMatch(transfer -> reference.equals(ourReference(transfer.getState().getData()))));
+    }
+
+    // An interbank transfer received from another bank may reuse one of our references, it is not a duplicate
+    private String ourReference(LinearState state) {
+        if (state instanceof IntraBankTransferState && ((IntraBankTransferState) state).getBank().equals(bank))
+            return ((IntraBankTransferState) state).getExternalId();
+        if (state instanceof InterBankTransferState && ((InterBankTransferState) state).getSenderBank().equals(bank))
+            return ((InterBankTransferState) state).getExternalId();
+        return null;
+    }
+}
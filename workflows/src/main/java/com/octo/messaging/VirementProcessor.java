@@ -0,0 +1,13 @@
+package com.octo.messaging;
+
+import com.octo.dto.BankTransferDTO;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Turns a virement received from RabbitMQ into ledger updates.
+ * The returned future completes once the virement is recorded (or fails), the caller must not block on it.
+ */
+public interface VirementProcessor {
+    CompletableFuture<?> process(BankTransferDTO transferDTO);
+}
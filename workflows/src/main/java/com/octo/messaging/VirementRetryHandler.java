@@ -0,0 +1,133 @@
+package com.octo.messaging;
+
+import com.octo.utils.ServiceExecutors;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Routes failed virements to a delay queue or to the dead-letter queue.
+ * <p>
+ * Each retry level has its own delay queue with a message TTL, expired messages are dead-lettered by the broker back
+ * to the virements queue, so a message waiting for its retry never blocks the messages behind it. The attempt number
+ * travels in the {@value #ATTEMPT_HEADER} header. Messages that failed permanently, or too many times, are published to
+ * the dead-letter queue with the failure reason in their headers.
+ * <p>
+ * Publishing happens on a dedicated channel in confirm mode, the returned future completes once the broker confirmed
+ * the message, and only then may the original delivery be acked.
+ */
+public class VirementRetryHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirementRetryHandler.class);
+
+    public static final String ATTEMPT_HEADER = "x-attempt";
+    public static final String FAILURE_REASON_HEADER = "x-failure-reason";
+    public static final String FAILURE_EXCEPTION_HEADER = "x-failure-exception";
+    private static final long CONFIRM_TIMEOUT_MS = 5000;
+
+    private final Connection connection;
+    private final String virementQueue;
+    private final String deadLetterQueue;
+    private final VirementRetryPolicy policy;
+    private final ExecutorService executor = ServiceExecutors.newSingleThreadExecutor("virement-retry");
+
+    private Channel channel;
+
+    public VirementRetryHandler(Connection connection, String virementQueue, String deadLetterQueue, VirementRetryPolicy policy) {
+        this.connection = connection;
+        this.virementQueue = virementQueue;
+        this.deadLetterQueue = deadLetterQueue;
+        this.policy = policy;
+    }
+
+    /**
+     * Declares the delay queues and the dead-letter queue. The delay is part of the queue name, so changing the
+     * retry configuration declares new queues instead of conflicting with the arguments of existing ones.
+     */
+    public void declareTopology() throws IOException {
+        channel = openChannel();
+        channel.queueDeclare(deadLetterQueue, true, false, false, null);
+        for (int attempt = 1; attempt < policy.getMaxAttempts(); attempt++) {
+            Map<String, Object> arguments = new HashMap<>();
+            arguments.put("x-message-ttl", policy.getDelayMillis(attempt));
+            arguments.put("x-dead-letter-exchange", "");
+            arguments.put("x-dead-letter-routing-key", virementQueue);
+            channel.queueDeclare(retryQueue(attempt), true, false, false, arguments);
+        }
+    }
+
+    public static int getAttempt(AMQP.BasicProperties properties) {
+        Object attempt = properties == null || properties.getHeaders() == null ? null : properties.getHeaders().get(ATTEMPT_HEADER);
+        return attempt instanceof Number ? ((Number) attempt).intValue() : 1;
+    }
+
+    /**
+     * Publishes the failed message to its next delay queue, or to the dead-letter queue.
+     */
+    public CompletableFuture<Void> handleFailure(AMQP.BasicProperties properties, byte[] body, Throwable error) {
+        int attempt = getAttempt(properties);
+        if (policy.shouldRetry(attempt, error)) {
+            logger.warn("Virement attempt {} failed, retrying in {}ms", attempt, policy.getDelayMillis(attempt), error);
+            return publish(retryQueue(attempt), withHeaders(properties, attempt + 1, null), body);
+        }
+        logger.error("Virement attempt {} failed, sending it to {}", attempt, deadLetterQueue, error);
+        return deadLetter(properties, body, error);
+    }
+
+    /**
+     * Publishes a message that can never be processed, i.e. that could not be decoded, to the dead-letter queue.
+     */
+    public CompletableFuture<Void> deadLetter(AMQP.BasicProperties properties, byte[] body, Throwable error) {
+        return publish(deadLetterQueue, withHeaders(properties, getAttempt(properties), VirementRetryPolicy.unwrap(error)), body);
+    }
+
+    public void stop() {
+        ServiceExecutors.shutdown(executor);
+    }
+
+    private String retryQueue(int attempt) {
+        return virementQueue + "_retry_" + policy.getDelayMillis(attempt) + "ms";
+    }
+
+    private CompletableFuture<Void> publish(String queue, AMQP.BasicProperties properties, byte[] body) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!channel.isOpen()) channel = openChannel();
+                channel.basicPublish("", queue, false, properties, body);
+                channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MS);
+            } catch (IOException | TimeoutException e) {
+                throw new IllegalStateException("Could not publish failed virement to " + queue, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while publishing failed virement to " + queue, e);
+            }
+        }, executor);
+    }
+
+    private AMQP.BasicProperties withHeaders(AMQP.BasicProperties properties, int attempt, Throwable failure) {
+        Map<String, Object> headers = properties == null || properties.getHeaders() == null ?
+                new HashMap<>() : new HashMap<>(properties.getHeaders());
+        headers.put(ATTEMPT_HEADER, attempt);
+        if (failure != null) {
+            headers.put(FAILURE_REASON_HEADER, String.valueOf(failure.getMessage()));
+            headers.put(FAILURE_EXCEPTION_HEADER, failure.getClass().getName());
+        }
+        AMQP.BasicProperties.Builder builder = properties == null ? new AMQP.BasicProperties.Builder() : properties.builder();
+        return builder.deliveryMode(2).headers(headers).build();
+    }
+
+    private Channel openChannel() throws IOException {
+        Channel newChannel = connection.createChannel();
+        newChannel.confirmSelect();
+        return newChannel;
+    }
+}
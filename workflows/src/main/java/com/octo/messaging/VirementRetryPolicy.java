@@ -0,0 +1,60 @@
+package com.octo.messaging;
+
+import com.octo.utils.DDRContentionException;
+import com.octo.utils.UnknownBankException;
+import net.corda.core.flows.NotaryException;
+import net.corda.core.flows.UnexpectedFlowEndException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Decides whether a failed virement is retried, and after which delay.
+ * <p>
+ * Attempt {@code n} (starting at 1) that fails with a transient error is retried after
+ * {@code initialDelayMillis * 2^(n-1)}, until {@code maxAttempts} deliveries were made. Any other failure is permanent.
+ */
+public class VirementRetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+
+    public VirementRetryPolicy(int maxAttempts, long initialDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getDelayMillis(int attempt) {
+        return initialDelayMillis << (attempt - 1);
+    }
+
+    public boolean shouldRetry(int attempt, Throwable error) {
+        return attempt < maxAttempts && isTransient(error);
+    }
+
+    /**
+     * Notary conflicts (the selected DDRs were spent by a concurrent flow), DDRs reserved by concurrent flows, a
+     * counterparty that ended the session or could not be reached and a receiver bank not synced yet may succeed later.
+     * Verification errors, insufficient balances and invalid virements fail right away.
+     */
+    public static boolean isTransient(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof NotaryException
+                || cause instanceof UnexpectedFlowEndException
+                || cause instanceof DDRContentionException
+                || cause instanceof UnknownBankException
+                || cause instanceof TimeoutException;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+            cause = cause.getCause();
+        return cause;
+    }
+}
@@ -0,0 +1,130 @@
+package com.octo.messaging;
+
+import com.octo.dto.BankTransferDTO;
+import com.rabbitmq.client.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Moves virements from the virements queue to one of N shard queues, chosen by a hash of the sender RIB.
+ * <p>
+ * All the virements of an account land in the same shard queue, which is consumed by a single worker, so they keep
+ * their order while different accounts are processed in parallel. The channel of the router is in confirm mode, a
+ * delivery is acked once the broker confirmed its copy in the shard queue, and requeued if the broker nacked it.
+ */
+public class VirementShardRouter extends DefaultConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirementShardRouter.class);
+
+    private final String shardExchange;
+    private final String shardQueuePrefix;
+    private final int shards;
+    private final VirementRetryHandler retryHandler;
+    // Publish sequence number -> delivery tag of the routed message, until the broker confirms the publish
+    private final ConcurrentNavigableMap<Long, Long> unconfirmed = new ConcurrentSkipListMap<>();
+
+    public VirementShardRouter(Channel channel, String shardExchange, String shardQueuePrefix, int shards,
+                               VirementRetryHandler retryHandler) throws IOException {
+        super(channel);
+        this.shardExchange = shardExchange;
+        this.shardQueuePrefix = shardQueuePrefix;
+        this.shards = shards;
+        this.retryHandler = retryHandler;
+        channel.confirmSelect();
+        channel.addConfirmListener(new ConfirmListener() {
+            @Override
+            public void handleAck(long seqNo, boolean multiple) {
+                confirmed(seqNo, multiple, true);
+            }
+
+            @Override
+            public void handleNack(long seqNo, boolean multiple) {
+                confirmed(seqNo, multiple, false);
+            }
+        });
+    }
+
+    public static int shardOf(String senderRIB, int shards) {
+        return senderRIB == null ? 0 : Math.floorMod(senderRIB.hashCode(), shards);
+    }
+
+    public String shardQueue(int shard) {
+        return shardQueuePrefix + shard;
+    }
+
+    /**
+     * Declares the shard exchange and the shard queues, each queue is bound with its own name as routing key.
+     */
+    public void declareTopology() throws IOException {
+        getChannel().exchangeDeclare(shardExchange, BuiltinExchangeType.DIRECT, true);
+        for (int shard = 0; shard < shards; shard++) {
+            getChannel().queueDeclare(shardQueue(shard), true, false, false, null);
+            getChannel().queueBind(shardQueue(shard), shardExchange, shardQueue(shard));
+        }
+    }
+
+    @Override
+    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+        long deliveryTag = envelope.getDeliveryTag();
+        BankTransferDTO transferDTO;
+        try {
+            transferDTO = VirementCodec.decodeTransfer(body);
+        } catch (IOException e) {
+            logger.error("Could not decode message with deliveryTag={}, dead-lettering it", deliveryTag, e);
+            ackWhenComplete(deliveryTag, retryHandler.deadLetter(properties, body, e));
+            return;
+        }
+        int shard = shardOf(transferDTO.getSenderRIB(), shards);
+        synchronized (getChannel()) {
+            unconfirmed.put(getChannel().getNextPublishSeqNo(), deliveryTag);
+            getChannel().basicPublish(shardExchange, shardQueue(shard), false, properties, body);
+        }
+        logger.debug("Routed transfer {} to shard {}", transferDTO.getReference(), shard);
+    }
+
+    private void confirmed(long seqNo, boolean multiple, boolean ack) {
+        ConcurrentNavigableMap<Long, Long> confirmedDeliveries = multiple ? unconfirmed.headMap(seqNo, true) :
+                unconfirmed.subMap(seqNo, true, seqNo, true);
+        confirmedDeliveries.values().forEach(deliveryTag -> {
+            if (ack) {
+                ack(deliveryTag);
+            } else {
+                logger.warn("Broker did not confirm routed message with deliveryTag={}, requeuing it", deliveryTag);
+                nack(deliveryTag);
+            }
+        });
+        confirmedDeliveries.clear();
+    }
+
+    private void ackWhenComplete(long deliveryTag, CompletableFuture<Void> republished) {
+        republished.whenComplete((result, error) -> {
+            if (error == null) ack(deliveryTag);
+            else nack(deliveryTag);
+        });
+    }
+
+    private void ack(long deliveryTag) {
+        try {
+            synchronized (getChannel()) {
+                getChannel().basicAck(deliveryTag, false);
+            }
+        } catch (IOException e) {
+            logger.error("Could not ack message with deliveryTag={}", deliveryTag, e);
+        }
+    }
+
+    private void nack(long deliveryTag) {
+        try {
+            synchronized (getChannel()) {
+                getChannel().basicNack(deliveryTag, false, true);
+            }
+        } catch (IOException e) {
+            logger.error("Could not nack message with deliveryTag={}", deliveryTag, e);
+        }
+    }
+}
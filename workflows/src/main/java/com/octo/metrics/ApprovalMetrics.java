@@ -0,0 +1,127 @@
+package com.octo.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters and latencies of the central bank auto-approvals.
+ * <p>
+ * The time to approval goes from the request date of the obligation, set by the requesting bank, to the end of its
+ * approval. The queue wait goes from the obligation reaching the queue to a worker taking it. Both are recorded like
+ * {@link StageMetrics}, in milliseconds.
+ */
+public class ApprovalMetrics implements ApprovalMetricsMBean {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final IntSupplier queueDepth;
+    private final Recorder timeToApprovalRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder queueWaitRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram timeToApproval = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram queueWait = new Histogram(SIGNIFICANT_DIGITS);
+    private final LongAdder approved = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder manual = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private Histogram timeToApprovalInterval;
+    private Histogram queueWaitInterval;
+
+    public ApprovalMetrics(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public void taken(long queuedNanos) {
+        queueWaitRecorder.recordValue(TimeUnit.NANOSECONDS.toMillis(Math.max(0, System.nanoTime() - queuedNanos)));
+    }
+
+    public void approved(long requesterDateMillis) {
+        approved.increment();
+        // The request date comes from the clock of the requesting bank
+        timeToApprovalRecorder.recordValue(Math.max(0, System.currentTimeMillis() - requesterDateMillis));
+    }
+
+    public void failed() {
+        failed.increment();
+    }
+
+    /**
+     * Counts a request the rules left for an operator.
+     */
+    public void manual() {
+        manual.increment();
+    }
+
+    /**
+     * Counts a request not queued because the queue was full, it stays pending until approved by an operator.
+     */
+    public void dropped() {
+        dropped.increment();
+    }
+
+    public synchronized String logSummary() {
+        refresh();
+        return String.format("Auto-approvals: queued=%d approved=%d failed=%d manual=%d dropped=%d timeToApproval p50=%dms p99=%dms queueWait p99=%dms",
+                queueDepth.getAsInt(), approved.sum(), failed.sum(), manual.sum(), dropped.sum(),
+                timeToApproval.getValueAtPercentile(50), timeToApproval.getValueAtPercentile(99), queueWait.getValueAtPercentile(99));
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public long getApproved() {
+        return approved.sum();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getManual() {
+        return manual.sum();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public synchronized long getP50TimeToApprovalMillis() {
+        refresh();
+        return timeToApproval.getValueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getP99TimeToApprovalMillis() {
+        refresh();
+        return timeToApproval.getValueAtPercentile(99);
+    }
+
+    @Override
+    public synchronized long getMaxTimeToApprovalMillis() {
+        refresh();
+        return timeToApproval.getMaxValue();
+    }
+
+    @Override
+    public synchronized long getP99QueueWaitMillis() {
+        refresh();
+        return queueWait.getValueAtPercentile(99);
+    }
+
+    private void refresh() {
+        timeToApprovalInterval = timeToApprovalRecorder.getIntervalHistogram(timeToApprovalInterval);
+        timeToApproval.add(timeToApprovalInterval);
+        queueWaitInterval = queueWaitRecorder.getIntervalHistogram(queueWaitInterval);
+        queueWait.add(queueWaitInterval);
+    }
+}
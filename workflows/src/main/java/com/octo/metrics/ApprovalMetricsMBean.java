@@ -0,0 +1,26 @@
+package com.octo.metrics;
+
+/**
+ * JMX view of the central bank auto-approvals since the node started, registered as
+ * {@code com.octo.approval:type=AutoApproval,node=<organisation>}.
+ */
+public interface ApprovalMetricsMBean {
+
+    int getQueueDepth();
+
+    long getApproved();
+
+    long getFailed();
+
+    long getManual();
+
+    long getDropped();
+
+    long getP50TimeToApprovalMillis();
+
+    long getP99TimeToApprovalMillis();
+
+    long getMaxTimeToApprovalMillis();
+
+    long getP99QueueWaitMillis();
+}
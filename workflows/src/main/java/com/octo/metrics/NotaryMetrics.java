@@ -0,0 +1,125 @@
+package com.octo.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Notarisation latencies of one notary, recorded like {@link StageMetrics}, and its load for the notary selection.
+ * <p>
+ * The load is an exponentially weighted average of the latencies, so it follows a notary slowing down, multiplied
+ * by the notarisations in flight plus one.
+ */
+public class NotaryMetrics implements NotaryMetricsMBean {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    private final String notary;
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram sinceLastLog = new Histogram(SIGNIFICANT_DIGITS);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder notaryChanges = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double averageMicros;
+    private Histogram interval;
+
+    public NotaryMetrics(String notary) {
+        this.notary = notary;
+    }
+
+    public void started() {
+        inFlight.incrementAndGet();
+    }
+
+    public void notarised(long startNanos) {
+        inFlight.decrementAndGet();
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, System.nanoTime() - startNanos));
+        recorder.recordValue(micros);
+        synchronized (this) {
+            averageMicros = averageMicros == 0 ? micros : averageMicros + AVERAGE_WEIGHT * (micros - averageMicros);
+        }
+    }
+
+    public void failed() {
+        inFlight.decrementAndGet();
+        errors.increment();
+    }
+
+    /**
+     * Counts a DDR moved to this notary because the DDRs already on it did not cover a selection.
+     */
+    public void notaryChanged() {
+        notaryChanges.increment();
+    }
+
+    public double load() {
+        return averageMicros * (inFlight.get() + 1);
+    }
+
+    /**
+     * Returns the summary of the notarisations since the previous call, and starts a new period.
+     */
+    public synchronized String logSummary() {
+        refresh();
+        String summary = String.format("%s count=%d inFlight=%d notaryChanges=%d p50=%dus p99=%dus max=%dus", notary,
+                sinceLastLog.getTotalCount(), inFlight.get(), notaryChanges.sum(), sinceLastLog.getValueAtPercentile(50),
+                sinceLastLog.getValueAtPercentile(99), sinceLastLog.getMaxValue());
+        sinceLastLog.reset();
+        return summary;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        refresh();
+        return total.getTotalCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getNotaryChanges() {
+        return notaryChanges.sum();
+    }
+
+    @Override
+    public double getAverageMicros() {
+        return averageMicros;
+    }
+
+    @Override
+    public synchronized long getP50Micros() {
+        refresh();
+        return total.getValueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getP99Micros() {
+        refresh();
+        return total.getValueAtPercentile(99);
+    }
+
+    @Override
+    public synchronized long getMaxMicros() {
+        refresh();
+        return total.getMaxValue();
+    }
+
+    private void refresh() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        sinceLastLog.add(interval);
+    }
+}
@@ -0,0 +1,25 @@
+package com.octo.metrics;
+
+/**
+ * JMX view of the notarisations of one notary of the pool since the node started, registered as
+ * {@code com.octo.notary:type=NotaryPool,node=<organisation>,notary=<notary organisation>}. Latencies are in
+ * microseconds.
+ */
+public interface NotaryMetricsMBean {
+
+    long getCount();
+
+    long getErrors();
+
+    int getInFlight();
+
+    long getNotaryChanges();
+
+    double getAverageMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getMaxMicros();
+}
@@ -0,0 +1,118 @@
+package com.octo.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Hit rate and lookup latencies of the obligation cache.
+ * <p>
+ * Hits and misses are timed separately, a miss including its vault query. Latencies are recorded like
+ * {@link StageMetrics}, in microseconds.
+ */
+public class ObligationCacheMetrics implements ObligationCacheMetricsMBean {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final IntSupplier size;
+    private final Recorder hitRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder missRecorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram hitLatency = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram missLatency = new Histogram(SIGNIFICANT_DIGITS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private Histogram hitInterval;
+    private Histogram missInterval;
+
+    public ObligationCacheMetrics(IntSupplier size) {
+        this.size = size;
+    }
+
+    public void hit(long startNanos) {
+        hits.increment();
+        hitRecorder.recordValue(elapsedMicros(startNanos));
+    }
+
+    public void miss(long startNanos) {
+        misses.increment();
+        missRecorder.recordValue(elapsedMicros(startNanos));
+    }
+
+    public void evicted() {
+        evictions.increment();
+    }
+
+    public synchronized String logSummary() {
+        refresh();
+        return String.format("Obligation cache: size=%d hits=%d misses=%d hitRate=%.3f evictions=%d hit p50=%dus p99=%dus miss p50=%dus p99=%dus",
+                size.getAsInt(), hits.sum(), misses.sum(), getHitRate(), evictions.sum(),
+                hitLatency.getValueAtPercentile(50), hitLatency.getValueAtPercentile(99),
+                missLatency.getValueAtPercentile(50), missLatency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public int getSize() {
+        return size.getAsInt();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public synchronized long getP50HitMicros() {
+        refresh();
+        return hitLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getP99HitMicros() {
+        refresh();
+        return hitLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public synchronized long getP50MissMicros() {
+        refresh();
+        return missLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getP99MissMicros() {
+        refresh();
+        return missLatency.getValueAtPercentile(99);
+    }
+
+    private static long elapsedMicros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(Math.max(0, System.nanoTime() - startNanos));
+    }
+
+    private void refresh() {
+        hitInterval = hitRecorder.getIntervalHistogram(hitInterval);
+        hitLatency.add(hitInterval);
+        missInterval = missRecorder.getIntervalHistogram(missInterval);
+        missLatency.add(missInterval);
+    }
+}
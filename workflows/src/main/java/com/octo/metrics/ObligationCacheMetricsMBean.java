@@ -0,0 +1,26 @@
+package com.octo.metrics;
+
+/**
+ * JMX view of the obligation lookups since the node started, registered as
+ * {@code com.octo.obligation:type=ObligationCache,node=<organisation>}. Latencies are in microseconds.
+ */
+public interface ObligationCacheMetricsMBean {
+
+    int getSize();
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    double getHitRate();
+
+    long getP50HitMicros();
+
+    long getP99HitMicros();
+
+    long getP50MissMicros();
+
+    long getP99MissMicros();
+}
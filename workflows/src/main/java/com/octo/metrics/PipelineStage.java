@@ -0,0 +1,25 @@
+package com.octo.metrics;
+
+/**
+ * Stages of the virement pipeline, from the message received from RabbitMQ to the status published back.
+ */
+public enum PipelineStage {
+    DECODE("decode"),
+    ROUTING("routing"),
+    DDR_SELECTION("ddrSelection"),
+    SIGNATURE_COLLECTION("signatureCollection"),
+    NOTARISATION("notarisation"),
+    FINALITY("finality"),
+    ACK("ack"),
+    PUBLISH("publish");
+
+    private final String label;
+
+    PipelineStage(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,109 @@
+package com.octo.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and counters of one {@link PipelineStage}.
+ * <p>
+ * Values are recorded lock-free in an HdrHistogram {@link Recorder}, whose interval histograms are folded into a
+ * histogram since startup, read by JMX, and a histogram since the last periodic log.
+ */
+public class StageMetrics implements StageMetricsMBean {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final PipelineStage stage;
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram sinceLastLog = new Histogram(SIGNIFICANT_DIGITS);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private Histogram interval;
+
+    public StageMetrics(PipelineStage stage) {
+        this.stage = stage;
+    }
+
+    public PipelineStage getStage() {
+        return stage;
+    }
+
+    public void record(long startNanos) {
+        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(0, System.nanoTime() - startNanos)));
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public void retry() {
+        retries.increment();
+    }
+
+    /**
+     * Returns the summary of the values recorded since the previous call, and starts a new period.
+     */
+    public synchronized String logSummary() {
+        refresh();
+        String summary = String.format("%s count=%d p50=%dus p99=%dus max=%dus", stage.getLabel(), sinceLastLog.getTotalCount(),
+                sinceLastLog.getValueAtPercentile(50), sinceLastLog.getValueAtPercentile(99), sinceLastLog.getMaxValue());
+        sinceLastLog.reset();
+        return summary;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        refresh();
+        return total.getTotalCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public synchronized double getMeanMicros() {
+        refresh();
+        return total.getMean();
+    }
+
+    @Override
+    public synchronized long getP50Micros() {
+        refresh();
+        return total.getValueAtPercentile(50);
+    }
+
+    @Override
+    public synchronized long getP99Micros() {
+        refresh();
+        return total.getValueAtPercentile(99);
+    }
+
+    @Override
+    public synchronized long getP999Micros() {
+        refresh();
+        return total.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public synchronized long getMaxMicros() {
+        refresh();
+        return total.getMaxValue();
+    }
+
+    private void refresh() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        sinceLastLog.add(interval);
+    }
+}
@@ -0,0 +1,23 @@
+package com.octo.metrics;
+
+/**
+ * JMX view of the latencies of one {@link PipelineStage} since the node started, in microseconds.
+ */
+public interface StageMetricsMBean {
+
+    long getCount();
+
+    long getErrors();
+
+    long getRetries();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+}
@@ -0,0 +1,4 @@
+package com.octo.schemas;
+
+public class BankRouteSchemaFamily {
+}
@@ -0,0 +1,14 @@
+package com.octo.schemas;
+
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.Collections;
+
+@CordaSerializable
+public class BankRouteSchemaV1 extends MappedSchema {
+
+    public BankRouteSchemaV1() {
+        super(BankRouteSchemaFamily.class, 1, Collections.singletonList(PersistentBankRoute.class));
+    }
+}
@@ -0,0 +1,39 @@
+package com.octo.schemas;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * Bank code, the first 3 digits of a RIB, and the X.500 name of the node of the bank. Keeps the routes learnt with
+ * {@code SyncIdentitiesFlow} across restarts.
+ */
+@Entity
+@Table(name = "bank_routes")
+public class PersistentBankRoute implements Serializable {
+
+    @Id
+    @Column(name = "bank_code", length = 3, nullable = false)
+    private String bankCode;
+
+    @Column(name = "party_name", nullable = false)
+    private String partyName;
+
+    public PersistentBankRoute() {
+    }
+
+    public PersistentBankRoute(String bankCode, String partyName) {
+        this.bankCode = bankCode;
+        this.partyName = partyName;
+    }
+
+    public String getBankCode() {
+        return bankCode;
+    }
+
+    public String getPartyName() {
+        return partyName;
+    }
+}
@@ -0,0 +1,44 @@
+package com.octo.utils;
+
+import net.corda.core.cordapp.CordappConfig;
+import net.corda.core.node.ServiceHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads optional values from the CorDapp configuration file (cordapps/config/workflows-x.y.conf).
+ * Every getter falls back to the given default when the key is missing, so nodes without a config file keep working.
+ */
+public class ConfigUtils {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigUtils.class);
+
+    public static int getInt(ServiceHub serviceHub, String path, int defaultValue) {
+        CordappConfig config = getConfig(serviceHub);
+        return config != null && config.exists(path) ? config.getInt(path) : defaultValue;
+    }
+
+    public static long getLong(ServiceHub serviceHub, String path, long defaultValue) {
+        CordappConfig config = getConfig(serviceHub);
+        return config != null && config.exists(path) ? config.getLong(path) : defaultValue;
+    }
+
+    public static boolean getBoolean(ServiceHub serviceHub, String path, boolean defaultValue) {
+        CordappConfig config = getConfig(serviceHub);
+        return config != null && config.exists(path) ? config.getBoolean(path) : defaultValue;
+    }
+
+    public static String getString(ServiceHub serviceHub, String path, String defaultValue) {
+        CordappConfig config = getConfig(serviceHub);
+        return config != null && config.exists(path) ? config.getString(path) : defaultValue;
+    }
+
+    private static CordappConfig getConfig(ServiceHub serviceHub) {
+        try {
+            return serviceHub.getAppContext().getConfig();
+        } catch (IllegalStateException e) {
+            logger.warn("CorDapp config is not available, using defaults", e);
+            return null;
+        }
+    }
+}
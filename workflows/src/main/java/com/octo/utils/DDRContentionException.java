@@ -0,0 +1,17 @@
+package com.octo.utils;
+
+import net.corda.core.contracts.Amount;
+import net.corda.core.flows.FlowException;
+
+import java.util.Currency;
+
+/**
+ * The owner holds enough DDR Objects, but they stayed reserved by concurrent flows for every selection attempt.
+ * Unlike an insufficient balance, trying again later is expected to succeed.
+ */
+public class DDRContentionException extends FlowException {
+
+    public DDRContentionException(Amount<Currency> amount, int attempts) {
+        super("DDR Objects covering " + amount + " are reserved by concurrent flows, gave up after " + attempts + " attempts");
+    }
+}
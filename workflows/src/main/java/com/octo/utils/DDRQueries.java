@@ -0,0 +1,126 @@
+package com.octo.utils;
+
+import com.octo.corda_services.SchemaMigrationService;
+import com.octo.schemas.PersistentDDRObject;
+import com.octo.states.DDRObjectState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.node.ServiceHub;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.VaultCustomQueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.MAX_PAGE_SIZE;
+
+/**
+ * Vault queries of unconsumed DDR Objects on the columns of {@link PersistentDDRObject}, so filtering, sorting and
+ * aggregates run in the database. Parties are compared by X.500 name.
+ * <p>
+ * DDR Objects recorded before the schema have no row until {@link SchemaMigrationService} copied them. Until then,
+ * {@link #isMapped} is false and the DDRs are found by participant with {@link #ownedByWithoutSchema} instead.
+ */
+public class DDRQueries {
+
+    private static final Field OWNER = field("owner");
+    private static final Field CURRENCY = field("currency");
+    private static final Field QUANTITY = field("quantity");
+
+    public static QueryCriteria ownedBy(Party owner) {
+        return new VaultCustomQueryCriteria(Builder.equal(OWNER, owner.getName().toString()));
+    }
+
+    public static QueryCriteria ownedBy(Party owner, Currency currency) {
+        return ownedBy(owner).and(new VaultCustomQueryCriteria(Builder.equal(CURRENCY, currency.getCurrencyCode())));
+    }
+
+    public static QueryCriteria quantityAtLeast(long quantity) {
+        return new VaultCustomQueryCriteria(Builder.greaterThanOrEqual(QUANTITY, quantity));
+    }
+
+    public static QueryCriteria quantityBelow(long quantity) {
+        return new VaultCustomQueryCriteria(Builder.lessThan(QUANTITY, quantity));
+    }
+
+    public static Sort byQuantity(Sort.Direction direction) {
+        return new Sort(Collections.singletonList(new Sort.SortColumn(
+                new SortAttribute.Custom(PersistentDDRObject.class, "quantity"), direction)));
+    }
+
+    public static QueryCriteria sumOfQuantities() {
+        return new VaultCustomQueryCriteria(Builder.sum(QUANTITY));
+    }
+
+    public static QueryCriteria countOfDDRs() {
+        return new VaultCustomQueryCriteria(Builder.count(QUANTITY));
+    }
+
+    /**
+     * Sum of the unconsumed DDR Objects of the owner in the currency.
+     */
+    public static long balance(ServiceHub serviceHub, Party owner, Currency currency) {
+        if (!isMapped(serviceHub)) {
+            long balance = 0;
+            for (StateAndRef<DDRObjectState> ddr : ownedByWithoutSchema(serviceHub, new VaultQueryCriteria(), owner, currency))
+                balance += ddr.getState().getData().getAmount().getQuantity();
+            return balance;
+        }
+        return aggregateResult(serviceHub.getVaultService().queryBy(DDRObjectState.class, ownedBy(owner, currency).and(sumOfQuantities())));
+    }
+
+    /**
+     * Whether every DDR Object of the vault has its row in {@code ddr_object_states}, so the queries on its columns
+     * see them all.
+     */
+    public static boolean isMapped(ServiceHub serviceHub) {
+        return serviceHub.cordaService(SchemaMigrationService.class).isCopied(DDRObjectState.class);
+    }
+
+    /**
+     * Unconsumed DDR Objects of the owner matching the vault criteria, in the currency unless it is null, sorted by
+     * ascending quantity. They are queried by participant and filtered in memory, so DDR Objects without a row in
+     * {@code ddr_object_states} are found too.
+     */
+    public static List<StateAndRef<DDRObjectState>> ownedByWithoutSchema(ServiceHub serviceHub, VaultQueryCriteria criteria,
+                                                                        AbstractParty owner, Currency currency) {
+        QueryCriteria byParticipant = criteria.withParticipants(Collections.singletonList(owner));
+        List<StateAndRef<DDRObjectState>> ddrs = new ArrayList<>();
+        int pageNumber = DEFAULT_PAGE_NUM;
+        Vault.Page<DDRObjectState> page;
+        do {
+            page = serviceHub.getVaultService().queryBy(DDRObjectState.class, byParticipant, new PageSpecification(pageNumber++, MAX_PAGE_SIZE));
+            for (StateAndRef<DDRObjectState> ddr : page.getStates()) {
+                DDRObjectState state = ddr.getState().getData();
+                if (state.getOwner().equals(owner) && (currency == null || state.getCurrency().equals(currency))) ddrs.add(ddr);
+            }
+        } while ((long) (pageNumber - 1) * MAX_PAGE_SIZE < page.getTotalStatesAvailable());
+        ddrs.sort(Comparator.comparingLong(ddr -> ddr.getState().getData().getAmount().getQuantity()));
+        return ddrs;
+    }
+
+    /**
+     * Value of a SUM or COUNT query, the database returns no value rather than 0 for a SUM without rows.
+     */
+    public static long aggregateResult(Vault.Page<?> page) {
+        if (page.getOtherResults().isEmpty()) return 0;
+        Object result = page.getOtherResults().get(0);
+        return result == null ? 0 : ((Number) result).longValue();
+    }
+
+    private static Field field(String name) {
+        try {
+            return PersistentDDRObject.class.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("No column " + name + " in PersistentDDRObject", e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.octo.utils;
+
+import com.octo.states.DDRObjectState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How DDR Objects are chosen to cover an amount. Fewer inputs and no change output make smaller transactions, which
+ * are faster to sign, notarise and resolve.
+ * <p>
+ * Every strategy takes the available DDRs sorted by ascending amount, and returns null only when they do not cover
+ * the required quantity.
+ */
+@CordaSerializable
+public enum DDRSelectionStrategy {
+
+    /**
+     * The smallest single DDR covering the amount, otherwise the largest DDRs first.
+     */
+    SMALLEST_SUFFICIENT {
+        @Override
+        public List<StateAndRef<DDRObjectState>> select(List<StateAndRef<DDRObjectState>> available, long required) {
+            int index = firstCovering(available, required);
+            if (index < available.size()) return Collections.singletonList(available.get(index));
+            return largestFirst(available, required);
+        }
+    },
+
+    /**
+     * The largest DDRs first, the least inputs for a greedy selection but usually a change output.
+     */
+    LARGEST_FIRST {
+        @Override
+        public List<StateAndRef<DDRObjectState>> select(List<StateAndRef<DDRObjectState>> available, long required) {
+            return largestFirst(available, required);
+        }
+    },
+
+    /**
+     * DDRs adding up exactly to the amount, so there is no change output. Falls back to {@link #SMALLEST_SUFFICIENT}
+     * if no such combination is found within the search budget.
+     */
+    EXACT_MATCH {
+        @Override
+        public List<StateAndRef<DDRObjectState>> select(List<StateAndRef<DDRObjectState>> available, long required) {
+            int index = firstCovering(available, required);
+            if (index < available.size() && quantity(available.get(index)) == required)
+                return Collections.singletonList(available.get(index));
+            List<StateAndRef<DDRObjectState>> selected = branchAndBound(available, required, 0);
+            return selected != null ? selected : SMALLEST_SUFFICIENT.select(available, required);
+        }
+    },
+
+    /**
+     * Depth-first search of the combination with the smallest change, then the fewest inputs. Stops at the first
+     * exact match or when the search budget is spent, and falls back to {@link #SMALLEST_SUFFICIENT}.
+     */
+    BRANCH_AND_BOUND {
+        @Override
+        public List<StateAndRef<DDRObjectState>> select(List<StateAndRef<DDRObjectState>> available, long required) {
+            List<StateAndRef<DDRObjectState>> selected = branchAndBound(available, required, Long.MAX_VALUE);
+            return selected != null ? selected : SMALLEST_SUFFICIENT.select(available, required);
+        }
+    },
+
+    /**
+     * A DDR drawn at random among those covering the amount on its own, otherwise the largest DDRs first. Concurrent
+     * transfers of a bank holding several such DDRs, like the liquidity lanes, then rarely pick the same one.
+     */
+    SPREAD {
+        @Override
+        public List<StateAndRef<DDRObjectState>> select(List<StateAndRef<DDRObjectState>> available, long required) {
+            int index = firstCovering(available, required);
+            if (index == available.size()) return largestFirst(available, required);
+            return Collections.singletonList(available.get(ThreadLocalRandom.current().nextInt(index, available.size())));
+        }
+    };
+
+    public static final DDRSelectionStrategy DEFAULT = SMALLEST_SUFFICIENT;
+
+    private static final int MAX_SEARCH_STEPS = 100000;
+
+    public abstract List<StateAndRef<DDRObjectState>> select(List<StateAndRef<DDRObjectState>> available, long required);
+
+    private static long quantity(StateAndRef<DDRObjectState> ddr) {
+        return ddr.getState().getData().getAmount().getQuantity();
+    }
+
+    private static int firstCovering(List<StateAndRef<DDRObjectState>> available, long required) {
+        int low = 0;
+        int high = available.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (quantity(available.get(middle)) < required) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private static List<StateAndRef<DDRObjectState>> largestFirst(List<StateAndRef<DDRObjectState>> available, long required) {
+        List<StateAndRef<DDRObjectState>> selected = new ArrayList<>();
+        long claimed = 0;
+        for (int i = available.size() - 1; i >= 0 && claimed < required; i--) {
+            selected.add(available.get(i));
+            claimed += quantity(available.get(i));
+        }
+        return claimed >= required ? selected : null;
+    }
+
+    /**
+     * Explores the DDRs from the largest, each one being first included then excluded, and keeps the combination
+     * covering the amount with the smallest change not above {@code maxChange}. A branch is cut as soon as it cannot
+     * cover the amount anymore or its change is already above the best one. Including a DDR of the same amount as an
+     * excluded one would repeat a branch already explored, so it is skipped.
+     */
+    private static List<StateAndRef<DDRObjectState>> branchAndBound(List<StateAndRef<DDRObjectState>> available, long required, long maxChange) {
+        int size = available.size();
+        long[] values = new long[size];
+        long[] remaining = new long[size + 1];
+        for (int i = size - 1; i >= 0; i--) {
+            values[i] = quantity(available.get(size - 1 - i));
+            remaining[i] = remaining[i + 1] + values[i];
+        }
+        if (remaining[0] < required) return null;
+
+        boolean[] included = new boolean[size];
+        boolean[] best = null;
+        long bestChange = maxChange;
+        int bestCount = Integer.MAX_VALUE;
+        long claimed = 0;
+        int count = 0;
+        int depth = 0;
+        for (int step = 0; step < MAX_SEARCH_STEPS; step++) {
+            boolean backtrack = false;
+            if (claimed + remaining[depth] < required || claimed - required > bestChange) {
+                backtrack = true;
+            } else if (claimed >= required) {
+                long change = claimed - required;
+                if (best == null || change < bestChange || count < bestCount) {
+                    best = included.clone();
+                    bestChange = change;
+                    bestCount = count;
+                    if (change == 0) break;
+                }
+                backtrack = true;
+            }
+
+            if (backtrack) {
+                while (depth > 0 && !included[depth - 1]) depth--;
+                if (depth == 0) break;
+                included[depth - 1] = false;
+                claimed -= values[depth - 1];
+                count--;
+            } else if (depth > 0 && values[depth] == values[depth - 1] && !included[depth - 1]) {
+                depth++;
+            } else {
+                included[depth] = true;
+                claimed += values[depth];
+                count++;
+                depth++;
+            }
+        }
+        if (best == null) return null;
+
+        List<StateAndRef<DDRObjectState>> selected = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (best[i]) selected.add(available.get(size - 1 - i));
+        }
+        return selected;
+    }
+}
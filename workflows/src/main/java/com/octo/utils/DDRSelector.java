@@ -1,6 +1,8 @@
 package com.octo.utils;
 
 import co.paralleluniverse.fibers.Suspendable;
+import com.octo.corda_services.PipelineMetrics;
+import com.octo.metrics.PipelineStage;
 import com.octo.states.DDRObjectState;
 import net.corda.core.contracts.Amount;
 import net.corda.core.contracts.InsufficientBalanceException;
@@ -9,12 +11,13 @@ import net.corda.core.flows.FlowException;
 import net.corda.core.flows.FlowLogic;
 import net.corda.core.identity.Party;
 import net.corda.core.node.ServiceHub;
+import net.corda.core.node.services.StatesNotAvailableException;
 import net.corda.core.node.services.Vault;
 import net.corda.core.node.services.vault.PageSpecification;
 import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
 import net.corda.core.utilities.NonEmptySet;
 
-import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -59,53 +62,95 @@ public class DDRSelector {
         this.pageSize = pageSize;
     }
 
-    private boolean executeQuery(Amount requiredAmount, QueryCriteria criteria, UUID lockId, List<StateAndRef<DDRObjectState>> stateAndRefs) {
+    private boolean executeQuery(Amount<Currency> requiredAmount, QueryCriteria.VaultQueryCriteria vaultCriteria, Party owner,
+                                 DDRSelectionStrategy strategy, UUID lockId, List<StateAndRef<DDRObjectState>> stateAndRefs) {
         long requiredQuantity = requiredAmount.getQuantity();
         if (requiredQuantity == 0) return false;
 
+        List<StateAndRef<DDRObjectState>> candidates = DDRQueries.isMapped(serviceHub)
+                ? queryCandidates(vaultCriteria.and(DDRQueries.ownedBy(owner, requiredAmount.getToken())), requiredQuantity, strategy)
+                : DDRQueries.ownedByWithoutSchema(serviceHub, vaultCriteria, owner, requiredAmount.getToken());
+        if (candidates.isEmpty()) return false;
+        List<StateAndRef<DDRObjectState>> selected = strategy.select(candidates, requiredQuantity);
+        if (selected == null) return false;
+        try {
+            serviceHub.getVaultService().softLockReserve(lockId, NonEmptySet.copyOf(selected.stream().map(sar -> sar.getRef()).collect(Collectors.toList())));
+        } catch (StatesNotAvailableException e) {
+            // Reserved by a concurrent flow since the query
+            return false;
+        }
+        stateAndRefs.addAll(selected);
+        return true;
+    }
+
+    /**
+     * The smallest DDR covering the amount on its own, or up to a page of them for {@link DDRSelectionStrategy#SPREAD}
+     * to choose from, then the largest DDRs until the amount is covered, sorted by ascending quantity.
+     */
+    private List<StateAndRef<DDRObjectState>> queryCandidates(QueryCriteria criteria, long requiredQuantity, DDRSelectionStrategy strategy) {
+        int coveringCount = strategy == DDRSelectionStrategy.SPREAD ? pageSize : 1;
+        List<StateAndRef<DDRObjectState>> candidates = new ArrayList<>(serviceHub.getVaultService().queryBy(DDRObjectState.class,
+                criteria.and(DDRQueries.quantityAtLeast(requiredQuantity)), new PageSpecification(DEFAULT_PAGE_NUM, coveringCount),
+                DDRQueries.byQuantity(Sort.Direction.ASC)).getStates());
         long claimedQuantity = 0;
         int pageNumber = DEFAULT_PAGE_NUM;
         PageSpecification pageSpec;
         Vault.Page<DDRObjectState> results;
         do {
             pageSpec = new PageSpecification(pageNumber, pageSize);
-            results = serviceHub.getVaultService().queryBy(DDRObjectState.class, criteria, pageSpec);
+            results = serviceHub.getVaultService().queryBy(DDRObjectState.class, criteria, pageSpec, DDRQueries.byQuantity(Sort.Direction.DESC));
 
             for (StateAndRef<DDRObjectState> state : results.getStates()) {
-                stateAndRefs.add(state);
+                if (!candidates.contains(state)) candidates.add(state);
                 claimedQuantity += state.getState().getData().getAmount().getQuantity();
                 if (claimedQuantity >= requiredQuantity) break;
             }
             pageNumber++;
         } while (claimedQuantity < requiredQuantity && (pageSpec.getPageSize() * (pageNumber - 1)) <= results.getTotalStatesAvailable());
 
-        if (stateAndRefs.isEmpty()) return false;
-        if (claimedQuantity < requiredQuantity) return false;
-        serviceHub.getVaultService().softLockRelease(lockId, NonEmptySet.copyOf(stateAndRefs.stream().map(sar -> sar.getRef()).collect(Collectors.toList())));
-        return true;
+        candidates.sort(Comparator.comparingLong(state -> state.getState().getData().getAmount().getQuantity()));
+        return candidates;
     }
 
     @Suspendable
     public List<StateAndRef<DDRObjectState>> selectDDRs(Party owner, UUID lockId, Amount requiredAmount) throws FlowException {
+        return selectDDRs(owner, lockId, requiredAmount, DDRSelectionStrategy.DEFAULT);
+    }
+
+    @Suspendable
+    public List<StateAndRef<DDRObjectState>> selectDDRs(Party owner, UUID lockId, Amount<Currency> requiredAmount,
+                                                        DDRSelectionStrategy strategy) throws FlowException {
+        return selectDDRs(owner, lockId, requiredAmount, strategy, null);
+    }
+
+    /**
+     * Selects among the DDRs on the preferred notary if they cover the amount, otherwise among all DDRs of the owner.
+     */
+    @Suspendable
+    public List<StateAndRef<DDRObjectState>> selectDDRs(Party owner, UUID lockId, Amount<Currency> requiredAmount,
+                                                        DDRSelectionStrategy strategy, Party preferredNotary) throws FlowException {
 
-        QueryCriteria criteria = new QueryCriteria.VaultQueryCriteria()
-                .withSoftLockingCondition(new QueryCriteria.SoftLockingCondition(QueryCriteria.SoftLockingType.UNLOCKED_ONLY, Collections.emptyList()))
-                .withParticipants(Collections.singletonList(owner));
-//.withExactParticipants(Arrays.asList(getOurIdentity(), ownerBank));
+        QueryCriteria.VaultQueryCriteria criteria = new QueryCriteria.VaultQueryCriteria()
+                .withSoftLockingCondition(new QueryCriteria.SoftLockingCondition(QueryCriteria.SoftLockingType.UNLOCKED_AND_SPECIFIED,
+                        Collections.singletonList(lockId)));
 
         List<StateAndRef<DDRObjectState>> stateAndRefs = new ArrayList<>();
+        QueryCriteria.VaultQueryCriteria onNotaryCriteria = preferredNotary == null ? null
+                : criteria.withNotary(Collections.singletonList(preferredNotary));
         for (int retryCount = 1; retryCount <= maxRetries; retryCount++) {
-            if (executeQuery(requiredAmount, criteria, lockId, stateAndRefs)) break;
-            // TODO: Need to specify exactly why it fails. If because there's not enough balance, no need to retry
+            if (onNotaryCriteria != null && executeQuery(requiredAmount, onNotaryCriteria, owner, strategy, lockId, stateAndRefs))
+                return stateAndRefs;
+            if (executeQuery(requiredAmount, criteria, owner, strategy, lockId, stateAndRefs)) return stateAndRefs;
 
-            if (retryCount == maxRetries)
+            // Without enough DDRs, locked ones included, waiting for other flows will not help
+            if (DDRQueries.balance(serviceHub, owner, requiredAmount.getToken()) < requiredAmount.getQuantity())
                 throw new InsufficientBalanceException(requiredAmount);
 
-            stateAndRefs.clear();
-            int durationMillis = Collections.min(Arrays.asList(retrySleep << retryCount, retryCap / 2)) * (int) (1.0 + Math.random());
-            FlowLogic.sleep(Duration.ofMillis(durationMillis));
+            if (retryCount == maxRetries) break;
+            serviceHub.cordaService(PipelineMetrics.class).retry(PipelineStage.DDR_SELECTION);
+            FlowLogic.sleep(Utils.jitteredBackoff(retryCount, retrySleep, retryCap));
         }
-        return stateAndRefs;
+        throw new DDRContentionException(requiredAmount, maxRetries);
     }
 
     /*public static class InsufficientBalanceException extends RuntimeException {
@@ -0,0 +1,90 @@
+package com.octo.utils;
+
+import net.corda.core.serialization.CordaSerializable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How the quantity of an approved pledge is split into DDR Objects. Each DDR is an output of the issuance and a
+ * possible input of later transfers, so the policy trades the size of the issuance transaction against the number of
+ * inputs and change outputs of the transfers.
+ * <p>
+ * Every policy returns at most {@code maxCount} positive quantities adding up to the pledged quantity, largest first.
+ */
+@CordaSerializable
+public enum DenominationPolicy {
+
+    /**
+     * DDRs of {@code denomination}, and one DDR for the rest. The denomination is raised to a multiple of itself when
+     * more than {@code maxCount} DDRs would be needed.
+     */
+    TARGET_DENOMINATION {
+        @Override
+        public List<Long> split(long quantity, long denomination, int maxCount) {
+            long unit = denomination;
+            long perDDR = (quantity + maxCount - 1) / maxCount;
+            if (perDDR > unit) unit = (perDDR + denomination - 1) / denomination * denomination;
+            List<Long> quantities = new ArrayList<>();
+            for (long i = quantity / unit; i > 0; i--) quantities.add(unit);
+            if (quantity % unit > 0) quantities.add(quantity % unit);
+            return quantities;
+        }
+    },
+
+    /**
+     * DDRs of {@code denomination} times a power of two, one for each bit of the quantity counted in denominations,
+     * and one DDR for the rest. Any amount is then covered by few DDRs with a small change. The smallest DDRs are
+     * merged into one when there would be more than {@code maxCount}.
+     */
+    POWER_OF_TWO {
+        @Override
+        public List<Long> split(long quantity, long denomination, int maxCount) {
+            List<Long> quantities = new ArrayList<>();
+            long units = quantity / denomination;
+            for (long bit = Long.highestOneBit(units); bit > 0; bit >>>= 1) {
+                if ((units & bit) != 0) quantities.add(bit * denomination);
+            }
+            if (quantity % denomination > 0) quantities.add(quantity % denomination);
+            if (quantities.size() > maxCount) {
+                long rest = 0;
+                for (long tail : quantities.subList(maxCount - 1, quantities.size())) rest += tail;
+                quantities = new ArrayList<>(quantities.subList(0, maxCount - 1));
+                quantities.add(rest);
+            }
+            return quantities;
+        }
+    },
+
+    /**
+     * DDRs of even amounts, one for each {@code denomination} of the quantity but no more than {@code maxCount}. With
+     * the denomination set to the usual transfer amount, a transfer mostly consumes a single DDR.
+     */
+    BOUNDED_COUNT {
+        @Override
+        public List<Long> split(long quantity, long denomination, int maxCount) {
+            int count = (int) Math.max(1, Math.min(maxCount, quantity / denomination));
+            List<Long> quantities = new ArrayList<>(count);
+            long base = quantity / count;
+            long remainder = quantity % count;
+            for (int i = 0; i < count; i++) quantities.add(i < remainder ? base + 1 : base);
+            return quantities;
+        }
+    };
+
+    public static final DenominationPolicy DEFAULT = BOUNDED_COUNT;
+
+    /**
+     * Splits {@code quantity} into DDR quantities, the whole quantity as a single DDR when it is below the denomination.
+     */
+    public List<Long> denominate(long quantity, long denomination, int maxCount) {
+        if (quantity <= 0) throw new IllegalArgumentException("Quantity to denominate should be positive");
+        if (denomination <= 0) throw new IllegalArgumentException("Denomination should be positive");
+        if (maxCount < 1) throw new IllegalArgumentException("At least one DDR Object should be produced");
+        if (quantity <= denomination || maxCount == 1) return Collections.singletonList(quantity);
+        return split(quantity, denomination, maxCount);
+    }
+
+    protected abstract List<Long> split(long quantity, long denomination, int maxCount);
+}
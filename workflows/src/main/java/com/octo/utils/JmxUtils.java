@@ -0,0 +1,29 @@
+package com.octo.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers MBeans in the platform MBean server. An MBean already registered under the same name, e.g. by a node
+ * restarted in the same JVM during tests, is replaced.
+ */
+public class JmxUtils {
+
+    private static final Logger logger = LoggerFactory.getLogger(JmxUtils.class);
+
+    public static void register(Object mbean, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(mbean, objectName);
+        } catch (JMException e) {
+            logger.warn("Could not register MBean {}", name, e);
+        }
+    }
+}
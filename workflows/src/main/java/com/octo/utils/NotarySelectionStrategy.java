@@ -0,0 +1,65 @@
+package com.octo.utils;
+
+import net.corda.core.identity.Party;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * How the notary of new states is chosen among the notaries of the pool, for the transactions without inputs: the
+ * pledge and redeem requests and the intra-bank transfers. A transaction is notarised by the notary of its inputs,
+ * so spreading new states over the notaries spreads the notarisations that follow; transactions spending DDRs are
+ * notarised by the notary of the DDRs.
+ * <p>
+ * Every strategy takes the notaries sorted by name, so nodes configured alike make the same choices.
+ */
+public enum NotarySelectionStrategy {
+
+    /**
+     * Each notary in turn.
+     */
+    ROUND_ROBIN {
+        @Override
+        public Party select(List<Party> notaries, Party bank, long turn, ToDoubleFunction<Party> load) {
+            return notaries.get((int) Math.floorMod(turn, (long) notaries.size()));
+        }
+    },
+
+    /**
+     * The same notary for all the states of a bank, so its DDRs never need a notary change.
+     */
+    BANK_AFFINITY {
+        @Override
+        public Party select(List<Party> notaries, Party bank, long turn, ToDoubleFunction<Party> load) {
+            return notaries.get(Math.floorMod(bank.getName().hashCode(), notaries.size()));
+        }
+    },
+
+    /**
+     * The notary with the lowest observed latency, weighted by the notarisations in flight. Notaries not used yet
+     * come first.
+     */
+    LOWEST_LATENCY {
+        @Override
+        public Party select(List<Party> notaries, Party bank, long turn, ToDoubleFunction<Party> load) {
+            Party lowest = notaries.get(0);
+            double lowestLoad = load.applyAsDouble(lowest);
+            for (Party notary : notaries.subList(1, notaries.size())) {
+                double notaryLoad = load.applyAsDouble(notary);
+                if (notaryLoad < lowestLoad) {
+                    lowest = notary;
+                    lowestLoad = notaryLoad;
+                }
+            }
+            return lowest;
+        }
+    };
+
+    public static final NotarySelectionStrategy DEFAULT = ROUND_ROBIN;
+
+    /**
+     * Chooses the notary of the new states of the bank. {@code turn} increases with each choice and {@code load}
+     * gives the latency of a notary weighted by its notarisations in flight.
+     */
+    public abstract Party select(List<Party> notaries, Party bank, long turn, ToDoubleFunction<Party> load);
+}
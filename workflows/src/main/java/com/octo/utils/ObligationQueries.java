@@ -0,0 +1,66 @@
+package com.octo.utils;
+
+import com.octo.enums.DDRObligationStatus;
+import com.octo.enums.DDRObligationType;
+import com.octo.schemas.PersistentDDRObligationV2;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.VaultCustomQueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+/**
+ * Vault queries of unconsumed obligations on the indexed columns of {@link PersistentDDRObligationV2}, like
+ * {@link DDRQueries} for DDR Objects. Parties are compared by X.500 name.
+ */
+public class ObligationQueries {
+
+    private static final Field REQUESTER = field("requester");
+    private static final Field OWNER = field("owner");
+    private static final Field ISSUER = field("issuer");
+    private static final Field TYPE = field("type");
+    private static final Field STATUS = field("status");
+
+    public static QueryCriteria requestedBy(Party requester) {
+        return new VaultCustomQueryCriteria(Builder.equal(REQUESTER, requester.getName().toString()))
+                .and(new VaultCustomQueryCriteria(Builder.equal(OWNER, requester.getName().toString())));
+    }
+
+    public static QueryCriteria issuedBy(Party issuer) {
+        return new VaultCustomQueryCriteria(Builder.equal(ISSUER, issuer.getName().toString()));
+    }
+
+    public static QueryCriteria pending() {
+        return new VaultCustomQueryCriteria(Builder.equal(STATUS, DDRObligationStatus.REQUEST));
+    }
+
+    public static QueryCriteria pending(DDRObligationType type) {
+        return new VaultCustomQueryCriteria(Builder.equal(TYPE, type)).and(pending());
+    }
+
+    public static QueryCriteria approved(DDRObligationType type) {
+        return new VaultCustomQueryCriteria(Builder.equal(TYPE, type))
+                .and(new VaultCustomQueryCriteria(Builder.equal(STATUS, DDRObligationStatus.APPROVED)));
+    }
+
+    public static Sort byRequesterDate() {
+        return byRequesterDate(Sort.Direction.ASC);
+    }
+
+    public static Sort byRequesterDate(Sort.Direction direction) {
+        return new Sort(Collections.singletonList(new Sort.SortColumn(
+                new SortAttribute.Custom(PersistentDDRObligationV2.class, "requesterDate"), direction)));
+    }
+
+    private static Field field(String name) {
+        try {
+            return PersistentDDRObligationV2.class.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("No column " + name + " in PersistentDDRObligationV2", e);
+        }
+    }
+}
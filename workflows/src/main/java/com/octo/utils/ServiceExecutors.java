@@ -0,0 +1,83 @@
+package com.octo.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executors of the CordaServices, on daemon threads named after the service. CordaServices are not told when their
+ * node stops, so the executors not shut down by their service are shut down when the JVM stops.
+ */
+public class ServiceExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceExecutors.class);
+    private static final Set<ExecutorService> executors = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> executors.forEach(ExecutorService::shutdownNow),
+                "service-executors-shutdown"));
+    }
+
+    public static ExecutorService newSingleThreadExecutor(String threadName) {
+        return track(Executors.newSingleThreadExecutor(daemonThreads(threadName, false)));
+    }
+
+    /**
+     * Threads named {@code <threadNamePrefix>-1} to {@code <threadNamePrefix>-<threads>}.
+     */
+    public static ExecutorService newFixedThreadPool(int threads, String threadNamePrefix) {
+        return track(Executors.newFixedThreadPool(threads, daemonThreads(threadNamePrefix, true)));
+    }
+
+    public static ScheduledExecutorService newSingleThreadScheduledExecutor(String threadName) {
+        return track(Executors.newSingleThreadScheduledExecutor(daemonThreads(threadName, false)));
+    }
+
+    /**
+     * Logs the metrics summary every {@code intervalMillis}, nothing if the interval is 0 or less. A null summary is
+     * not logged.
+     */
+    public static void scheduleLogSummary(Logger metricsLogger, String threadName, long intervalMillis, Supplier<String> summary) {
+        if (intervalMillis <= 0) return;
+        newSingleThreadScheduledExecutor(threadName).scheduleAtFixedRate(() -> {
+            try {
+                String text = summary.get();
+                if (text != null) metricsLogger.info(text);
+            } catch (RuntimeException e) {
+                // An exception would cancel the next summaries
+                logger.warn("Could not log the summary of {}", threadName, e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Shuts down an executor its service is done with, the tasks already submitted still run.
+     */
+    public static void shutdown(ExecutorService executor) {
+        executors.remove(executor);
+        executor.shutdown();
+    }
+
+    private static <T extends ExecutorService> T track(T executor) {
+        executors.add(executor);
+        return executor;
+    }
+
+    private static ThreadFactory daemonThreads(String name, boolean numbered) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, numbered ? name + "-" + threadCount.incrementAndGet() : name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
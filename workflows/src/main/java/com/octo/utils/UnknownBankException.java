@@ -0,0 +1,14 @@
+package com.octo.utils;
+
+import net.corda.core.flows.FlowException;
+
+/**
+ * No node is routed yet for the bank code of a RIB. The identities of the network are synced in the background, so
+ * the transfer is expected to succeed later if the bank is part of the network.
+ */
+public class UnknownBankException extends FlowException {
+
+    public UnknownBankException(String rib) {
+        super("Can't find party for rib " + rib + ", bank identities are being synced");
+    }
+}
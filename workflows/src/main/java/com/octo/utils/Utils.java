@@ -1,34 +1,56 @@
 package com.octo.utils;
 
 import co.paralleluniverse.fibers.Suspendable;
+import com.octo.corda_services.DDRTokenPool;
+import com.octo.corda_services.NotaryPool;
+import com.octo.corda_services.ObligationCache;
+import com.octo.corda_services.PipelineMetrics;
+import com.octo.corda_services.RIBService;
+import com.octo.metrics.PipelineStage;
 import com.octo.states.DDRObjectState;
 import com.octo.states.DDRObligationState;
 import net.corda.core.contracts.*;
-import net.corda.core.flows.CollectSignaturesFlow;
-import net.corda.core.flows.FlowException;
-import net.corda.core.flows.FlowLogic;
-import net.corda.core.flows.FlowSession;
-import net.corda.core.identity.CordaX500Name;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
 import net.corda.core.identity.Party;
 import net.corda.core.node.ServiceHub;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.node.services.vault.PageSpecification;
 import net.corda.core.node.services.vault.QueryCriteria;
 import net.corda.core.node.services.vault.QueryCriteria.LinearStateQueryCriteria;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.NonEmptySet;
 
+import java.time.Duration;
 import java.util.*;
 
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_SIZE;
+
 public class Utils {
 
-    public static final String CENTRAL_BANK_NAME = "O=CentralBank,L=New York,C=US";
+    private static final int POOL_MAX_RETRIES = 8;
+    private static final long POOL_RETRY_SLEEP_MS = 50;
+    private static final long POOL_RETRY_CAP_MS = 2000;
 
     public static Party getCentralBankParty(ServiceHub serviceHub) throws FlowException {
-        final Party centralBank = serviceHub.getNetworkMapCache().getPeerByLegalName(CordaX500Name.parse(CENTRAL_BANK_NAME));
+        final Party centralBank = serviceHub.cordaService(RIBService.class).getCentralBank();
         if(centralBank == null)
-            throw new FlowException("Could not find Central Bank Party with name " + CENTRAL_BANK_NAME);
+            throw new FlowException("Could not find Central Bank Party with name " + RIBService.CENTRAL_BANK_NAME);
         return centralBank;
     }
 
+    /**
+     * Notary of the new states of the bank, chosen among the notaries of the {@link NotaryPool}.
+     */
+    public static Party getNotaryParty(ServiceHub serviceHub, Party bank) throws FlowException {
+        final Party notary = serviceHub.cordaService(NotaryPool.class).choose(bank);
+        if(notary == null)
+            throw new FlowException("Could not find a notary in the network map");
+        return notary;
+    }
+
     public static FlowLogic<SignedTransaction> verifyAndCollectSignatures(TransactionBuilder txBuilder,ServiceHub serviceHub ,FlowSession ...signers)
             throws TransactionResolutionException, TransactionVerificationException, AttachmentResolutionException {
 
@@ -38,17 +60,202 @@ public class Utils {
     }
 
     public static StateAndRef<DDRObligationState> getObligationByExternalId(String externalId, ServiceHub serviceHub) throws FlowException {
+        ObligationCache cache = serviceHub.cordaService(ObligationCache.class);
+        StateAndRef<DDRObligationState> stateAndRef = cache.isEnabled() ? cache.get(externalId, serviceHub)
+                : queryObligationByExternalId(externalId, serviceHub);
+        if(stateAndRef == null) throw new FlowException("No obligation is found with external id " + externalId);
+        return stateAndRef;
+    }
+
+    /**
+     * Unconsumed obligation of the external id from the vault, or null, without going through the {@link ObligationCache}.
+     */
+    public static StateAndRef<DDRObligationState> queryObligationByExternalId(String externalId, ServiceHub serviceHub) {
         QueryCriteria criteria = new LinearStateQueryCriteria().withExternalId(Collections.singletonList(externalId));
         List<StateAndRef<DDRObligationState>> stateAndRefs = serviceHub.getVaultService()
                 .queryBy(DDRObligationState.class, criteria).getStates();
-        if(stateAndRefs.isEmpty()) throw new FlowException("No obligation is found with external id " + externalId);
-        return stateAndRefs.get(0);
+        return stateAndRefs.isEmpty() ? null : stateAndRefs.get(0);
+    }
+
+    /**
+     * Unconsumed obligations of the given external ids in one vault query, an id may be missing from the result.
+     */
+    public static List<StateAndRef<DDRObligationState>> getObligationsByExternalIds(List<String> externalIds, ServiceHub serviceHub) {
+        if (externalIds.isEmpty()) return Collections.emptyList();
+        QueryCriteria criteria = new LinearStateQueryCriteria().withExternalId(externalIds);
+        return serviceHub.getVaultService().queryBy(DDRObligationState.class, criteria,
+                new PageSpecification(DEFAULT_PAGE_NUM, Math.max(externalIds.size(), DEFAULT_PAGE_SIZE))).getStates();
     }
 
     @Suspendable
     public static List<StateAndRef<DDRObjectState>> selectDDRs(Party owner, Amount<Currency> amount, ServiceHub serviceHub, UUID lockId) throws FlowException {
-        DDRSelector selector = new DDRSelector(serviceHub);
-        return selector.selectDDRs(owner, lockId, amount);
+        return selectDDRs(owner, amount, DDRSelectionStrategy.DEFAULT, serviceHub, lockId);
+    }
+
+    @Suspendable
+    public static List<StateAndRef<DDRObjectState>> selectDDRs(Party owner, Amount<Currency> amount, DDRSelectionStrategy strategy,
+                                                               ServiceHub serviceHub, UUID lockId) throws FlowException {
+        return selectDDRs(owner, amount, strategy, null, serviceHub, lockId);
+    }
+
+    /**
+     * Selects DDRs of the owner, among those on the preferred notary if they cover the amount, otherwise among all
+     * of them. Without a preferred notary, all DDRs are candidates.
+     */
+    @Suspendable
+    public static List<StateAndRef<DDRObjectState>> selectDDRs(Party owner, Amount<Currency> amount, DDRSelectionStrategy strategy,
+                                                               Party preferredNotary, ServiceHub serviceHub, UUID lockId) throws FlowException {
+        PipelineMetrics metrics = serviceHub.cordaService(PipelineMetrics.class);
+        DDRTokenPool pool = serviceHub.cordaService(DDRTokenPool.class);
+        long start = System.nanoTime();
+        try {
+            List<StateAndRef<DDRObjectState>> ddrs = pool.isEnabled() && pool.isStarted()
+                    ? reserveFromPool(pool, owner, amount, strategy, preferredNotary, serviceHub, lockId)
+                    : new DDRSelector(serviceHub).selectDDRs(owner, lockId, amount, strategy, preferredNotary);
+            metrics.record(PipelineStage.DDR_SELECTION, start);
+            return ddrs;
+        } catch (FlowException | RuntimeException e) {
+            metrics.error(PipelineStage.DDR_SELECTION);
+            throw e;
+        }
+    }
+
+    /**
+     * Selects from the in-memory DDR pool. When the DDRs needed are reserved by concurrent flows, waits for them to
+     * be consumed or released with a randomised exponential backoff.
+     */
+    @Suspendable
+    private static List<StateAndRef<DDRObjectState>> reserveFromPool(DDRTokenPool pool, Party owner, Amount<Currency> amount,
+                                                                     DDRSelectionStrategy strategy, Party preferredNotary,
+                                                                     ServiceHub serviceHub, UUID lockId) throws FlowException {
+        for (int retryCount = 1; retryCount <= POOL_MAX_RETRIES; retryCount++) {
+            List<StateAndRef<DDRObjectState>> ddrs = pool.reserve(owner, amount, strategy, preferredNotary, lockId, serviceHub);
+            if (ddrs != null) return ddrs;
+            if (retryCount == POOL_MAX_RETRIES) break;
+            serviceHub.cordaService(PipelineMetrics.class).retry(PipelineStage.DDR_SELECTION);
+            FlowLogic.sleep(jitteredBackoff(retryCount, POOL_RETRY_SLEEP_MS, POOL_RETRY_CAP_MS));
+        }
+        throw new DDRContentionException(amount, POOL_MAX_RETRIES);
+    }
+
+    /**
+     * Selects DDRs of the owner for a transaction notarised by the notary. DDRs already on the notary are preferred,
+     * the others selected are moved to it with {@link NotaryChangeFlow} and soft locked again for the lock id. Must be
+     * called by a participant of the DDRs, their owner or the central bank.
+     */
+    @Suspendable
+    public static List<StateAndRef<DDRObjectState>> selectDDRsOnNotary(FlowLogic<?> flow, Party owner, Amount<Currency> amount,
+                                                                       DDRSelectionStrategy strategy, Party notary,
+                                                                       UUID lockId) throws FlowException {
+        ServiceHub serviceHub = flow.getServiceHub();
+        NotaryPool notaries = serviceHub.cordaService(NotaryPool.class);
+        // With a single notary, every DDR is on it already
+        Party preferredNotary = notaries.getNotaries().size() > 1 ? notary : null;
+        List<StateAndRef<DDRObjectState>> ddrs = selectDDRs(owner, amount, strategy, preferredNotary, serviceHub, lockId);
+        List<StateAndRef<DDRObjectState>> onNotary = new ArrayList<>(ddrs.size());
+        for (StateAndRef<DDRObjectState> ddr : ddrs) {
+            if (ddr.getState().getNotary().equals(notary)) {
+                onNotary.add(ddr);
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            StateAndRef<DDRObjectState> moved = (StateAndRef<DDRObjectState>) flow.subFlow(new NotaryChangeFlow<>(ddr, notary,
+                    AbstractStateReplacementFlow.Instigator.Companion.tracker()));
+            serviceHub.getVaultService().softLockReserve(lockId, NonEmptySet.of(moved.getRef()));
+            notaries.notaryChanged(notary);
+            onNotary.add(moved);
+        }
+        return onNotary;
+    }
+
+    /**
+     * Selects DDRs of the owner for a transaction whose notary is not set by other inputs, to be notarised by the
+     * notary of the DDRs selected. When the DDRs selected are on several notaries, they are selected again among
+     * those on the notary holding most of the amount, and the others are moved to it.
+     */
+    @Suspendable
+    public static List<StateAndRef<DDRObjectState>> selectDDRsToSpend(FlowLogic<?> flow, Party owner, Amount<Currency> amount,
+                                                                      DDRSelectionStrategy strategy, UUID lockId) throws FlowException {
+        ServiceHub serviceHub = flow.getServiceHub();
+        List<StateAndRef<DDRObjectState>> ddrs = selectDDRs(owner, amount, strategy, serviceHub, lockId);
+        Map<Party, Long> amountByNotary = new HashMap<>();
+        ddrs.forEach(ddr -> amountByNotary.merge(ddr.getState().getNotary(), ddr.getState().getData().getAmount().getQuantity(), Long::sum));
+        if (amountByNotary.size() == 1) return ddrs;
+
+        Party notary = Collections.max(amountByNotary.entrySet(), Map.Entry.comparingByValue()).getKey();
+        releaseDDRs(serviceHub, ddrs, lockId);
+        return selectDDRsOnNotary(flow, owner, amount, strategy, notary, lockId);
+    }
+
+    /**
+     * Ends the DDR pool reservations of a failed flow, so other flows can select its DDRs without waiting for the
+     * reservations to expire. The soft locks are released by the node when the flow ends.
+     */
+    public static void releaseReservations(ServiceHub serviceHub, UUID lockId) {
+        serviceHub.cordaService(DDRTokenPool.class).release(lockId);
+    }
+
+    /**
+     * Releases the DDRs selected for the lock id, so other flows can select them.
+     */
+    public static void releaseDDRs(ServiceHub serviceHub, Collection<StateAndRef<DDRObjectState>> ddrs, UUID lockId) {
+        if (ddrs.isEmpty()) return;
+        Set<StateRef> refs = new HashSet<>();
+        ddrs.forEach(ddr -> refs.add(ddr.getRef()));
+        serviceHub.getVaultService().softLockRelease(lockId, NonEmptySet.copyOf(refs));
+        serviceHub.cordaService(DDRTokenPool.class).release(ddrs, lockId);
+    }
+
+    /**
+     * Delay before retry {@code retryCount}: doubled at each retry up to the cap, then drawn between half and all of
+     * it, so flows that collided do not retry at the same time again.
+     */
+    public static Duration jitteredBackoff(int retryCount, long sleepMillis, long capMillis) {
+        long durationMillis = Math.min(sleepMillis << retryCount, capMillis);
+        return Duration.ofMillis(durationMillis / 2 + (long) (Math.random() * (durationMillis / 2 + 1)));
+    }
+
+    /**
+     * Runs the sub flow of a pipeline stage, e.g. signature collection, and records its duration.
+     */
+    @Suspendable
+    public static <T> T timedSubFlow(FlowLogic<?> flow, PipelineStage stage, FlowLogic<T> subFlow) throws FlowException {
+        PipelineMetrics metrics = flow.getServiceHub().cordaService(PipelineMetrics.class);
+        long start = System.nanoTime();
+        try {
+            T result = flow.subFlow(subFlow);
+            metrics.record(stage, start);
+            return result;
+        } catch (FlowException | RuntimeException e) {
+            metrics.error(stage);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as FinalityFlow, but the transaction is notarised first with its own sub flow, so notarisation and
+     * finality (recording and broadcasting) are measured separately. FinalityFlow does not notarise again a transaction
+     * already signed by its notary.
+     */
+    @Suspendable
+    public static SignedTransaction notariseAndFinalise(FlowLogic<?> flow, SignedTransaction stx, Collection<FlowSession> sessions,
+                                                        StatesToRecord statesToRecord) throws FlowException {
+        SignedTransaction notarisedTx = stx;
+        if (!stx.getInputs().isEmpty() || !stx.getReferences().isEmpty() || stx.getTx().getTimeWindow() != null) {
+            NotaryPool notaries = flow.getServiceHub().cordaService(NotaryPool.class);
+            Party notary = stx.getNotary();
+            long start = notaries.started(notary);
+            List<? extends TransactionSignature> notarySignatures;
+            try {
+                notarySignatures = timedSubFlow(flow, PipelineStage.NOTARISATION, new NotaryFlow.Client(stx));
+                notaries.notarised(notary, start);
+            } catch (FlowException | RuntimeException e) {
+                notaries.failed(notary);
+                throw e;
+            }
+            notarisedTx = stx.withAdditionalSignatures(new ArrayList<>(notarySignatures));
+        }
+        return timedSubFlow(flow, PipelineStage.FINALITY, new FinalityFlow(notarisedTx, sessions, statesToRecord));
     }
 
     public static String generateReference(String type){
@@ -1,49 +1,54 @@
 package com.octo.utils;
 
 import com.octo.builders.DDRObjectStateBuilder;
+import com.octo.contracts.DDRObligationContract;
 import com.octo.states.DDRObjectState;
 import com.octo.states.DDRObligationState;
-import net.corda.core.contracts.Amount;
+import net.corda.core.node.ServiceHub;
 
-import java.util.Currency;
 import java.util.Date;
 import java.util.List;
 
 import static java.util.stream.Collectors.toList;
 
 public class UtilsDDR {
+
+    public static final String DENOMINATION_POLICY = "ddr.denomination.policy";
+    public static final String DENOMINATION_QUANTITY = "ddr.denomination.quantity";
+    public static final String DENOMINATION_MAX_COUNT = "ddr.denomination.maxCount";
+
+    private static final long DEFAULT_DENOMINATION = 1000;
+    private static final int DEFAULT_MAX_COUNT = 100;
+
     /**
-     * Produces DDR Objects of 10DH, then if there's a rest it produces additional one of rest value
-     * Example: For quantity 2500 of tokens (That is 15DH), will produce 3 DDRObjects, two of 10DH and other of 5DH.
-     *
-     * @return
+     * Produces the DDR Objects issued for an approved pledge, with the policy and denomination of the CorDapp config.
      */
-    /*public static List<DDRObjectState> produceDDRObjects(DDRObligationState obligationState) {
-        Amount<Currency> amount = obligationState.getAmount();
-        long quantity = amount.getQuantity(); // For exmaple 1000 token
-        DDRObjectStateBuilder builder = new DDRObjectStateBuilder();
-        builder.issuer(obligationState.getIssuer()).issuerDate(new Date()).owner(obligationState.getOwner())
-                .currency(obligationState.getCurrency());
+    public static List<DDRObjectState> produceDDRObjects(DDRObligationState obligationState, ServiceHub serviceHub) {
+        DenominationPolicy policy = DenominationPolicy.valueOf(
+                ConfigUtils.getString(serviceHub, DENOMINATION_POLICY, DenominationPolicy.DEFAULT.name()));
+        return produceDDRObjects(obligationState, policy, serviceHub);
+    }
 
-        return quantity <= 1000 ? singletonList(builder.amount(quantity).build()) :
-                amount.splitEvenly((int) (quantity/1000)).stream().map(am -> builder.amount(am.getQuantity()).build()).collect(toList());
-    }*/
+    public static List<DDRObjectState> produceDDRObjects(DDRObligationState obligationState, DenominationPolicy policy, ServiceHub serviceHub) {
+        return produceDDRObjects(obligationState, policy,
+                ConfigUtils.getLong(serviceHub, DENOMINATION_QUANTITY, DEFAULT_DENOMINATION),
+                ConfigUtils.getInt(serviceHub, DENOMINATION_MAX_COUNT, DEFAULT_MAX_COUNT));
+    }
 
-    public static List<DDRObjectState> produceDDRObjects(DDRObligationState obligationState) {
-        Amount<Currency> amount = obligationState.getAmount();
-        long quantity = amount.getQuantity() / 100; // For exmaple 1000 token
+    /**
+     * Splits the pledged amount with the policy. The number of DDR Objects is kept within what the contract accepts
+     * for a pledge approval.
+     * Example: 10000 tokens (100DH) with {@link DenominationPolicy#BOUNDED_COUNT} and a denomination of 1000 produce
+     * 10 DDR Objects of 10DH.
+     */
+    public static List<DDRObjectState> produceDDRObjects(DDRObligationState obligationState, DenominationPolicy policy,
+                                                         long denomination, int maxCount) {
         DDRObjectStateBuilder builder = new DDRObjectStateBuilder();
         builder.issuer(obligationState.getIssuer()).issuerDate(new Date()).owner(obligationState.getOwner())
                 .currency(obligationState.getCurrency());
 
-        long numberOfDDR = 1;
-        if(quantity >= 10 && quantity <= 999)
-            numberOfDDR = quantity / 10;
-        else if (quantity > 999){
-            String numberAsStr = String.valueOf(quantity).substring(0, 3);
-            numberOfDDR = Long.parseLong(numberAsStr);
-        }
-
-        return amount.splitEvenly((int) numberOfDDR).stream().map(am -> builder.amount(am.getQuantity()).build()).collect(toList());
+        int boundedCount = Math.min(maxCount, DDRObligationContract.MAX_ISSUED_DDR_OBJECTS);
+        return policy.denominate(obligationState.getAmount().getQuantity(), denomination, boundedCount).stream()
+                .map(quantity -> builder.amount(quantity).build()).collect(toList());
     }
 }
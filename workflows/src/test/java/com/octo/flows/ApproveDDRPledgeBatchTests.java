@@ -0,0 +1,105 @@
+package com.octo.flows;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.enums.DDRObligationStatus;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.FlowException;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+
+public class ApproveDDRPledgeBatchTests {
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode b = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+    private final List<String> externalIds = new ArrayList<>();
+    private final Currency currency = Currency.getInstance("MAD");
+
+    public ApproveDDRPledgeBatchTests() {
+        for (StartedMockNode bank : ImmutableList.of(a, b))
+            bank.registerInitiatedFlow(ApproveDDRPledgeBatch.Responder.class);
+        bc.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+    }
+
+    @Before
+    public void setup() throws ExecutionException, InterruptedException {
+        network.runNetwork();
+        for (StartedMockNode bank : ImmutableList.of(a, b, a)) {
+            CordaFuture<SignedTransaction> future = bank.startFlow(new RequestDDRPledge.Initiator(new Amount<>(3000, currency)));
+            network.runNetwork();
+            externalIds.add(((DDRObligationState) future.get().getTx().getOutput(0)).getExternalId());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Test
+    public void flowApprovesThePledgesOfEachBankInOneTransaction() throws Exception {
+        CordaFuture<List<SignedTransaction>> future = bc.startFlow(new ApproveDDRPledgeBatch.Initiator(externalIds));
+        network.runNetwork();
+        List<SignedTransaction> approvals = future.get();
+
+        assertEquals(2, approvals.size());
+        assertEquals(2, approvals.get(0).getTx().getInputs().size());
+        assertEquals(1, approvals.get(1).getTx().getInputs().size());
+        for (StartedMockNode node : ImmutableList.of(a, b, bc)) {
+            node.transaction(() -> {
+                List<StateAndRef<DDRObligationState>> pledges = node.getServices().getVaultService().queryBy(DDRObligationState.class).getStates();
+                pledges.forEach(pledge -> assertEquals(DDRObligationStatus.APPROVED, pledge.getState().getData().getStatus()));
+                return null;
+            });
+        }
+        assertEquals(6000, ownedQuantity(a));
+        assertEquals(3000, ownedQuantity(b));
+    }
+
+    @Test
+    public void flowApprovesNothingIfAPledgeIsUnknown() throws Exception {
+        externalIds.add("unknownExternalId");
+        CordaFuture<List<SignedTransaction>> future = bc.startFlow(new ApproveDDRPledgeBatch.Initiator(externalIds));
+        network.runNetwork();
+
+        exception.expectCause(instanceOf(FlowException.class));
+        try {
+            future.get();
+        } finally {
+            assertEquals(0, ownedQuantity(a));
+        }
+    }
+
+    private long ownedQuantity(StartedMockNode bank) {
+        return bank.transaction(() -> bank.getServices().getVaultService().queryBy(DDRObjectState.class).getStates().stream()
+                .mapToLong(ddr -> ddr.getState().getData().getAmount().getQuantity()).sum());
+    }
+}
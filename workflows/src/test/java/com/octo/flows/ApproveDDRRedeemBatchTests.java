@@ -0,0 +1,100 @@
+package com.octo.flows;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.enums.DDRObligationStatus;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.FlowException;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+
+public class ApproveDDRRedeemBatchTests {
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+    private final Currency currency = Currency.getInstance("MAD");
+    private Party bankA;
+
+    public ApproveDDRRedeemBatchTests() {
+        a.registerInitiatedFlow(ApproveDDRRedeemBatch.Responder.class);
+        a.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+        bc.registerInitiatedFlow(RequestDDRRedeem.Responder.class);
+        bc.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+    }
+
+    @Before
+    public void setup() throws ExecutionException, InterruptedException {
+        network.runNetwork();
+        bankA = a.getInfo().getLegalIdentities().get(0);
+
+        CordaFuture<SignedTransaction> futurePledge = a.startFlow(new RequestDDRPledge.Initiator(new Amount<>(1500, currency)));
+        network.runNetwork();
+        String externalPledgeId = ((DDRObligationState) futurePledge.get().getTx().getOutput(0)).getExternalId();
+        bc.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId));
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Test
+    public void flowApprovesAllPendingRedeemsInOneTransactionWithOneChange() throws Exception {
+        for (long redeem : new long[]{300, 250, 450}) {
+            a.startFlow(new RequestDDRRedeem.Initiator(new Amount<>(redeem, currency)));
+            network.runNetwork();
+        }
+
+        CordaFuture<SignedTransaction> future = bc.startFlow(new ApproveDDRRedeemBatch.Initiator(bankA));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+
+        assertEquals(3, signedTx.getTx().outputsOfType(DDRObligationState.class).size());
+        assertEquals(1, signedTx.getTx().outputsOfType(DDRObjectState.class).size());
+        a.transaction(() -> {
+            List<StateAndRef<DDRObligationState>> obligations = a.getServices().getVaultService().queryBy(DDRObligationState.class).getStates();
+            obligations.forEach(obligation -> assertEquals(DDRObligationStatus.APPROVED, obligation.getState().getData().getStatus()));
+            long balance = a.getServices().getVaultService().queryBy(DDRObjectState.class).getStates().stream()
+                    .mapToLong(ddr -> ddr.getState().getData().getAmount().getQuantity()).sum();
+            assertEquals(500, balance);
+            return null;
+        });
+    }
+
+    @Test
+    public void flowFailsWithoutPendingRedeems() throws Exception {
+        CordaFuture<SignedTransaction> future = bc.startFlow(new ApproveDDRRedeemBatch.Initiator(bankA));
+        network.runNetwork();
+
+        exception.expectCause(instanceOf(FlowException.class));
+        future.get();
+    }
+}
@@ -49,6 +49,9 @@ public class AtomicExchangeDDRTests {
     @Before
     public void setup() throws ExecutionException, InterruptedException {
         network.runNetwork();
+        // Bank codes are synced in the background by RIBService, the test syncs them right away
+        a.startFlow(new SyncIdentitiesFlow.Initiator());
+        network.runNetwork();
 
         RequestDDRPledge.Initiator flowPledge = new RequestDDRPledge.Initiator(amount3200);
         CordaFuture<SignedTransaction> futurePledge = a.startFlow(flowPledge);
@@ -1,14 +1,17 @@
 package com.octo.flows;
 
 import com.google.common.collect.ImmutableList;
+import com.octo.corda_services.ObligationCache;
 import com.octo.enums.DDRObligationStatus;
 import com.octo.enums.DDRObligationType;
+import com.octo.metrics.ObligationCacheMetrics;
 import com.octo.states.DDRObligationState;
 import net.corda.core.concurrent.CordaFuture;
 import net.corda.core.contracts.Amount;
 import net.corda.core.contracts.ContractState;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.TransactionState;
+import net.corda.core.flows.FlowException;
 import net.corda.core.identity.CordaX500Name;
 import net.corda.core.node.services.Vault;
 import net.corda.core.node.services.vault.QueryCriteria;
@@ -28,6 +31,7 @@ import java.util.Currency;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 
 public class CancelDDRPledgeTests {
@@ -139,4 +143,19 @@ public class CancelDDRPledgeTests {
         }
     }
 
+    @Test
+    public void pledgeIsFoundInTheObligationCacheAndRemovedOnceCancelled() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new CancelDDRPledge.Initiator(externalId));
+        network.runNetwork();
+        future.get();
+        ObligationCacheMetrics metrics = a.getServices().cordaService(ObligationCache.class).getMetrics();
+        assertEquals(1, metrics.getHits());
+
+        exception.expectCause(instanceOf(FlowException.class));
+        exception.expectMessage("No obligation is found with external id " + externalId);
+        CordaFuture<SignedTransaction> secondFuture = a.startFlow(new CancelDDRPledge.Initiator(externalId));
+        network.runNetwork();
+        secondFuture.get();
+    }
+
 }
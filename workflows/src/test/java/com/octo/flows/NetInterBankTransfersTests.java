@@ -0,0 +1,185 @@
+package com.octo.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.octo.builders.InterBankTransferStateBuilder;
+import com.octo.contracts.InterBankTransferContract;
+import com.octo.corda_services.InterBankNettingService;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import com.octo.states.InterBankTransferState;
+import com.octo.utils.Utils;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.flows.*;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NetInterBankTransfersTests {
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode b = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+    private final Currency mad = Currency.getInstance("MAD");
+    private Party partyA;
+    private Party partyB;
+
+    public NetInterBankTransfersTests() {
+        for (StartedMockNode node : ImmutableList.of(a, b)) {
+            node.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+            node.registerInitiatedFlow(NetInterBankTransfers.Responder.class);
+        }
+        bc.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        bc.registerInitiatedFlow(NetInterBankTransfers.Responder.class);
+        b.registerInitiatedFlow(ExtraTransferInitiator.class, NetInterBankTransfers.Responder.class);
+        bc.registerInitiatedFlow(ExtraTransferInitiator.class, NetInterBankTransfers.Responder.class);
+    }
+
+    @Before
+    public void setup() throws ExecutionException, InterruptedException {
+        network.runNetwork();
+        partyA = a.getInfo().getLegalIdentities().get(0);
+        partyB = b.getInfo().getLegalIdentities().get(0);
+        pledge(a, new Amount<>(100000, mad));
+        pledge(b, new Amount<>(100000, mad));
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    private void pledge(StartedMockNode node, Amount<Currency> amount) throws ExecutionException, InterruptedException {
+        CordaFuture<SignedTransaction> futurePledge = node.startFlow(new RequestDDRPledge.Initiator(amount));
+        network.runNetwork();
+        String externalPledgeId = ((DDRObligationState) futurePledge.get().getTx().getOutput(0)).getExternalId();
+        bc.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId));
+        network.runNetwork();
+    }
+
+    private InterBankTransferStateBuilder transfer(Party sender, Party receiver, long quantity, String reference) {
+        return new InterBankTransferStateBuilder().senderRIB("sender" + reference).receiverRIB("receiver" + reference)
+                .senderBank(sender).receiverBank(receiver).amount(new Amount<>(quantity, mad)).executionDate(new Date())
+                .externalId(reference);
+    }
+
+    private long ddrAmountOf(SignedTransaction stx, Party owner) {
+        return stx.getTx().outputsOfType(DDRObjectState.class).stream().filter(ddr -> ddr.getOwner().equals(owner))
+                .mapToLong(ddr -> ddr.getAmount().getQuantity()).sum();
+    }
+
+    @Test
+    public void flowRecordsATransactionInAllPartiesTransactionStorages() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new NetInterBankTransfers.Initiator(partyB,
+                new ArrayList<>(Arrays.asList(transfer(partyA, partyB, 500, "INTER1"), transfer(partyA, partyB, 700, "INTER2")))));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+        for (StartedMockNode node : ImmutableList.of(a, b, bc)) {
+            assertEquals(signedTx, node.getServices().getValidatedTransactions().getTransaction(signedTx.getId()));
+        }
+        assertEquals(2, signedTx.getTx().outputsOfType(InterBankTransferState.class).size());
+        assertEquals(1200, ddrAmountOf(signedTx, partyB));
+    }
+
+    @Test
+    public void opposingTransfersOnlyMoveTheNetAmount() throws Exception {
+        CompletableFuture<SignedTransaction> queuedByB = b.getServices().cordaService(InterBankNettingService.class)
+                .submit(transfer(partyB, partyA, 300, "INTER3"));
+        CordaFuture<SignedTransaction> future = a.startFlow(new NetInterBankTransfers.Initiator(partyB,
+                new ArrayList<>(Collections.singletonList(transfer(partyA, partyB, 500, "INTER4")))));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+
+        assertEquals(2, signedTx.getTx().outputsOfType(InterBankTransferState.class).size());
+        assertEquals(200, ddrAmountOf(signedTx, partyB));
+        assertTrue(signedTx.getTx().outputsOfType(DDRObjectState.class).stream().noneMatch(ddr -> ddr.getOwner().equals(partyB)
+                && ddr.getAmount().getQuantity() != 200));
+        assertEquals(signedTx, queuedByB.get());
+    }
+
+    @Test
+    public void counterpartyProvidesDDRsWhenItOwesTheNetAmount() throws Exception {
+        CompletableFuture<SignedTransaction> queuedByB = b.getServices().cordaService(InterBankNettingService.class)
+                .submit(transfer(partyB, partyA, 900, "INTER5"));
+        CordaFuture<SignedTransaction> future = a.startFlow(new NetInterBankTransfers.Initiator(partyB,
+                new ArrayList<>(Collections.singletonList(transfer(partyA, partyB, 400, "INTER6")))));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+
+        assertEquals(500, ddrAmountOf(signedTx, partyA));
+        assertTrue(signedTx.getTx().getInputs().size() > 0);
+        assertEquals(signedTx, queuedByB.get());
+    }
+
+    @Test
+    public void counterpartyRefusesATransferItDidNotAgree() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new ExtraTransferInitiator(partyB,
+                transfer(partyA, partyB, 500, "INTER7"), transfer(partyB, partyA, 500, "INTER8")));
+        network.runNetwork();
+
+        exception.expectCause(instanceOf(FlowException.class));
+        future.get();
+    }
+
+    /**
+     * Nets a transfer with a made-up transfer from the counterparty, so that no DDR is moved.
+     */
+    @InitiatingFlow
+    public static class ExtraTransferInitiator extends FlowLogic<SignedTransaction> {
+
+        private final Party counterparty;
+        private final InterBankTransferStateBuilder transfer;
+        private final InterBankTransferStateBuilder extraTransfer;
+
+        public ExtraTransferInitiator(Party counterparty, InterBankTransferStateBuilder transfer, InterBankTransferStateBuilder extraTransfer) {
+            this.counterparty = counterparty;
+            this.transfer = transfer;
+            this.extraTransfer = extraTransfer;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            Party centralBank = Utils.getCentralBankParty(getServiceHub());
+            FlowSession counterpartySession = initiateFlow(counterparty);
+            counterpartySession.sendAndReceive(List.class, Collections.singletonList(transfer));
+
+            TransactionBuilder txBuilder = new TransactionBuilder(getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0))
+                    .addCommand(new InterBankTransferContract.InterBankTransferCommands.NettedBankTransfer(),
+                            Arrays.asList(getOurIdentity().getOwningKey(), counterparty.getOwningKey(), centralBank.getOwningKey()))
+                    .addOutputState(transfer.build())
+                    .addOutputState(extraTransfer.build());
+            txBuilder.verify(getServiceHub());
+            FlowSession centralBankSession = initiateFlow(centralBank);
+            SignedTransaction signedTx = subFlow(new CollectSignaturesFlow(getServiceHub().signInitialTransaction(txBuilder),
+                    Arrays.asList(centralBankSession, counterpartySession)));
+            return subFlow(new FinalityFlow(signedTx, Arrays.asList(centralBankSession, counterpartySession)));
+        }
+    }
+}
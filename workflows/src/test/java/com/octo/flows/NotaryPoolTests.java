@@ -0,0 +1,98 @@
+package com.octo.flows;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.corda_services.NotaryPool;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkNotarySpec;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class NotaryPoolTests {
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )).withNotarySpecs(ImmutableList.of(
+            new MockNetworkNotarySpec(CordaX500Name.parse("O=NotaryA,L=London,C=GB")),
+            new MockNetworkNotarySpec(CordaX500Name.parse("O=NotaryB,L=London,C=GB")))));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode b = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+    private final Amount<Currency> amount = new Amount<Currency>(50000, Currency.getInstance("MAD"));
+    private Party pledgeNotary;
+
+    public NotaryPoolTests() {
+        a.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+        bc.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        bc.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+        b.registerInitiatedFlow(AtomicExchangeDDR.CentralBankResponder.class);
+    }
+
+    @Before
+    public void setup() throws ExecutionException, InterruptedException {
+        network.runNetwork();
+        a.startFlow(new SyncIdentitiesFlow.Initiator());
+        network.runNetwork();
+
+        CordaFuture<SignedTransaction> futurePledge = a.startFlow(new RequestDDRPledge.Initiator(new Amount<Currency>(100000, Currency.getInstance("MAD"))));
+        network.runNetwork();
+        SignedTransaction pledgeTx = futurePledge.get();
+        pledgeNotary = pledgeTx.getNotary();
+        bc.startFlow(new ApproveDDRPledge.Initiator(((DDRObligationState) pledgeTx.getTx().getOutput(0)).getExternalId()));
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Test
+    public void newStatesOfABankAreSpreadOverTheNotariesInTurn() throws Exception {
+        List<Party> notaries = a.getServices().cordaService(NotaryPool.class).getNotaries();
+        assertEquals(2, notaries.size());
+        assertEquals(notaries.get(0), pledgeNotary);
+
+        CordaFuture<SignedTransaction> future = a.startFlow(new RequestDDRPledge.Initiator(amount));
+        network.runNetwork();
+        assertEquals(notaries.get(1), future.get().getNotary());
+    }
+
+    @Test
+    public void transfersAreNotarisedByTheNotaryOfTheirDDRs() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new AtomicExchangeDDR.Initiator("0074444446513221",
+                "008231111132135131", amount, new Date()));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+        assertEquals(pledgeNotary, signedTx.getNotary());
+
+        NotaryPool pool = a.getServices().cordaService(NotaryPool.class);
+        pool.getNotaries().forEach(notary -> assertEquals(0, pool.metrics(notary).getNotaryChanges()));
+        b.transaction(() -> {
+            List<StateAndRef<DDRObjectState>> ddrs = b.getServices().getVaultService().queryBy(DDRObjectState.class).getStates();
+            assertFalse(ddrs.isEmpty());
+            ddrs.forEach(ddr -> assertEquals(pledgeNotary, ddr.getState().getNotary()));
+            return null;
+        });
+    }
+}
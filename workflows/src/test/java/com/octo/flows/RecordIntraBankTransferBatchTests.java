@@ -0,0 +1,128 @@
+package com.octo.flows;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.builders.IntraBankTransferStateBuilder;
+import com.octo.contracts.IntraBankTransferContract;
+import com.octo.states.IntraBankTransferState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.FlowException;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+
+public class RecordIntraBankTransferBatchTests {
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+    private final Amount<Currency> amount = new Amount<Currency>(1000, Currency.getInstance("MAD"));
+    private final Date date = new Date();
+
+    public RecordIntraBankTransferBatchTests() {
+        bc.registerInitiatedFlow(RecordIntraBankTransferBatch.Responder.class);
+    }
+
+    @Before
+    public void setup() {
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    private List<IntraBankTransferStateBuilder> transfers(int count) {
+        List<IntraBankTransferStateBuilder> transfers = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            transfers.add(new IntraBankTransferStateBuilder().senderRIB("senderRIB" + i).receiverRIB("receiverRIB" + i)
+                    .amount(amount).executionDate(date).externalId("INTRA" + i));
+        return transfers;
+    }
+
+    @Test
+    public void flowRecordsATransactionInBothPartiesTransactionStorages() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new RecordIntraBankTransferBatch.Initiator(transfers(3)));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+        for (StartedMockNode node : ImmutableList.of(a, bc)) {
+            assertEquals(signedTx, node.getServices().getValidatedTransactions().getTransaction(signedTx.getId()));
+        }
+    }
+
+    @Test
+    public void signedTransactionReturnedByTheFlowIsSignedByBothParties() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new RecordIntraBankTransferBatch.Initiator(transfers(3)));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+        signedTx.verifyRequiredSignatures();
+    }
+
+    @Test
+    public void recordedTransactionHasNoInputsAndOneOutputPerTransfer() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new RecordIntraBankTransferBatch.Initiator(transfers(5)));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+
+        for (StartedMockNode node : ImmutableList.of(a, bc)) {
+            SignedTransaction recordedTx = node.getServices().getValidatedTransactions().getTransaction(signedTx.getId());
+            assert recordedTx != null;
+            List<IntraBankTransferState> txOutputs = recordedTx.getTx().outputsOfType(IntraBankTransferState.class);
+            assertEquals(5, txOutputs.size());
+            assertEquals(0, recordedTx.getTx().getInputs().size());
+            for (IntraBankTransferState recordedState : txOutputs) {
+                assertEquals(amount, recordedState.getAmount());
+                assertEquals(a.getInfo().getLegalIdentities().get(0), recordedState.getBank());
+                assertEquals(date, recordedState.getExecutionDate());
+            }
+        }
+    }
+
+    @Test
+    public void flowRecordsAllTransfersInBothPartiesVaults() throws Exception {
+        CordaFuture<SignedTransaction> future = a.startFlow(new RecordIntraBankTransferBatch.Initiator(transfers(5)));
+        network.runNetwork();
+        future.get();
+
+        for (StartedMockNode node : ImmutableList.of(a, bc)) {
+            node.transaction(() -> {
+                List<StateAndRef<IntraBankTransferState>> recordedTransfers = node.getServices().getVaultService().queryBy(IntraBankTransferState.class).getStates();
+                assertEquals(5, recordedTransfers.size());
+                return null;
+            });
+        }
+    }
+
+    @Test
+    public void batchLargerThanMaximumThrowsException() throws Exception {
+        exception.expectCause(instanceOf(FlowException.class));
+        CordaFuture<SignedTransaction> future = a.startFlow(
+                new RecordIntraBankTransferBatch.Initiator(transfers(IntraBankTransferContract.MAX_BATCH_SIZE + 1)));
+        network.runNetwork();
+        future.get();
+    }
+}
@@ -0,0 +1,82 @@
+package com.octo.flows;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.corda_services.SchemaMigrationService;
+import com.octo.states.DDRObligationState;
+import com.octo.utils.ObligationQueries;
+import net.corda.core.contracts.Amount;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+
+import static org.junit.Assert.assertEquals;
+
+public class SchemaMigrationTests {
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+
+    public SchemaMigrationTests() {
+        bc.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+    }
+
+    @Before
+    public void setup() throws Exception {
+        network.runNetwork();
+        for (int i = 0; i < 3; i++) {
+            a.startFlow(new RequestDDRPledge.Initiator(new Amount<>(1000, Currency.getInstance("MAD"))));
+            network.runNetwork();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Test
+    public void obligationsRecordedBeforeTheV2SchemaAreCopiedToIt() {
+        // States recorded before the upgrade have no V2 row
+        a.transaction(() -> {
+            a.getServices().withEntityManager(entityManager -> {
+                entityManager.createQuery("DELETE FROM PersistentDDRObligationV2").executeUpdate();
+            });
+            return null;
+        });
+        assertEquals(0, requestedByA());
+
+        SchemaMigrationService migration = a.getServices().cordaService(SchemaMigrationService.class);
+        migration.migrate();
+        assertEquals(3, requestedByA());
+        assertEquals(3, pendingOfA());
+
+        // Rows already copied are skipped
+        migration.migrate();
+        assertEquals(3, requestedByA());
+    }
+
+    private int requestedByA() {
+        Party party = a.getInfo().getLegalIdentities().get(0);
+        return a.transaction(() -> a.getServices().getVaultService()
+                .queryBy(DDRObligationState.class, ObligationQueries.requestedBy(party)).getStates().size());
+    }
+
+    private int pendingOfA() {
+        Party party = a.getInfo().getLegalIdentities().get(0);
+        return a.transaction(() -> a.getServices().getVaultService()
+                .queryBy(DDRObligationState.class, ObligationQueries.pending().and(ObligationQueries.requestedBy(party)))
+                .getStates().size());
+    }
+}
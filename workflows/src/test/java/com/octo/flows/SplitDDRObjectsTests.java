@@ -0,0 +1,94 @@
+package com.octo.flows;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.states.DDRObjectState;
+import com.octo.states.DDRObligationState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.FlowException;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+public class SplitDDRObjectsTests {
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+    private final Amount<Currency> amount = new Amount<>(10000, Currency.getInstance("MAD"));
+
+    public SplitDDRObjectsTests() {
+        a.registerInitiatedFlow(ApproveDDRPledge.Responder.class);
+        bc.registerInitiatedFlow(RequestDDRPledge.Responder.class);
+        bc.registerInitiatedFlow(SplitDDRObjects.Responder.class);
+    }
+
+    @Before
+    public void setup() throws ExecutionException, InterruptedException {
+        network.runNetwork();
+        CordaFuture<SignedTransaction> futurePledge = a.startFlow(new RequestDDRPledge.Initiator(amount));
+        network.runNetwork();
+        String externalPledgeId = ((DDRObligationState) futurePledge.get().getTx().getOutput(0)).getExternalId();
+        bc.startFlow(new ApproveDDRPledge.Initiator(externalPledgeId));
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    private List<StateAndRef<DDRObjectState>> ddrsOf(StartedMockNode node) {
+        return node.transaction(() -> node.getServices().getVaultService().queryBy(DDRObjectState.class).getStates());
+    }
+
+    @Test
+    public void splitReplacesDDRByDDRsOfTheGivenQuantitiesAndTheRest() throws Exception {
+        List<StateAndRef<DDRObjectState>> ddrs = ddrsOf(a);
+        StateAndRef<DDRObjectState> ddr = ddrs.get(0);
+        long quantity = ddr.getState().getData().getAmount().getQuantity();
+
+        CordaFuture<SignedTransaction> future = a.startFlow(new SplitDDRObjects.Initiator(ddr, Arrays.asList(quantity / 4, quantity / 4)));
+        network.runNetwork();
+        SignedTransaction signedTx = future.get();
+
+        assertEquals(1, signedTx.getTx().getInputs().size());
+        List<DDRObjectState> outputs = signedTx.getTx().outputsOfType(DDRObjectState.class);
+        assertEquals(3, outputs.size());
+        assertEquals(quantity, outputs.stream().mapToLong(output -> output.getAmount().getQuantity()).sum());
+        for (StartedMockNode node : ImmutableList.of(a, bc)) {
+            assertEquals(signedTx, node.getServices().getValidatedTransactions().getTransaction(signedTx.getId()));
+        }
+        assertEquals(ddrs.size() + 2, ddrsOf(a).size());
+    }
+
+    @Test(expected = FlowException.class)
+    public void splitCannotExceedTheDDRAmount() throws Throwable {
+        StateAndRef<DDRObjectState> ddr = ddrsOf(a).get(0);
+        long quantity = ddr.getState().getData().getAmount().getQuantity();
+        CordaFuture<SignedTransaction> future = a.startFlow(new SplitDDRObjects.Initiator(ddr, Arrays.asList(quantity, 1L)));
+        network.runNetwork();
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.octo.flows;
+
+import com.google.common.collect.ImmutableList;
+import com.octo.corda_services.RIBService;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyncIdentitiesFlowTests {
+
+    private final MockNetwork network = new MockNetwork(new MockNetworkParameters(ImmutableList.of(
+            TestCordapp.findCordapp("com.octo.contracts"),
+            TestCordapp.findCordapp("com.octo.flows")
+    )));
+    private final StartedMockNode a = network.createNode(CordaX500Name.parse("O=BankA,L=New York,C=US"));
+    private final StartedMockNode b = network.createNode(CordaX500Name.parse("O=BankB,L=New York,C=US"));
+    private final StartedMockNode bc = network.createNode(CordaX500Name.parse("O=CentralBank,L=New York,C=US"));
+
+    @Before
+    public void setup() {
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    private static Party partyOf(StartedMockNode node) {
+        return node.getInfo().getLegalIdentities().get(0);
+    }
+
+    @Test
+    public void syncRoutesBankCodesOnBothSides() throws Exception {
+        CordaFuture<Void> future = a.startFlow(new SyncIdentitiesFlow.Initiator());
+        network.runNetwork();
+        future.get();
+
+        RIBService ribA = a.getServices().cordaService(RIBService.class);
+        RIBService ribB = b.getServices().cordaService(RIBService.class);
+        assertEquals(partyOf(b), ribA.getPartyFromRIB("008231111132135131"));
+        assertEquals(partyOf(a), ribB.getPartyFromRIB("0074444446513221"));
+        assertTrue(ribA.isSynced(partyOf(bc)));
+    }
+
+    @Test
+    public void syncOfGivenPartiesIsCompletedByNetworkMapSync() throws Exception {
+        CordaFuture<Void> first = b.startFlow(new SyncIdentitiesFlow.Initiator(ImmutableList.of(partyOf(a), partyOf(bc))));
+        network.runNetwork();
+        first.get();
+        RIBService ribA = a.getServices().cordaService(RIBService.class);
+        assertTrue(ribA.isSynced(partyOf(b)));
+
+        CordaFuture<Void> second = a.startFlow(new SyncIdentitiesFlow.Initiator());
+        network.runNetwork();
+        second.get();
+        assertTrue(ribA.isSynced(partyOf(bc)));
+        assertEquals(partyOf(b), ribA.getPartyFromRIB("008231111132135131"));
+    }
+}